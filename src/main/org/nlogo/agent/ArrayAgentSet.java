@@ -3,8 +3,8 @@
 package org.nlogo.agent;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
-import java.util.HashSet;
 
 import org.nlogo.api.LogoList;
 
@@ -43,12 +43,8 @@ public final strictfp class ArrayAgentSet
   // are equal. - ST 7/6/06
   @Override
   boolean equalAgentSetsHelper(org.nlogo.api.AgentSet otherSet) {
-    HashSet<Agent> set = new HashSet<Agent>();
-    for (AgentSet.Iterator iter = iterator(); iter.hasNext();) {
-      set.add(iter.next());
-    }
     for (org.nlogo.api.Agent a : otherSet.agents()) {
-      if (!set.contains(a)) {
+      if (!contains((Agent) a)) {
         return false;
       }
     }
@@ -128,6 +124,7 @@ public final strictfp class ArrayAgentSet
 
   @Override
   public void add(Agent agent) {
+    index = null;
     if (size < capacity) {
       agents[size] = agent;
       size++;
@@ -156,16 +153,49 @@ public final strictfp class ArrayAgentSet
     capacity = initialCapacity;
     agents = new Agent[capacity];
     size = 0;
+    index = null;
   }
 
+  /// membership
+
+  // contains() used to be a linear scan, which made things like
+  // in-radius on an agentset built by with or other quadratic.  so
+  // the first time contains() is called on a set that isn't tiny, we
+  // build a bitset keyed on patch index/who number/link id.  ids can
+  // get reused after clear-all, resize-world, import-world etc, so we
+  // remember World.agentIdGeneration and rebuild if it has moved on.
+
+  private static final int INDEX_THRESHOLD = 16;
+
+  private BitSet index;
+  private int indexGeneration;
+
   @Override
   public boolean contains(Agent agent) {
-    for (AgentSet.Iterator iter = iterator(); iter.hasNext();) {
-      if (iter.next() == agent) {
-        return true;
+    if (size < INDEX_THRESHOLD || world == null) {
+      for (AgentSet.Iterator iter = iterator(); iter.hasNext();) {
+        if (iter.next() == agent) {
+          return true;
+        }
       }
+      return false;
     }
-    return false;
+    if (agent.id == -1 || agent.getAgentClass() != type) {
+      return false;
+    }
+    if (index == null || indexGeneration != world.agentIdGeneration) {
+      buildIndex();
+    }
+    return index.get((int) agent.id);
+  }
+
+  private void buildIndex() {
+    BitSet result = new BitSet();
+    for (AgentSet.Iterator iter = iterator(); iter.hasNext();) {
+      result.set((int) iter.next().id);
+    }
+    index = result;
+    indexGeneration = world.agentIdGeneration;
   }
 
   // the next few methods take precomputedCount as an argument since
@@ -335,67 +365,18 @@ public final strictfp class ArrayAgentSet
     }
   }
 
-  /// shuffling iterator = shufflerator! (Google hits: 0)
-  /// Update: Now 5 Google hits, the first 4 of which are NetLogo related,
-  /// and the last one is a person named "SHUFFLER, Ator", which Google thought
-  /// was close enough!  ;-)  ~Forrest (10/3/2008)
-
   @Override
   public AgentSet.Iterator shufflerator(org.nlogo.util.MersenneTwisterFast random) {
     // note it at the moment (and this should probably be fixed)
     // Job.runExclusive() counts on this making a copy of the
     // contents of the agentset - ST 12/15/05
-    return new Shufflerator(random);
-  }
-
-  private class Shufflerator extends Iterator {
-    private int i = 0;
-    private final Agent[] copy = new Agent[size];
-    private Agent next;
-    private final org.nlogo.util.MersenneTwisterFast random;
-
-    Shufflerator(org.nlogo.util.MersenneTwisterFast random) {
-      this.random = random;
-      System.arraycopy(agents, 0, copy, 0, size);
-      while (i < copy.length && copy[i] == null) {
-        i++;
-      }
-      fetch();
-    }
-
-    @Override
-    public boolean hasNext() {
-      return next != null;
-    }
-
-    @Override
-    public Agent next() {
-      Agent result = next;
-      fetch();
-      return result;
-    }
-
-    private void fetch() {
-      if (i >= copy.length) {
-        next = null;
-      } else {
-        if (i < copy.length - 1) {
-          int r = i + random.nextInt(copy.length - i);
-          next = copy[r];
-          copy[r] = copy[i];
-        } else {
-          next = copy[i];
-        }
-        i++;
-        // we could have a bunch of different Shufflerator subclasses
-        // the same way we have Iterator subclasses in order to avoid
-        // having to do both checks, but I'm not
-        // sure it's really worth the effort - ST 3/15/06
-        if (next == null || next.id == -1) {
-          fetch();
-        }
-      }
+    Agent[] copy = Shufflerator.borrow(size);
+    System.arraycopy(agents, 0, copy, 0, size);
+    int start = 0;
+    while (start < size && copy[start] == null) {
+      start++;
     }
+    return new Shufflerator(copy, start, size, true, random);
   }
 }
 
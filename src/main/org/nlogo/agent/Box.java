@@ -89,19 +89,11 @@ final strictfp class Box
     int minx = world.minPxcor();
     int miny = world.minPycor();
 
-    try {
-      for (y = 0; y < yy; y++) {
-        for (x = 0; x < xx; x++) {
-          scratch[x][y] =
-              ((Double) world.fastGetPatchAt(x + minx, y + miny)
-                  .getPatchVariable(vn))
-                  .doubleValue();
-          scratch2[x][y] = 0;
-        }
+    for (y = 0; y < yy; y++) {
+      for (x = 0; x < xx; x++) {
+        scratch[x][y] = patchVariableDouble(world.fastGetPatchAt(x + minx, y + miny), vn);
+        scratch2[x][y] = 0;
       }
-    } catch (ClassCastException ex) {
-      throw new PatchException(world.fastGetPatchAt
-          ((int) wrapX(x), (int) wrapY(y)));
     }
 
     for (y = 0; y < yy; y++) {
@@ -181,8 +173,7 @@ final strictfp class Box
     for (y = 0; y < yy; y++) {
       for (x = 0; x < xx; x++) {
         if (scratch2[x][y] != scratch[x][y]) {
-          world.getPatchAtWrap(x + minx, y + miny)
-              .setPatchVariable(vn, Double.valueOf(scratch2[x][y]));
+          setPatchVariableDouble(world.getPatchAtWrap(x + minx, y + miny), vn, scratch2[x][y]);
         }
       }
     }
@@ -199,19 +190,11 @@ final strictfp class Box
     int minx = world.minPxcor();
     int miny = world.minPycor();
 
-    try {
-      for (y = 0; y < yy; y++) {
-        for (x = 0; x < xx; x++) {
-          scratch[x][y] =
-              ((Double) world.fastGetPatchAt(x + minx, y + miny)
-                  .getPatchVariable(vn))
-                  .doubleValue();
-          scratch2[x][y] = 0;
-        }
+    for (y = 0; y < yy; y++) {
+      for (x = 0; x < xx; x++) {
+        scratch[x][y] = patchVariableDouble(world.fastGetPatchAt(x + minx, y + miny), vn);
+        scratch2[x][y] = 0;
       }
-    } catch (ClassCastException ex) {
-      throw new PatchException(world.fastGetPatchAt
-          ((int) wrapX(x), (int) wrapY(y)));
     }
 
     for (y = 0; y < yy; y++) {
@@ -276,8 +259,7 @@ final strictfp class Box
     for (y = 0; y < yy; y++) {
       for (x = 0; x < xx; x++) {
         if (scratch2[x][y] != scratch[x][y]) {
-          world.getPatchAtWrap(x + minx, y + miny)
-              .setPatchVariable(vn, Double.valueOf(scratch2[x][y]));
+          setPatchVariableDouble(world.getPatchAtWrap(x + minx, y + miny), vn, scratch2[x][y]);
         }
       }
     }
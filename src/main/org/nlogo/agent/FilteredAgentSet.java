@@ -0,0 +1,198 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.agent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.nlogo.api.LogoList;
+
+// The agents in another agentset that pass a test, without running the
+// test until somebody asks.  isEmpty() stops at the first agent that
+// passes, contains() only tests the one agent, and iterator() tests
+// agents as it goes, so e.g. in-radius only tests the agents that are
+// close enough.  Anything else (count(), shufflerator(), one-of, ...)
+// tests every agent once, in the source's iterator() order, and from
+// then on works from an ArrayAgentSet of the ones that passed, the same
+// ArrayAgentSet _with would have made.
+//
+// Since we can't tell when or even whether an agent gets tested, this
+// is only safe if the test has no side effects, doesn't use the random
+// number generator, and nothing changes before we're done being used.
+// The compiler decides that (see compiler.LazyAgentSetVisitor); we're
+// never stored anywhere a model could get at us later.
+
+public final strictfp class FilteredAgentSet
+    extends AgentSet {
+
+  // may throw LogoException, even though it can't say so; the
+  // implementations are written in Scala (see prim.WithFilter)
+  public interface Filter {
+    boolean accept(Agent agent);
+  }
+
+  // the filter for "other"
+  public static class AllBut
+      implements Filter {
+    private final Agent agent;
+
+    public AllBut(Agent agent) {
+      this.agent = agent;
+    }
+
+    public boolean accept(Agent agent) {
+      return agent != this.agent;
+    }
+  }
+
+  private final AgentSet source;
+  private final Filter filter;
+  private ArrayAgentSet forced = null;
+
+  public FilteredAgentSet(AgentSet source, Filter filter) {
+    super(source.type, source.world, null, false);
+    this.source = source;
+    this.filter = filter;
+  }
+
+  private ArrayAgentSet force() {
+    if (forced == null) {
+      List<Agent> result = new ArrayList<Agent>();
+      for (AgentSet.Iterator iter = source.iterator(); iter.hasNext();) {
+        Agent agent = iter.next();
+        if (filter.accept(agent)) {
+          result.add(agent);
+        }
+      }
+      forced = new ArrayAgentSet
+          (type, result.toArray(new Agent[result.size()]), world);
+    }
+    return forced;
+  }
+
+  @Override
+  public int count() {
+    return force().count();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    if (forced != null) {
+      return forced.isEmpty();
+    }
+    return !iterator().hasNext();
+  }
+
+  @Override
+  public boolean contains(Agent agent) {
+    if (forced != null) {
+      return forced.contains(agent);
+    }
+    return agent.id != -1 && source.contains(agent) && filter.accept(agent);
+  }
+
+  @Override
+  boolean equalAgentSetsHelper(org.nlogo.api.AgentSet otherSet) {
+    return force().equalAgentSetsHelper(otherSet);
+  }
+
+  @Override
+  public Agent agent(long i) {
+    return force().agent(i);
+  }
+
+  @Override
+  Agent getAgent(Object id) {
+    return force().getAgent(id);
+  }
+
+  @Override
+  public void add(Agent agent) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  void remove(Object key) {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  void clear() {
+    throw new UnsupportedOperationException();
+  }
+
+  @Override
+  public Agent randomOne(int precomputedCount, int random) {
+    return force().randomOne(precomputedCount, random);
+  }
+
+  @Override
+  Agent[] randomTwo(int precomputedCount, int random1, int random2) {
+    return force().randomTwo(precomputedCount, random1, random2);
+  }
+
+  @Override
+  Agent[] randomSubsetGeneral(int resultSize, int precomputedCount,
+                              org.nlogo.util.MersenneTwisterFast randomerizer) {
+    return force().randomSubsetGeneral(resultSize, precomputedCount, randomerizer);
+  }
+
+  @Override
+  public LogoList toLogoList() {
+    return force().toLogoList();
+  }
+
+  @Override
+  public Agent[] toArray() {
+    return force().toArray();
+  }
+
+  @Override
+  public AgentSet.Iterator iterator() {
+    if (forced != null) {
+      return forced.iterator();
+    }
+    return new Iterator();
+  }
+
+  private class Iterator
+      implements AgentSet.Iterator {
+    private final AgentSet.Iterator iter = source.iterator();
+    private Agent next;
+
+    Iterator() {
+      fetch();
+    }
+
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    public Agent next() {
+      Agent result = next;
+      fetch();
+      return result;
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException
+          ("remove() not supported");
+    }
+
+    private void fetch() {
+      next = null;
+      while (iter.hasNext()) {
+        Agent agent = iter.next();
+        if (filter.accept(agent)) {
+          next = agent;
+          return;
+        }
+      }
+    }
+  }
+
+  @Override
+  public AgentSet.Iterator shufflerator(org.nlogo.util.MersenneTwisterFast random) {
+    return force().shufflerator(random);
+  }
+}
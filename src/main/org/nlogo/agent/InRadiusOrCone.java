@@ -85,6 +85,13 @@ public strictfp class InRadiusOrCone {
               result.add(patch);
             }
           } else if (sourceSet.type() == Turtle.class) {
+            // on a sparse world most patches are empty; when a whole
+            // bucket is empty, jump straight to the end of it.  this
+            // doesn't change which turtles we find or their order.
+            if (patch.turtleCount() == 0) {
+              dx += world.turtleBuckets.emptyRun(patch);
+              continue;
+            }
             // Only check patches that might have turtles within the radius on them.
             // The 1.415 (square root of 2) adjustment is necessary because it is
             // possible for portions of a patch to be within the circle even though
@@ -221,6 +228,11 @@ public strictfp class InRadiusOrCone {
               }
             }
           } else {
+            // skip empty buckets, as in inRadius()
+            if (patch.turtleCount() == 0) {
+              dx += world.turtleBuckets.emptyRun(patch);
+              continue;
+            }
             // Only check patches that might have turtles within the radius on them.
             // The 1.415 (square root of 2) adjustment is necessary because it is
             // possible for portions of a patch to be within the circle even though
@@ -6,11 +6,7 @@ package org.nlogo.agent;
  * LinkManager -- Keeps track of links.
  */
 
-import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.List;
-import java.util.Map;
 
 public strictfp class LinkManager {
 
@@ -22,34 +18,118 @@ public strictfp class LinkManager {
 
   ///
 
-  // Use LinkedHashMap not HashMap for these so model results are
-  // reproducible. - ST 12/21/05, 3/15/06, 7/20/07
-  final Map<Turtle, List<Link>> srcMap =
-      new LinkedHashMap<Turtle, List<Link>>();
-  final Map<Turtle, List<Link>> destMap =
-      new LinkedHashMap<Turtle, List<Link>>();
+  // Each turtle keeps its own links, split by direction, in the order
+  // they were made (see Turtle.outLinks and Turtle.inLinks), so we never
+  // need to hash a turtle to find its links.  Keeping creation order
+  // keeps model results reproducible. - ST 12/21/05, 3/15/06, 7/20/07
+
+  static final class Adjacency {
+    Link[] links = new Link[2];
+    int size = 0;
+
+    void add(Link link) {
+      if (size == links.length) {
+        Link[] newLinks = new Link[size * 2];
+        System.arraycopy(links, 0, newLinks, 0, size);
+        links = newLinks;
+      }
+      links[size++] = link;
+    }
+
+    // shifts the rest down, so order is preserved
+    void remove(Link link) {
+      for (int i = 0; i < size; i++) {
+        if (links[i] == link) {
+          System.arraycopy(links, i + 1, links, i, size - i - 1);
+          links[--size] = null;
+          return;
+        }
+      }
+    }
+  }
+
+  // All the links, in an open addressing hash table keyed on their
+  // end points, so finding the link between two turtles doesn't
+  // allocate or search.  Only the ends are hashed, not the breed, since
+  // a link's breed can change out from under us.
+  private Link[] index = new Link[16];
+  private int indexCount = 0;
+
+  private static int hash(Turtle end1, Turtle end2) {
+    long h = (end1.id * 31 + end2.id) * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  private Link lookup(Turtle end1, Turtle end2, AgentSet breed) {
+    int mask = index.length - 1;
+    for (int i = hash(end1, end2) & mask; index[i] != null; i = (i + 1) & mask) {
+      Link link = index[i];
+      if (link.end1 == end1 && link.end2 == end2 && link.getBreed() == breed) {
+        return link;
+      }
+    }
+    return null;
+  }
+
+  private void addToIndex(Link link) {
+    if ((indexCount + 1) * 2 > index.length) {
+      Link[] oldIndex = index;
+      index = new Link[oldIndex.length * 2];
+      for (int i = 0; i < oldIndex.length; i++) {
+        if (oldIndex[i] != null) {
+          insert(oldIndex[i]);
+        }
+      }
+    }
+    insert(link);
+    indexCount++;
+  }
+
+  private void insert(Link link) {
+    int mask = index.length - 1;
+    int i = hash(link.end1, link.end2) & mask;
+    while (index[i] != null) {
+      i = (i + 1) & mask;
+    }
+    index[i] = link;
+  }
+
+  private void removeFromIndex(Link link) {
+    int mask = index.length - 1;
+    int i = hash(link.end1, link.end2) & mask;
+    while (index[i] != link) {
+      if (index[i] == null) {
+        return;
+      }
+      i = (i + 1) & mask;
+    }
+    // fill the hole with any later entry that would no longer be
+    // reachable from its home slot, and repeat
+    for (int j = (i + 1) & mask; index[j] != null; j = (j + 1) & mask) {
+      int home = hash(index[j].end1, index[j].end2) & mask;
+      if (i <= j
+          ? (home <= i || home > j)
+          : (home <= i && home > j)) {
+        index[i] = index[j];
+        i = j;
+      }
+    }
+    index[i] = null;
+    indexCount--;
+  }
 
   private void bless(Link link) {
     Turtle end1 = link.end1();
     Turtle end2 = link.end2();
-    // add to source map
-    if (srcMap.containsKey(end1)) {
-      srcMap.get(end1).add(link);
-    } else {
-      ArrayList<Link> recList =
-          new ArrayList<Link>();
-      recList.add(link);
-      srcMap.put(end1, recList);
-    }
-    // add to destination map
-    if (destMap.containsKey(end2)) {
-      destMap.get(end2).add(link);
-    } else {
-      List<Link> recList =
-          new ArrayList<Link>();
-      recList.add(link);
-      destMap.put(end2, recList);
+    if (end1.outLinks == null) {
+      end1.outLinks = new Adjacency();
+    }
+    end1.outLinks.add(link);
+    if (end2.inLinks == null) {
+      end2.inLinks = new Adjacency();
     }
+    end2.inLinks.add(link);
+    addToIndex(link);
     if (link.getBreed() == world.links()) {
       countUnbreededLinks++;
     }
@@ -58,8 +138,13 @@ public strictfp class LinkManager {
   ///
 
   public void reset() {
-    srcMap.clear();
-    destMap.clear();
+    for (AgentSet.Iterator iter = world.turtles().iterator(); iter.hasNext();) {
+      Turtle turtle = (Turtle) iter.next();
+      turtle.outLinks = null;
+      turtle.inLinks = null;
+    }
+    index = new Link[16];
+    indexCount = 0;
     world.tieManager.reset();
     countUnbreededLinks = 0;
     resetLinkDirectedness();
@@ -103,13 +188,11 @@ public strictfp class LinkManager {
     if (src == null || dest == null) {
       return null;
     }
-    Link link = (Link) world.links().getAgent(new DummyLink
-        (world, src, dest, breed));
+    Link link = lookup(src, dest, breed);
     if (link == null && includeAllLinks && breed == world.links()) {
       for (Iterator<Object> iter = world.getLinkBreeds().values().iterator();
            iter.hasNext();) {
-        link = (Link) world.links().getAgent
-            (new DummyLink(world, src, dest, (AgentSet) iter.next()));
+        link = lookup(src, dest, (AgentSet) iter.next());
         if (link != null) {
           return link;
         }
@@ -127,10 +210,10 @@ public strictfp class LinkManager {
   }
 
   public AgentSet findLinkedFrom(Turtle src, AgentSet sourceSet) {
-    List<Link> fromList = srcMap.get(src);
+    Adjacency fromList = src.outLinks;
     if (fromList != null) {
       AgentSet nodeset =
-          new ArrayAgentSet(Turtle.class, fromList.size(), false, world);
+          new ArrayAgentSet(Turtle.class, fromList.size, false, world);
       addLinkNeighborsFrom(nodeset, fromList, sourceSet, true);
       return nodeset;
     } else {
@@ -139,10 +222,10 @@ public strictfp class LinkManager {
   }
 
   public AgentSet findLinkedTo(Turtle target, AgentSet sourceSet) {
-    List<Link> fromList = destMap.get(target);
+    Adjacency fromList = target.inLinks;
     if (fromList != null) {
       AgentSet nodeset =
-          new ArrayAgentSet(Turtle.class, fromList.size(), false, world);
+          new ArrayAgentSet(Turtle.class, fromList.size, false, world);
       addLinkNeighborsTo(nodeset, fromList, sourceSet, true);
       return nodeset;
     } else {
@@ -151,9 +234,9 @@ public strictfp class LinkManager {
   }
 
   public AgentSet findLinkedWith(Turtle target, AgentSet sourceSet) {
-    List<Link> toList = destMap.get(target);
-    List<Link> fromList = srcMap.get(target);
-    int size = (fromList == null ? 0 : fromList.size()) + (toList == null ? 0 : toList.size());
+    Adjacency toList = target.inLinks;
+    Adjacency fromList = target.outLinks;
+    int size = (fromList == null ? 0 : fromList.size) + (toList == null ? 0 : toList.size);
     if (size == 0) {
       return world.noTurtles();
     }
@@ -174,13 +257,14 @@ public strictfp class LinkManager {
   // sourceSet will always be a breed. but layout-radial also uses it
   // and it might be any agentset.  ev 4/6/07
   private void addLinkNeighborsFrom(AgentSet nodeset,
-                                    List<Link> links,
+                                    Adjacency links,
                                     AgentSet sourceSet,
                                     boolean directed) {
     boolean isBreed = sourceSet.printName() != null;
     boolean isAllLinks = sourceSet == world.links();
     boolean unbreededLinks = checkBreededCompatibility(true);
-    for (Link link : links) {
+    for (int i = 0; i < links.size; i++) {
+      Link link = links.links[i];
       if ((!isBreed && sourceSet.contains(link)) ||
           (isAllLinks && (unbreededLinks ||
               (directed == link.getBreed().isDirected()
@@ -192,7 +276,7 @@ public strictfp class LinkManager {
   }
 
   private void addLinkNeighborsTo(AgentSet nodeset,
-                                  List<Link> links,
+                                  Adjacency links,
                                   AgentSet sourceSet,
                                   boolean directed) {
     boolean isBreed = sourceSet.printName() != null;
@@ -202,7 +286,8 @@ public strictfp class LinkManager {
     // in the nodeset, which is slow. so only models that use breeds && link-neighbors
     // will take a performance hit ev 6/15/07
     boolean unbreededLinks = checkBreededCompatibility(true);
-    for (Link link : links) {
+    for (int i = 0; i < links.size; i++) {
+      Link link = links.links[i];
       if ((!isBreed && sourceSet.contains(link)) ||
           (isAllLinks && (unbreededLinks ||
               (directed == link.getBreed().isDirected()
@@ -224,54 +309,50 @@ public strictfp class LinkManager {
   }
 
   public AgentSet findLinksFrom(Turtle src, AgentSet breed) {
-    List<Link> fromList = srcMap.get(src);
+    Adjacency fromList = src.outLinks;
     AgentSet linkset =
         new ArrayAgentSet(Link.class, 1, false, world);
     boolean isAllLinks = breed == world.links();
     if (fromList != null) {
-      for (Link link : fromList) {
-        if (isAllLinks || link.getBreed() == breed) {
-          linkset.add(link);
-        }
-      }
+      addLinks(linkset, fromList, breed, isAllLinks);
     }
     return linkset;
   }
 
   public AgentSet findLinksTo(Turtle target, AgentSet breed) {
-    List<Link> fromList = destMap.get(target);
+    Adjacency fromList = target.inLinks;
     AgentSet linkset =
         new ArrayAgentSet(Link.class, 1, false, world);
     boolean isAllLinks = breed == world.links();
     if (fromList != null) {
-      for (Link link : fromList) {
-        if (isAllLinks || link.getBreed() == breed) {
-          linkset.add(link);
-        }
-      }
+      addLinks(linkset, fromList, breed, isAllLinks);
     }
     return linkset;
   }
 
   public AgentSet findLinksWith(Turtle target, AgentSet breed) {
-    List<Link> fromList = destMap.get(target);
-    List<Link> toList = srcMap.get(target);
-    List<Link> totalList = new ArrayList<Link>();
+    Adjacency fromList = target.inLinks;
+    Adjacency toList = target.outLinks;
+    boolean isAllLinks = breed == world.links();
+    AgentSet linkset =
+        new ArrayAgentSet(Link.class, 1, false, world);
     if (fromList != null) {
-      totalList.addAll(fromList);
+      addLinks(linkset, fromList, breed, isAllLinks);
     }
     if (toList != null) {
-      totalList.addAll(toList);
+      addLinks(linkset, toList, breed, isAllLinks);
     }
-    boolean isAllLinks = breed == world.links();
-    AgentSet linkset =
-        new ArrayAgentSet(Link.class, 1, false, world);
-    for (Link link : totalList) {
+    return linkset;
+  }
+
+  private void addLinks(AgentSet linkset, Adjacency links,
+                        AgentSet breed, boolean isAllLinks) {
+    for (int i = 0; i < links.size; i++) {
+      Link link = links.links[i];
       if (isAllLinks || link.getBreed() == breed) {
         linkset.add(link);
       }
     }
-    return linkset;
   }
 
   /// cleaning up after dead turtles
@@ -279,24 +360,22 @@ public strictfp class LinkManager {
   void cleanup(Link link) {
     // keep tie bookkeeping up to date
     link.untie();
-    // remove from source map
+    // remove from the ends' adjacencies
     Turtle end1 = link.end1();
-    List<Link> list = srcMap.get(end1);
-    if (list != null) {
-      list.remove(link);
-      if (list.isEmpty()) {
-        srcMap.remove(end1);
+    if (end1.outLinks != null) {
+      end1.outLinks.remove(link);
+      if (end1.outLinks.size == 0) {
+        end1.outLinks = null;
       }
     }
-    // remove from dest map
     Turtle end2 = link.end2();
-    list = destMap.get(end2);
-    if (list != null) {
-      list.remove(link);
-      if (list.isEmpty()) {
-        destMap.remove(end2);
+    if (end2.inLinks != null) {
+      end2.inLinks.remove(link);
+      if (end2.inLinks.size == 0) {
+        end2.inLinks = null;
       }
     }
+    removeFromIndex(link);
     if (link.getBreed() == world.links()) {
       countUnbreededLinks--;
     }
@@ -306,24 +385,24 @@ public strictfp class LinkManager {
 
   // Turtle.die() calls this - ST 3/15/06, 7/21/07
   void cleanup(Turtle turtle) {
-    // this part is a bit tricky -- we need to remove the turtle
-    // from the src & dest maps first, so we don't end up in an
-    // infinite loop where a dying node kills a link which tries
-    // to kill the original node.  But we need the map entries
-    // in order to find the links.  Hence the exact ordering
-    // inside each if statement below. - ST 3/15/06
-    if (srcMap.containsKey(turtle)) {
-      List<Link> links = srcMap.get(turtle);
-      srcMap.remove(turtle);
-      for (Link link : links) {
-        link.die();
+    // this part is a bit tricky -- we need to detach the turtle's
+    // links from it first, so we don't end up in an infinite loop
+    // where a dying node kills a link which tries to kill the
+    // original node.  But we need the adjacencies in order to find
+    // the links.  Hence the exact ordering inside each if statement
+    // below. - ST 3/15/06
+    if (turtle.outLinks != null) {
+      Adjacency links = turtle.outLinks;
+      turtle.outLinks = null;
+      for (int i = 0; i < links.size; i++) {
+        links.links[i].die();
       }
     }
-    if (destMap.containsKey(turtle)) {
-      List<Link> links = destMap.get(turtle);
-      destMap.remove(turtle);
-      for (Link link : links) {
-        link.die();
+    if (turtle.inLinks != null) {
+      Adjacency links = turtle.inLinks;
+      turtle.inLinks = null;
+      for (int i = 0; i < links.size; i++) {
+        links.links[i].die();
       }
     }
   }
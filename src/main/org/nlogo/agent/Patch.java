@@ -34,20 +34,28 @@ public strictfp class Patch
 
   private final ArrayList<Turtle> _turtlesHere = new ArrayList<Turtle>(0);
 
+  // the World's buckets as of when we were created; if the world gets
+  // resized, stray turtles on the old patches mustn't touch the new ones
+  private final TurtleBuckets turtleBuckets;
+
   public int turtleCount() {
     return _turtlesHere.size();
   }
 
   public void clearTurtles() {
+    turtleBuckets.remove(this, _turtlesHere.size());
     _turtlesHere.clear();
   }
 
   public void addTurtle(Turtle t) {
     _turtlesHere.add(t);
+    turtleBuckets.add(this);
   }
 
   public void removeTurtle(Turtle t) {
-    _turtlesHere.remove(t);
+    if (_turtlesHere.remove(t)) {
+      turtleBuckets.remove(this, 1);
+    }
   }
 
   public AgentSet turtlesHereAgentSet() {
@@ -69,6 +77,7 @@ public strictfp class Patch
 
   Patch(World world, int id, int pxcor, int pycor, int numVariables) {
     super(world);
+    turtleBuckets = world.turtleBuckets;
     this.id = id;
     this.pxcor = pxcor;
     this.pycor = pycor;
@@ -97,6 +106,7 @@ public strictfp class Patch
 
   Patch(World world, int pxcor, int pycor) {
     super(world);
+    turtleBuckets = world.turtleBuckets;
     this.pxcor = pxcor;
     this.pycor = pycor;
   }
@@ -234,6 +244,8 @@ public strictfp class Patch
   public void setPatchVariable(int vn, Object value)
       throws AgentException {
     if (vn > LAST_PREDEFINED_VAR) {
+      // a boxed value always takes precedence over the column, so
+      // there's no need to touch the column here
       variables[vn] = value;
     } else {
       switch (vn) {
@@ -276,6 +288,16 @@ public strictfp class Patch
   @Override
   public void setPatchVariable(int vn, double value)
       throws AgentException {
+    if (vn > LAST_PREDEFINED_VAR) {
+      double[] column = world.patchColumn(vn);
+      if (column != null) {
+        column[(int) id] = value;
+        variables[vn] = null;
+      } else {
+        variables[vn] = Double.valueOf(value);
+      }
+      return;
+    }
     switch (vn) {
       case VAR_PXCOR:
         throw new AgentException(I18N.errorsJ().get("org.nlogo.agent.Patch.cantChangePatchCoordinates"));
@@ -288,9 +310,12 @@ public strictfp class Patch
 
   @Override
   public Object getPatchVariable(int vn) {
-    if (vn == VAR_PCOLOR &&
-        variables[VAR_PCOLOR] == null) {
-      variables[VAR_PCOLOR] = Double.valueOf(pcolor);
+    if (variables[vn] == null) {
+      if (vn == VAR_PCOLOR) {
+        variables[VAR_PCOLOR] = Double.valueOf(pcolor);
+      } else if (vn > LAST_PREDEFINED_VAR) {
+        variables[vn] = Double.valueOf(world.patchColumn(vn)[(int) id]);
+      }
     }
     return variables[vn];
   }
@@ -301,12 +326,54 @@ public strictfp class Patch
         return pxcor;
       case VAR_PYCOR:
         return pycor;
+      case VAR_PCOLOR:
+        return pcolorDouble();
       default:
+        Object value = variables[vn];
+        if (value instanceof Double) {
+          return ((Double) value).doubleValue();
+        }
+        if (value == null && vn > LAST_PREDEFINED_VAR) {
+          return world.patchColumn(vn)[(int) id];
+        }
         throw new IllegalArgumentException(
             I18N.errorsJ().getN("org.nlogo.agent.Agent.notADoubleVariable", Integer.toString(vn)));
     }
   }
 
+  // true if the variable currently holds a number, whether it's
+  // stored boxed or in a column.  lets the diffusers and _nsum check
+  // without allocating
+  public boolean patchVariableIsDouble(int vn) {
+    Object value = variables[vn];
+    return value instanceof Double ||
+        (value == null && (vn == VAR_PCOLOR || vn > LAST_PREDEFINED_VAR));
+  }
+
+  // callers outside this package (AllStoredValues, hubnet, extensions)
+  // expect every slot filled in, so box anything that's only in the
+  // pcolor field or a column first.  the boxed value wins over the
+  // column, so this doesn't change what the patch holds
+  @Override
+  public Object[] variables() {
+    for (int vn = 0; vn < variables.length; vn++) {
+      if (variables[vn] == null) {
+        getPatchVariable(vn);
+      }
+    }
+    return variables;
+  }
+
+  // used by World when columnar storage is turned off or the
+  // patch variables are about to be reallocated
+  void boxColumns(double[][] columns) {
+    for (int vn = LAST_PREDEFINED_VAR + 1; vn < variables.length; vn++) {
+      if (variables[vn] == null) {
+        variables[vn] = Double.valueOf(columns[vn][(int) id]);
+      }
+    }
+  }
+
   @Override
   public Patch getPatchAtOffsets(double dx, double dy)
       throws AgentException {
@@ -148,12 +148,24 @@ public final strictfp class Patch3D
         return pycor;
       case VAR_PZCOR3D:
         return pzcor;
+      case VAR_PCOLOR3D:
+        return pcolorDouble();
       default:
+        if (variables[vn] instanceof Double) {
+          return ((Double) variables[vn]).doubleValue();
+        }
         throw new IllegalArgumentException
             (vn + " is not a double variable");
     }
   }
 
+  // no columnar storage in 3D, so only pcolor is ever unboxed
+  @Override
+  public boolean patchVariableIsDouble(int vn) {
+    return variables[vn] instanceof Double ||
+        (vn == VAR_PCOLOR3D && variables[vn] == null);
+  }
+
   @Override
   public Patch getPatchAtOffsets(double dx, double dy)
       throws AgentException {
@@ -0,0 +1,39 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.agent;
+
+import org.nlogo.util.Bands;
+
+// Splits a loop over the rows (or, in 3D, layers) of the patch grid
+// into bands run on several threads (see org.nlogo.util.Bands).  Only
+// for loops where every row can be computed independently of the
+// others, e.g. the second half of diffuse, which only reads the
+// snapshot in the patch scratch array.  Since each cell is computed
+// exactly as it would be serially, results don't depend on the number
+// of threads.
+
+final strictfp class PatchBands {
+
+  // this class is not instantiable
+  private PatchBands() {
+    throw new IllegalStateException();
+  }
+
+  // below this many patches it isn't worth waking up the workers
+  static final int MIN_PATCHES = 4096;
+
+  // how many bands to split the work into.  not final so tests can
+  // check that the answer doesn't depend on it
+  static int threads =
+      Integer.getInteger("org.nlogo.patchBandThreads",
+          Runtime.getRuntime().availableProcessors());
+
+  static boolean worthIt(int patchCount) {
+    return threads > 1 && patchCount >= MIN_PATCHES;
+  }
+
+  static void run(int rows, Bands.Band band) {
+    Bands.run(rows, threads, band);
+  }
+
+}
@@ -0,0 +1,127 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.agent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.nlogo.util.MersenneTwisterFast;
+
+/// shuffling iterator = shufflerator! (Google hits: 0)
+/// Update: Now 5 Google hits, the first 4 of which are NetLogo related,
+/// and the last one is a person named "SHUFFLER, Ator", which Google thought
+/// was close enough!  ;-)  ~Forrest (10/3/2008)
+
+// Shared by all the AgentSet classes.  The agentset copies its contents
+// into a scratch array, and we do a Fisher-Yates shuffle on it one step
+// at a time, as agents are asked for.  Making a copy is what lets
+// ExclusiveJob ask every turtle even if some of them hatch along the
+// way, but the copy goes into an array borrowed from a small per-thread
+// pool, so an ask doesn't allocate an array as big as the agentset
+// every time.  The array is returned to the pool when the last agent
+// has been handed out; if the caller abandons us partway through, it's
+// simply never returned, which is harmless.
+
+final strictfp class Shufflerator
+    implements AgentSet.Iterator {
+
+  private Agent[] copy;
+  private final int length;
+  private final boolean skipDead;
+  private final MersenneTwisterFast random;
+  private int i;
+  private Agent next;
+
+  // the caller fills copy[0..length) (see borrow()).  if skipDead is
+  // true, null and dead agents are passed over, but they still take up
+  // a draw from the random number generator.
+  Shufflerator(Agent[] copy, int start, int length, boolean skipDead,
+               MersenneTwisterFast random) {
+    this.copy = copy;
+    this.length = length;
+    this.skipDead = skipDead;
+    this.random = random;
+    i = start;
+    fetch();
+  }
+
+  public boolean hasNext() {
+    return next != null;
+  }
+
+  public Agent next() {
+    Agent result = next;
+    fetch();
+    return result;
+  }
+
+  public void remove() {
+    throw new UnsupportedOperationException
+        ("remove() not supported");
+  }
+
+  private void fetch() {
+    do {
+      if (i >= length) {
+        next = null;
+        if (copy != null) {
+          giveBack(copy, length);
+          copy = null;
+        }
+        return;
+      }
+      if (i < length - 1) {
+        int r = i + random.nextInt(length - i);
+        next = copy[r];
+        copy[r] = copy[i];
+      } else {
+        next = copy[i];
+      }
+      i++;
+    }
+    while (skipDead && (next == null || next.id == -1));
+  }
+
+  /// the pool
+
+  private static final int MAX_FREE = 4;
+
+  private static final ThreadLocal<List<Agent[]>> free =
+      new ThreadLocal<List<Agent[]>>() {
+        @Override
+        protected List<Agent[]> initialValue() {
+          return new ArrayList<Agent[]>(MAX_FREE);
+        }
+      };
+
+  // returns an array of at least the given size, not in use by any
+  // other shufflerator
+  static Agent[] borrow(int size) {
+    List<Agent[]> list = free.get();
+    for (int j = 0; j < list.size(); j++) {
+      if (list.get(j).length >= size) {
+        return list.remove(j);
+      }
+    }
+    return new Agent[size];
+  }
+
+  private static void giveBack(Agent[] array, int used) {
+    // don't keep dead agents from being garbage collected
+    Arrays.fill(array, 0, used, null);
+    List<Agent[]> list = free.get();
+    if (list.size() < MAX_FREE) {
+      list.add(array);
+    } else {
+      // keep the bigger ones
+      for (int j = 0; j < list.size(); j++) {
+        if (list.get(j).length < array.length) {
+          list.set(j, array);
+          return;
+        }
+      }
+    }
+  }
+
+}
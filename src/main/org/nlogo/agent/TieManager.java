@@ -39,16 +39,18 @@ public strictfp class TieManager {
 
   List<Turtle> tiedTurtles(Turtle root) {
     ArrayList<Turtle> myTies = new ArrayList<Turtle>();
-    if (linkManager.srcMap.containsKey(root)) {
-      for (Link link : linkManager.srcMap.get(root)) {
+    if (root.outLinks != null) {
+      for (int i = 0; i < root.outLinks.size; i++) {
+        Link link = root.outLinks.links[i];
         if (link.isTied()) {
           Turtle t = link.end2();
           myTies.add(t);
         }
       }
     }
-    if (linkManager.destMap.containsKey(root)) {
-      for (Link link : linkManager.destMap.get(root)) {
+    if (root.inLinks != null) {
+      for (int i = 0; i < root.inLinks.size; i++) {
+        Link link = root.inLinks.links[i];
         if (!link.getBreed().isDirected()
             && link.isTied()) {
           Turtle t = link.end1();
@@ -116,37 +116,32 @@ abstract strictfp class Topology {
     int x = minx;
     int y = miny;
 
-    try {
-      for (x = minx; x <= maxx; x++) {
-        for (y = miny; y <= maxy; y++) {
-          Patch patch = world.fastGetPatchAt(x, y);
-
-          oldval = ((Double) patch.getPatchVariable(vn)).doubleValue();
-
-          AgentSet neighbors = patch.getNeighbors();
-          int neighborCount = neighbors.count();
-          sum = 0;
-          for (int a = 0; a < neighborCount; a++) {
-            Patch p = (Patch) neighbors.agent(a);
-            sum += (((Double) p.getPatchVariable(vn)).doubleValue() / p.getNeighbors().count());
-          }
-
-          scratchOld[x - minx][y - miny] = oldval;
-          scratchNew[x - minx][y - miny] = oldval * (1 - diffuseparam)
-              + sum * diffuseparam;
+    for (x = minx; x <= maxx; x++) {
+      for (y = miny; y <= maxy; y++) {
+        Patch patch = world.fastGetPatchAt(x, y);
+
+        oldval = patchVariableDouble(patch, vn);
+
+        AgentSet neighbors = patch.getNeighbors();
+        int neighborCount = neighbors.count();
+        sum = 0;
+        for (int a = 0; a < neighborCount; a++) {
+          Patch p = (Patch) neighbors.agent(a);
+          sum += (patchVariableDouble(p, vn) / p.getNeighbors().count());
         }
+
+        scratchOld[x - minx][y - miny] = oldval;
+        scratchNew[x - minx][y - miny] = oldval * (1 - diffuseparam)
+            + sum * diffuseparam;
       }
-      for (x = minx; x <= maxx; x++) {
-        for (y = miny; y <= maxy; y++) {
-          newval = scratchNew[x - minx][y - miny];
-          if (newval != scratchOld[x - minx][y - miny]) {
-            world.fastGetPatchAt(x, y).setPatchVariable(vn, Double.valueOf(newval));
-          }
+    }
+    for (x = minx; x <= maxx; x++) {
+      for (y = miny; y <= maxy; y++) {
+        newval = scratchNew[x - minx][y - miny];
+        if (newval != scratchOld[x - minx][y - miny]) {
+          setPatchVariableDouble(world.fastGetPatchAt(x, y), vn, newval);
         }
       }
-
-    } catch (ClassCastException ex) {
-      throw new PatchException(world.fastGetPatchAt(x, y));
     }
   }
 
@@ -162,37 +157,51 @@ abstract strictfp class Topology {
     double[][] scratchNew = new double[maxx - minx + 1][maxy - miny + 1];
     int x = minx;
     int y = miny;
-    try {
-      for (x = minx; x <= maxx; x++) {
-        for (y = miny; y <= maxy; y++) {
-          Patch patch = world.fastGetPatchAt(x, y);
-
-          oldval = ((Double) patch.getPatchVariable(vn)).doubleValue();
-
-          AgentSet neighbors = patch.getNeighbors4();
-          int neighborCount = neighbors.count();
-          sum = 0;
-          for (int a = 0; a < neighborCount; a++) {
-            sum += ((Double) ((Patch) neighbors.agent(a))
-                .getPatchVariable(vn))
-                .doubleValue();
-          }
-
-          scratchOld[x - minx][y - miny] = oldval;
-          scratchNew[x - minx][y - miny] = oldval * (1 - diffuseparam)
-              + sum * diffuseparam / neighborCount;
+    for (x = minx; x <= maxx; x++) {
+      for (y = miny; y <= maxy; y++) {
+        Patch patch = world.fastGetPatchAt(x, y);
+
+        oldval = patchVariableDouble(patch, vn);
+
+        AgentSet neighbors = patch.getNeighbors4();
+        int neighborCount = neighbors.count();
+        sum = 0;
+        for (int a = 0; a < neighborCount; a++) {
+          sum += patchVariableDouble((Patch) neighbors.agent(a), vn);
         }
+
+        scratchOld[x - minx][y - miny] = oldval;
+        scratchNew[x - minx][y - miny] = oldval * (1 - diffuseparam)
+            + sum * diffuseparam / neighborCount;
       }
-      for (x = minx; x <= maxx; x++) {
-        for (y = miny; y <= maxy; y++) {
-          newval = scratchNew[x - minx][y - miny];
-          if (newval != scratchOld[x - minx][y - miny]) {
-            world.fastGetPatchAt(x, y).setPatchVariable(vn, Double.valueOf(newval));
-          }
+    }
+    for (x = minx; x <= maxx; x++) {
+      for (y = miny; y <= maxy; y++) {
+        newval = scratchNew[x - minx][y - miny];
+        if (newval != scratchOld[x - minx][y - miny]) {
+          setPatchVariableDouble(world.fastGetPatchAt(x, y), vn, newval);
         }
       }
-    } catch (ClassCastException ex) {
-      throw new PatchException(world.fastGetPatchAt(x, y));
+    }
+  }
+
+  // used by the diffusers to read and write patch variables as
+  // doubles.  for a variable with columnar storage (see
+  // World.patchColumn) this never boxes.
+  static double patchVariableDouble(Patch patch, int vn)
+      throws PatchException {
+    if (!patch.patchVariableIsDouble(vn)) {
+      throw new PatchException(patch);
+    }
+    return patch.getPatchVariableDouble(vn);
+  }
+
+  static void setPatchVariableDouble(Patch patch, int vn, double value)
+      throws AgentException {
+    if (vn > Patch.LAST_PREDEFINED_VAR) {
+      patch.setPatchVariable(vn, value);
+    } else {
+      patch.setPatchVariable(vn, Double.valueOf(value));
     }
   }
 
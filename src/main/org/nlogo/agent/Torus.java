@@ -3,6 +3,7 @@
 package org.nlogo.agent;
 
 import org.nlogo.api.AgentException;
+import org.nlogo.util.Bands;
 
 strictfp class Torus
     extends Topology {
@@ -145,28 +146,47 @@ strictfp class Torus
   void diffuse(double diffuseparam, int vn)
       throws AgentException, PatchException {
     int xx = world.worldWidth();
-    int xx2 = xx * 2;
     int yy = world.worldHeight();
-    int yy2 = yy * 2;
     double[][] scratch = world.getPatchScratch();
     int x = 0, y = 0;
 
-    try {
-      for (y = 0; y < yy; y++) {
-        for (x = 0; x < xx; x++) {
-          scratch[x][y] =
-              ((Double) world.fastGetPatchAt((int) wrapX(x), (int) wrapY(y))
-                  .getPatchVariable(vn))
-                  .doubleValue();
-        }
+    for (y = 0; y < yy; y++) {
+      for (x = 0; x < xx; x++) {
+        scratch[x][y] = patchVariableDouble(world.fastGetPatchAt((int) wrapX(x), (int) wrapY(y)), vn);
       }
-    } catch (ClassCastException ex) {
-      throw new PatchException(world.fastGetPatchAt
-          ((int) wrapX(x), (int) wrapY(y)));
     }
 
-    for (y = yy; y < yy2; y++) {
-      for (x = xx; x < xx2; x++) {
+    if (vn > Patch.LAST_PREDEFINED_VAR && PatchBands.worthIt(xx * yy)) {
+      final double[][] fscratch = scratch;
+      final double fdiffuseparam = diffuseparam;
+      final int fvn = vn;
+      PatchBands.run(yy, new Bands.Band() {
+        public void run(int start, int end) {
+          try {
+            diffuseRows(fscratch, fdiffuseparam, fvn, start, end);
+          } catch (AgentException ex) {
+            // can't happen, patches-own variables take any double
+            throw new IllegalStateException(ex);
+          }
+        }
+      });
+    } else {
+      diffuseRows(scratch, diffuseparam, vn, 0, yy);
+    }
+  }
+
+  // computes rows start through end - 1 of the diffused grid from the
+  // snapshot in scratch.  for patches-own variables, diffuse() may run
+  // this for several bands of rows at once on different threads; that's
+  // safe since each call only writes to its own patches.
+  private void diffuseRows(double[][] scratch, double diffuseparam, int vn,
+                           int start, int end)
+      throws AgentException {
+    int xx = world.worldWidth();
+    int xx2 = xx * 2;
+    int yy = world.worldHeight();
+    for (int y = yy + start; y < yy + end; y++) {
+      for (int x = xx; x < xx2; x++) {
         double sum;
         sum = scratch[(x - 1) % xx][(y - 1) % yy];
         sum += scratch[(x - 1) % xx][(y) % yy];
@@ -181,8 +201,7 @@ strictfp class Torus
             oldval * (1.0 - diffuseparam)
                 + (sum / 8) * diffuseparam;
         if (newval != oldval) {
-          world.getPatchAt(x - xx, y - yy)
-              .setPatchVariable(vn, Double.valueOf(newval));
+          setPatchVariableDouble(world.getPatchAt(x - xx, y - yy), vn, newval);
         }
       }
     }
@@ -196,23 +215,39 @@ strictfp class Torus
     double[][] scratch = world.getPatchScratch();
 
     int x = 0, y = 0;
-    try {
-      for (y = 0; y < yy; y++) {
-        for (x = 0; x < xx; x++) {
-          scratch[x][y] =
-              ((Double) world.fastGetPatchAt((int) wrapX(x),
-                  (int) wrapY(y))
-                  .getPatchVariable(vn))
-                  .doubleValue();
-        }
+    for (y = 0; y < yy; y++) {
+      for (x = 0; x < xx; x++) {
+        scratch[x][y] = patchVariableDouble(world.fastGetPatchAt((int) wrapX(x), (int) wrapY(y)), vn);
       }
-    } catch (ClassCastException ex) {
-      throw new PatchException(world.fastGetPatchAt((int) wrapX(x),
-          (int) wrapY(y)));
     }
 
-    for (y = 0; y < yy; y++) {
-      for (x = 0; x < xx; x++) {
+    if (vn > Patch.LAST_PREDEFINED_VAR && PatchBands.worthIt(xx * yy)) {
+      final double[][] fscratch = scratch;
+      final double fdiffuseparam = diffuseparam;
+      final int fvn = vn;
+      PatchBands.run(yy, new Bands.Band() {
+        public void run(int start, int end) {
+          try {
+            diffuse4Rows(fscratch, fdiffuseparam, fvn, start, end);
+          } catch (AgentException ex) {
+            // can't happen, patches-own variables take any double
+            throw new IllegalStateException(ex);
+          }
+        }
+      });
+    } else {
+      diffuse4Rows(scratch, diffuseparam, vn, 0, yy);
+    }
+  }
+
+  // like diffuseRows(), for diffuse4()
+  private void diffuse4Rows(double[][] scratch, double diffuseparam, int vn,
+                            int start, int end)
+      throws AgentException {
+    int xx = world.worldWidth();
+    int yy = world.worldHeight();
+    for (int y = start; y < end; y++) {
+      for (int x = 0; x < xx; x++) {
         double sum = 0;
         sum += scratch[(x + xx - 1) % xx][(y + yy) % yy];  // left patch
         sum += scratch[(x + xx) % xx][(y + yy + 1) % yy];  // top patch
@@ -221,7 +256,7 @@ strictfp class Torus
 
         double newval = scratch[x][y] * (1 - diffuseparam) + sum * diffuseparam / 4;
         if (newval != scratch[x][y]) {
-          world.getPatchAt(x, y).setPatchVariable(vn, Double.valueOf(newval));
+          setPatchVariableDouble(world.getPatchAt(x, y), vn, newval);
         }
       }
     }
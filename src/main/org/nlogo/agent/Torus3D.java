@@ -3,6 +3,7 @@
 package org.nlogo.agent;
 
 import org.nlogo.api.AgentException;
+import org.nlogo.util.Bands;
 
 public final strictfp class Torus3D
     extends Torus
@@ -54,11 +55,8 @@ public final strictfp class Torus3D
     World3D w = (World3D) world;
 
     int xx = w.worldWidth();
-    int xx2 = xx * 2;
     int yy = w.worldHeight();
-    int yy2 = yy * 2;
     int zz = w.worldDepth();
-    int zz2 = zz * 2;
     double[][][] scratch = w.getPatchScratch3d();
     int x = 0, y = 0, z = 0;
     try {
@@ -79,9 +77,41 @@ public final strictfp class Torus3D
           ((int) wrapX(x), (int) wrapY(y), (int) wrapZ(z)));
     }
 
-    for (z = zz; z < zz2; z++) {
-      for (y = yy; y < yy2; y++) {
-        for (x = xx; x < xx2; x++) {
+    if (vn > Patch3D.LAST_PREDEFINED_VAR_3D && PatchBands.worthIt(xx * yy * zz)) {
+      final double[][][] fscratch = scratch;
+      final double fdiffuseparam = diffuseparam;
+      final int fvn = vn;
+      PatchBands.run(zz, new Bands.Band() {
+        public void run(int start, int end) {
+          try {
+            diffuseLayers(fscratch, fdiffuseparam, fvn, start, end);
+          } catch (AgentException ex) {
+            // can't happen, patches-own variables take any value
+            throw new IllegalStateException(ex);
+          }
+        }
+      });
+    } else {
+      diffuseLayers(scratch, diffuseparam, vn, 0, zz);
+    }
+  }
+
+  // computes layers start through end - 1 of the diffused grid from
+  // the snapshot in scratch.  for patches-own variables, diffuse() may
+  // run this for several bands of layers at once on different threads;
+  // that's safe since each call only writes to its own patches.
+  private void diffuseLayers(double[][][] scratch, double diffuseparam, int vn,
+                             int start, int end)
+      throws AgentException {
+    World3D w = (World3D) world;
+    int xx = w.worldWidth();
+    int xx2 = xx * 2;
+    int yy = w.worldHeight();
+    int yy2 = yy * 2;
+    int zz = w.worldDepth();
+    for (int z = zz + start; z < zz + end; z++) {
+      for (int y = yy; y < yy2; y++) {
+        for (int x = xx; x < xx2; x++) {
           double sum;
           sum = scratch[(x - 1) % xx][(y - 1) % yy][(z) % zz];
           sum += scratch[(x - 1) % xx][(y) % yy][(z) % zz];
@@ -7,15 +7,16 @@ import java.util.TreeMap;
 
 import org.nlogo.api.LogoList;
 
-// Used only for the all-turtles, all-links and the breed agentsets.
+// Used only for the all-links and the link breed agentsets.  (The
+// all-turtles and turtle breed agentsets are WhoAgentSets.)
 
 public strictfp class TreeAgentSet
     extends AgentSet {
 
-  // we use a tree map here so that regardless of what order the turtles
-  // are put in they come out in the same order (by who number) otherwise
-  // we get different results after an import and export. since we don't
-  // know the order that the turtles entered the breed agentset.
+  // we use a tree map here so that regardless of what order the links
+  // are put in they come out in the same order otherwise we get
+  // different results after an import and export. since we don't
+  // know the order that the links entered the breed agentset.
   final Map<Object, Agent> agents = new TreeMap<Object, Agent>();
 
   @Override
@@ -221,48 +222,12 @@ public strictfp class TreeAgentSet
     // note it at the moment (and this should probably be fixed)
     // Job.runExclusive() counts on this making a copy of the
     // contents of the agentset - ST 12/15/05
-    return new Shufflerator(random);
-  }
-
-  private class Shufflerator
-      extends Iterator {
-    private int i = 0;
-    private final Agent[] copy;
-    private Agent next;
-    private final org.nlogo.util.MersenneTwisterFast random;
-
-    Shufflerator(org.nlogo.util.MersenneTwisterFast random) {
-      copy = agents.values().toArray(new Agent[agents.size()]);
-      this.random = random;
-      fetch();
-    }
-
-    @Override
-    public boolean hasNext() {
-      return next != null;
-    }
-
-    @Override
-    public Agent next() {
-      Agent result = next;
-      fetch();
-      return result;
-    }
-
-    private void fetch() {
-      if (i >= copy.length) {
-        next = null;
-      } else {
-        if (i < copy.length - 1) {
-          int r = i + random.nextInt(copy.length - i);
-          next = copy[r];
-          copy[r] = copy[i];
-        } else {
-          next = copy[i];
-        }
-        i++;
-      }
+    Agent[] copy = Shufflerator.borrow(agents.size());
+    int n = 0;
+    for (Agent agent : agents.values()) {
+      copy[n++] = agent;
     }
+    return new Shufflerator(copy, 0, n, false, random);
   }
 }
 
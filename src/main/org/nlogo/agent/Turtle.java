@@ -105,6 +105,11 @@ public strictfp class Turtle
     super(world);
   }
 
+  // the links this turtle is end1 of and end2 of, in the order they
+  // were made.  maintained by LinkManager; null if there aren't any
+  LinkManager.Adjacency outLinks = null;
+  LinkManager.Adjacency inLinks = null;
+
   public Turtle hatch() {
     Turtle child = new Turtle(world);
     child.heading = heading;
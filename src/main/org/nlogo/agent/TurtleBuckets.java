@@ -0,0 +1,57 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.agent;
+
+// Counts the turtles in coarse square blocks of patches ("buckets"),
+// kept up to date by Patch.addTurtle() and friends.  When in-radius or
+// in-cone is looking for turtles on a big or sparsely populated world,
+// it can use this to jump over an empty bucket in one step instead of
+// visiting each of its patches.  Only the x and y coordinates are used
+// to pick a bucket, so in 3D a bucket is a column through all the z
+// layers.
+
+final strictfp class TurtleBuckets {
+
+  static final int SIZE = 8;
+
+  private final int minPxcor;
+  private final int maxPxcor;
+  private final int maxPycor;
+  private final int bucketsWide;
+  private final int[] counts;
+
+  TurtleBuckets(int minPxcor, int maxPxcor, int minPycor, int maxPycor) {
+    this.minPxcor = minPxcor;
+    this.maxPxcor = maxPxcor;
+    this.maxPycor = maxPycor;
+    bucketsWide = (maxPxcor - minPxcor) / SIZE + 1;
+    int bucketsHigh = (maxPycor - minPycor) / SIZE + 1;
+    counts = new int[bucketsWide * bucketsHigh];
+  }
+
+  private int bucket(Patch patch) {
+    return (patch.pxcor - minPxcor) / SIZE +
+        (maxPycor - patch.pycor) / SIZE * bucketsWide;
+  }
+
+  void add(Patch patch) {
+    counts[bucket(patch)]++;
+  }
+
+  void remove(Patch patch, int n) {
+    counts[bucket(patch)] -= n;
+  }
+
+  // returns how many of the patches directly east of this one we can
+  // skip over, because they're in the same bucket and the bucket has
+  // no turtles in it.  returns 0 if the bucket isn't empty.
+  int emptyRun(Patch patch) {
+    if (counts[bucket(patch)] != 0) {
+      return 0;
+    }
+    int bucketEast =
+        minPxcor + ((patch.pxcor - minPxcor) / SIZE + 1) * SIZE - 1;
+    return StrictMath.min(bucketEast, maxPxcor) - patch.pxcor;
+  }
+
+}
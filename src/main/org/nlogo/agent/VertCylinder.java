@@ -102,19 +102,11 @@ final strictfp class VertCylinder
     int minx = world.minPxcor();
     int miny = world.minPycor();
 
-    try {
-      for (y = 0; y < yy; y++) {
-        for (x = 0; x < xx; x++) {
-          scratch[x][y] =
-              ((Double) world.fastGetPatchAt(x + minx, y + miny)
-                  .getPatchVariable(vn))
-                  .doubleValue();
-          scratch2[x][y] = 0;
-        }
+    for (y = 0; y < yy; y++) {
+      for (x = 0; x < xx; x++) {
+        scratch[x][y] = patchVariableDouble(world.fastGetPatchAt(x + minx, y + miny), vn);
+        scratch2[x][y] = 0;
       }
-    } catch (ClassCastException ex) {
-      throw new PatchException(world.fastGetPatchAt
-          ((int) wrapX(x), (int) wrapY(y)));
     }
 
     for (y = yy; y < yy2; y++) {
@@ -153,8 +145,7 @@ final strictfp class VertCylinder
     for (y = 0; y < yy; y++) {
       for (x = 0; x < xx; x++) {
         if (scratch2[x][y] != scratch[x][y]) {
-          world.getPatchAtWrap(x + minx, y + miny)
-              .setPatchVariable(vn, Double.valueOf(scratch2[x][y]));
+          setPatchVariableDouble(world.getPatchAtWrap(x + minx, y + miny), vn, scratch2[x][y]);
         }
       }
     }
@@ -173,19 +164,11 @@ final strictfp class VertCylinder
     int minx = world.minPxcor();
     int miny = world.minPycor();
 
-    try {
-      for (y = 0; y < yy; y++) {
-        for (x = 0; x < xx; x++) {
-          scratch[x][y] =
-              ((Double) world.fastGetPatchAt(x + minx, y + miny)
-                  .getPatchVariable(vn))
-                  .doubleValue();
-          scratch2[x][y] = 0;
-        }
+    for (y = 0; y < yy; y++) {
+      for (x = 0; x < xx; x++) {
+        scratch[x][y] = patchVariableDouble(world.fastGetPatchAt(x + minx, y + miny), vn);
+        scratch2[x][y] = 0;
       }
-    } catch (ClassCastException ex) {
-      throw new PatchException(world.fastGetPatchAt
-          ((int) wrapX(x), (int) wrapY(y)));
     }
 
     for (y = yy; y < yy2; y++) {
@@ -216,8 +199,7 @@ final strictfp class VertCylinder
     for (y = 0; y < yy; y++) {
       for (x = 0; x < xx; x++) {
         if (scratch2[x][y] != scratch[x][y]) {
-          world.getPatchAtWrap(x + minx, y + miny)
-              .setPatchVariable(vn, Double.valueOf(scratch2[x][y]));
+          setPatchVariableDouble(world.getPatchAtWrap(x + minx, y + miny), vn, scratch2[x][y]);
         }
       }
     }
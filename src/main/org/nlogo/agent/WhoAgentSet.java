@@ -0,0 +1,487 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.agent;
+
+import java.util.Arrays;
+
+import org.nlogo.api.LogoList;
+
+// Used only for the all-turtles and the turtle breed agentsets.
+
+// Like TreeAgentSet, agents always come out in who number order,
+// regardless of the order they were put in, so that results don't
+// change after an export and import.  But instead of a TreeMap keyed
+// on boxed who numbers we keep the agents in an array sorted by who
+// number, plus a table mapping who numbers to array slots.  That makes
+// lookup and membership tests O(1) without allocating.  The table starts
+// at the lowest who number in the set, not at 0, so in a model where
+// turtles are born and die every tick it stays about as big as the set
+// instead of growing with every turtle ever made; if the who numbers in
+// the set are too spread out for a table (say turtle 0 lives forever
+// while thousands of others come and go), we use a hash table of
+// primitive longs and ints instead (see Sparse), and go back to the
+// array once they're close enough together again.  Dead turtles
+// leave a null tombstone behind; the array is compacted (into a fresh
+// array, so iterators already in progress aren't disturbed) the next
+// time we need positional access, e.g. for one-of.
+
+public strictfp class WhoAgentSet
+    extends AgentSet {
+
+  // agents in who number order, with nulls where agents were removed.
+  // only the first "end" slots are in use.
+  private Agent[] agents = new Agent[0];
+  private int end = 0;
+  private int count = 0;
+
+  // slots[who - base] is the index of that turtle in agents, or -1.
+  // when sparse isn't null, it has the indexes instead.
+  private int[] slots = new int[0];
+  private long base = 0;
+  private Sparse sparse = null;
+  // changes to sparse since we last checked whether the table would do
+  // again (see checkDensity)
+  private int sparseChanges = 0;
+
+  // false if add() appended an agent with a lower who number than
+  // the last one, e.g. because an existing turtle changed breeds
+  private boolean sorted = true;
+  private long lastWho = -1;
+
+  public WhoAgentSet(Class<? extends Agent> type, String printName, World world) {
+    super(type, world, printName, true);
+  }
+
+  @Override
+  public int count() {
+    return count;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return count == 0;
+  }
+
+  // This assumes we've already checked that the counts
+  // are equal. - ST 7/6/06
+  @Override
+  boolean equalAgentSetsHelper(org.nlogo.api.AgentSet otherSet) {
+    for (org.nlogo.api.Agent a : otherSet.agents()) {
+      if (!contains((Agent) a)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int slot(long who) {
+    if (sparse != null) {
+      return sparse.get(who);
+    }
+    return who >= base && who - base < slots.length
+        ? slots[(int) (who - base)]
+        : -1;
+  }
+
+  // who must already have room in the table (see reindex)
+  private void setSlot(long who, int slot) {
+    if (sparse != null) {
+      if (slot == -1) {
+        sparse.remove(who);
+      } else {
+        sparse.put(who, slot);
+      }
+      sparseChanges++;
+    } else {
+      slots[(int) (who - base)] = slot;
+    }
+  }
+
+  // rebuilds the who number table from agents, making room for the given
+  // who number too (pass -1 if there isn't one).  a dense table covers the
+  // who numbers in use with some room to spare above, so a run of births
+  // doesn't rebuild it every time.
+  private void reindex(long who) {
+    long lo = who;
+    long hi = who;
+    for (int i = 0; i < end; i++) {
+      if (agents[i] != null && agents[i].id != -1) {
+        long id = agents[i].id;
+        if (lo == -1 || id < lo) {
+          lo = id;
+        }
+        hi = StrictMath.max(hi, id);
+      }
+    }
+    long span = lo == -1 ? 0 : hi - lo + 1;
+    sparseChanges = 0;
+    if (span > 4L * count + 64) {
+      sparse = new Sparse(count + 1);
+      slots = new int[0];
+      base = 0;
+    } else {
+      sparse = null;
+      slots = new int[(int) (span + span / 2 + 16)];
+      Arrays.fill(slots, -1);
+      base = lo == -1 ? 0 : lo;
+    }
+    for (int i = 0; i < end; i++) {
+      if (agents[i] != null && agents[i].id != -1) {
+        setSlot(agents[i].id, i);
+      }
+    }
+  }
+
+  @Override
+  public Agent agent(long i) {
+    int slot = slot(i);
+    if (slot == -1) {
+      return null;
+    }
+    Agent agent = agents[slot];
+    if (agent.id == -1) {
+      agents[slot] = null;
+      setSlot(i, -1);
+      count--;
+      return null;
+    }
+    return agent;
+  }
+
+  @Override
+  Agent getAgent(Object id) {
+    int slot = slot(((Double) id).longValue());
+    return slot == -1 ? null : agents[slot];
+  }
+
+  /**
+   * It is the caller's responsibility not to add an agent that
+   * is already in the set.
+   */
+  @Override
+  public void add(Agent agent) {
+    if (agent.getAgentClass() != type) {
+      throw new IllegalStateException();
+    }
+    long who = agent.id;
+    if (end == agents.length) {
+      // compact rather than grow if that frees up enough room
+      if (end - count > end / 2) {
+        compact();
+      }
+      if (end == agents.length) {
+        Agent[] newAgents = new Agent[StrictMath.max(16, end * 2)];
+        System.arraycopy(agents, 0, newAgents, 0, end);
+        agents = newAgents;
+      }
+    }
+    if (who < lastWho) {
+      sorted = false;
+    }
+    lastWho = who;
+    if (sparse == null && (who < base || who - base >= slots.length)) {
+      reindex(who);
+    }
+    agents[end] = agent;
+    setSlot(who, end);
+    end++;
+    count++;
+    checkDensity();
+  }
+
+  // while we're using sparse, once there have been about as many changes
+  // as there are agents, rebuild, in case the table would do now (e.g.
+  // because the one old turtle that spread things out has died).  that
+  // costs a pass over agents, but no more than once per that many changes.
+  private void checkDensity() {
+    if (sparse != null && sparseChanges > end + 16) {
+      reindex(-1);
+    }
+  }
+
+  // for tests
+  boolean isSparse() {
+    return sparse != null;
+  }
+
+  // made public for mutable agentset operations
+  @Override
+  public void remove(Object key) {
+    long who = ((Double) key).longValue();
+    int slot = slot(who);
+    if (slot != -1) {
+      agents[slot] = null;
+      setSlot(who, -1);
+      count--;
+      checkDensity();
+    }
+  }
+
+  @Override
+  void clear() {
+    agents = new Agent[0];
+    slots = new int[0];
+    base = 0;
+    sparse = null;
+    sparseChanges = 0;
+    end = 0;
+    count = 0;
+    sorted = true;
+    lastWho = -1;
+  }
+
+  @Override
+  public boolean contains(Agent agent) {
+    int slot = slot(agent.id);
+    return slot != -1 && agents[slot] == agent;
+  }
+
+  // squeezes out the tombstones and restores who number order, so
+  // that agents[0..count) are exactly the agents in the set.  always
+  // builds a fresh array, since iterators may still be reading the
+  // old one.
+  private void compact() {
+    if (end == count && sorted) {
+      return;
+    }
+    Agent[] result = new Agent[StrictMath.max(16, count + count / 2)];
+    int j = 0;
+    for (int i = 0; i < end; i++) {
+      if (agents[i] != null) {
+        result[j++] = agents[i];
+      }
+    }
+    if (!sorted) {
+      Arrays.sort(result, 0, j);
+      sorted = true;
+    }
+    agents = result;
+    end = j;
+    lastWho = j == 0 ? -1 : result[j - 1].id;
+    reindex(-1);
+  }
+
+  // the next few methods take precomputedCount as an argument since
+  // we want to avoid _randomoneof and _randomnof resulting in
+  // more than one total call to count(), since count() can
+  // be O(n) - ST 2/27/03
+
+  @Override
+  public Agent randomOne(int precomputedCount, int random) {
+    // note: we can assume agentset is nonempty , since _randomoneof.java checks for that
+    compact();
+    return agents[random];
+  }
+
+  // This is used to optimize the special case of randomSubset where
+  // size == 2
+  @Override
+  Agent[] randomTwo(int precomputedCount, int random1, int random2) {
+    // we know precomputedCount, or this method would not have been called.
+    // see randomSubset().
+    if (random2 >= random1) {
+      // if random2 >= random1, we need to increment random2 to choose a
+      // later agent.
+      random2++;
+    } else {
+      // if random2 < random1, we swap them so our indices are in order.
+      int tmp = random1;
+      random1 = random2;
+      random2 = tmp;
+    }
+    compact();
+    return new Agent[]{agents[random1], agents[random2]};
+  }
+
+  @Override
+  Agent[] randomSubsetGeneral(int resultSize, int precomputedCount,
+                              org.nlogo.util.MersenneTwisterFast randomerator) {
+    compact();
+    Agent result[] = new Agent[resultSize];
+    for (int i = 0, j = 0; j < resultSize; i++) {
+      if (randomerator.nextInt(precomputedCount - i)
+          < resultSize - j) {
+        result[j] = agents[i];
+        j++;
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public LogoList toLogoList() {
+    return LogoList.fromJava(Arrays.asList(toArray()));
+  }
+
+  @Override
+  public Agent[] toArray() {
+    compact();
+    Agent[] result = new Agent[count];
+    System.arraycopy(agents, 0, result, 0, count);
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder s = new StringBuilder("WhoAgentSet");
+    s = s.append("\n...... type: ");
+    s = s.append(type == null ? "null" : type.toString());
+    s = s.append("\n...... count(): " + count());
+    s = s.append("\n...... agents: ");
+    for (AgentSet.Iterator iter = iterator(); iter.hasNext();) {
+      s = s.append("\n" + iter.next().toString());
+    }
+    return s.toString();
+  }
+
+  // iterates over the array as it was when the iterator was made,
+  // skipping tombstones and dead turtles
+  public class Iterator
+      implements AgentSet.Iterator {
+    private final Agent[] array;
+    private final int limit;
+    private int index = 0;
+
+    Iterator() {
+      compact();
+      array = agents;
+      limit = end;
+      skip();
+    }
+
+    private void skip() {
+      while (index < limit &&
+          (array[index] == null || array[index].id == -1)) {
+        index++;
+      }
+    }
+
+    public boolean hasNext() {
+      return index < limit;
+    }
+
+    public Agent next() {
+      if (index >= limit) {
+        throw new java.util.NoSuchElementException();
+      }
+      Agent result = array[index++];
+      skip();
+      return result;
+    }
+
+    public void remove() {
+      throw new UnsupportedOperationException
+          ("remove() not supported");
+    }
+  }
+
+  // returns an Iterator object of the appropriate class
+  @Override
+  public AgentSet.Iterator iterator() {
+    return new Iterator();
+  }
+
+  /// shuffling iterator = shufflerator! (Google hits: 0)
+
+  @Override
+  public AgentSet.Iterator shufflerator(org.nlogo.util.MersenneTwisterFast random) {
+    // note it at the moment (and this should probably be fixed)
+    // Job.runExclusive() counts on this making a copy of the
+    // contents of the agentset - ST 12/15/05
+    compact();
+    Agent[] copy = Shufflerator.borrow(count);
+    System.arraycopy(agents, 0, copy, 0, count);
+    return new Shufflerator(copy, 0, count, false, random);
+  }
+
+  // who number -> index in agents, or -1, like slots.  open addressing
+  // with linear probing, so nothing gets boxed.  who numbers are never
+  // negative, so -1 marks an empty entry; remove() shifts the entries
+  // after it back, so there are no deleted markers to skip over.
+  private static final class Sparse {
+    private long[] keys;
+    private int[] values;
+    private int size = 0;
+
+    Sparse(int expected) {
+      int capacity = 16;
+      while (capacity < expected * 2) {
+        capacity *= 2;
+      }
+      keys = new long[capacity];
+      values = new int[capacity];
+      Arrays.fill(keys, -1);
+    }
+
+    private int home(long who) {
+      long hash = who * 0x9E3779B97F4A7C15L;
+      return (int) (hash >>> 32) & (keys.length - 1);
+    }
+
+    int get(long who) {
+      int mask = keys.length - 1;
+      for (int i = home(who); ; i = (i + 1) & mask) {
+        if (keys[i] == who) {
+          return values[i];
+        }
+        if (keys[i] == -1) {
+          return -1;
+        }
+      }
+    }
+
+    void put(long who, int value) {
+      if ((size + 1) * 2 > keys.length) {
+        grow();
+      }
+      int mask = keys.length - 1;
+      int i = home(who);
+      while (keys[i] != -1 && keys[i] != who) {
+        i = (i + 1) & mask;
+      }
+      if (keys[i] == -1) {
+        keys[i] = who;
+        size++;
+      }
+      values[i] = value;
+    }
+
+    void remove(long who) {
+      int mask = keys.length - 1;
+      int i = home(who);
+      while (keys[i] != who) {
+        if (keys[i] == -1) {
+          return;
+        }
+        i = (i + 1) & mask;
+      }
+      // move back any later entry in the run that would otherwise no
+      // longer be found from its home
+      for (int j = (i + 1) & mask; keys[j] != -1; j = (j + 1) & mask) {
+        int h = home(keys[j]);
+        boolean reachable = i <= j ? (i < h && h <= j) : (i < h || h <= j);
+        if (!reachable) {
+          keys[i] = keys[j];
+          values[i] = values[j];
+          i = j;
+        }
+      }
+      keys[i] = -1;
+      size--;
+    }
+
+    private void grow() {
+      long[] oldKeys = keys;
+      int[] oldValues = values;
+      keys = new long[oldKeys.length * 2];
+      values = new int[oldKeys.length * 2];
+      Arrays.fill(keys, -1);
+      size = 0;
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] != -1) {
+          put(oldKeys[i], oldValues[i]);
+        }
+      }
+    }
+  }
+}
@@ -72,6 +72,7 @@ public strictfp class World
   public TieManager tieManager;
 
   public InRadiusOrCone inRadiusOrCone;
+  TurtleBuckets turtleBuckets;
 
   // This is a flag that the engine checks in its tightest innermost loops
   // to see if maybe it should stop running NetLogo code for a moment
@@ -562,7 +563,7 @@ public strictfp class World
   }
 
   public Turtle getTurtle(long id) {
-    return (Turtle) _turtles.getAgent(Double.valueOf(id));
+    return (Turtle) _turtles.agent(id);
   }
 
   public Link getLink(Object end1, Object end2, AgentSet breed) {
@@ -575,8 +576,14 @@ public strictfp class World
 
   void nextTurtleIndex(long nextTurtleIndex) {
     this.nextTurtleIndex = nextTurtleIndex;
+    agentIdGeneration++;
   }
 
+  // bumped whenever patch ids, who numbers or link ids may get reused
+  // by a different agent.  ArrayAgentSet uses this to know when its
+  // id-keyed membership index has gone stale.
+  int agentIdGeneration = 0;
+
   long nextTurtleIndex() {
     return nextTurtleIndex;
   }
@@ -687,6 +694,7 @@ public strictfp class World
   public void createPatches(int minPxcor, int maxPxcor,
                             int minPycor, int maxPycor) {
     patchScratch = null;
+    agentIdGeneration++;
     _minPxcor = minPxcor;
     _maxPxcor = maxPxcor;
     _minPycor = minPycor;
@@ -695,6 +703,7 @@ public strictfp class World
     _worldHeight = maxPycor - minPycor + 1;
 
     rootsTable = new RootsTable(_worldWidth, _worldHeight);
+    turtleBuckets = new TurtleBuckets(minPxcor, maxPxcor, minPycor, maxPycor);
 
     _worldWidthBoxed = Double.valueOf(_worldWidth);
     _worldHeightBoxed = Double.valueOf(_worldHeight);
@@ -715,7 +724,7 @@ public strictfp class World
         ((AgentSet) iter.next()).clear();
       }
     }
-    _turtles = new TreeAgentSet(Turtle.class, "TURTLES", this);
+    _turtles = new WhoAgentSet(Turtle.class, "TURTLES", this);
     _links = new TreeAgentSet(Link.class, "LINKS", this);
 
     int x = minPxcor;
@@ -739,6 +748,7 @@ public strictfp class World
       patchArray[i] = patch;
     }
     _patches = new ArrayAgentSet(Patch.class, patchArray, "patches", this);
+    allocatePatchColumns();
     patchesWithLabels = 0;
     patchesAllBlack = true;
     mayHavePartiallyTransparentObjects = false;
@@ -824,6 +834,7 @@ public strictfp class World
       ((Patch) iter.next()).clearTurtles();
     }
     nextTurtleIndex = 0;
+    agentIdGeneration++;
     _observer.updatePosition();
   }
 
@@ -841,6 +852,7 @@ public strictfp class World
     }
     _links.clear();
     nextLinkIndex = 0;
+    agentIdGeneration++;
     linkManager.reset();
   }
 
@@ -878,7 +890,7 @@ public strictfp class World
       if (breed == null) {
         _program.breeds().put
             (breedName,
-                new TreeAgentSet(Turtle.class, breedName.toUpperCase(), this));
+                new WhoAgentSet(Turtle.class, breedName.toUpperCase(), this));
       } else {
         _program.breeds().put(breedName, breed);
       }
@@ -899,8 +911,10 @@ public strictfp class World
     }
     List<Agent> doomedAgents = new ArrayList<Agent>();
     // call Agent.realloc() on all the turtles
+    // Note: like patches, we only need to if the variables or breeds have
+    // changed.  usually only procedure bodies have.
     try {
-      if (_turtles != null) {
+      if (_turtles != null && turtleDeclarationsChanged()) {
         for (AgentSet.Iterator iter = _turtles.iterator(); iter.hasNext();) {
           Agent agt = iter.next().realloc(true);
           if (agt != null) {
@@ -917,7 +931,7 @@ public strictfp class World
     }
     // call Agent.realloc() on all links
     try {
-      if (_links != null) {
+      if (_links != null && linkDeclarationsChanged()) {
         for (AgentSet.Iterator iter = _links.iterator(); iter.hasNext();) {
           Agent agt = iter.next().realloc(true);
           if (agt != null) {
@@ -937,9 +951,11 @@ public strictfp class World
       // Note: we only need to realloc() if the patch variables have changed.
       //  ~Forrest ( 5/2/2007)
       if (_patches != null && !_program.patchesOwn().equals(oldPatchesOwn)) {
+        boxPatchColumns();
         for (AgentSet.Iterator iter = _patches.iterator(); iter.hasNext();) {
           iter.next().realloc(true);
         }
+        allocatePatchColumns();
       }
     } catch (AgentException ex) {
       throw new IllegalStateException(ex);
@@ -951,6 +967,18 @@ public strictfp class World
     linkBreedShapes.setUpBreedShapes(false, _program.linkBreeds());
   }
 
+  private boolean turtleDeclarationsChanged() {
+    return !_program.turtlesOwn().equals(oldTurtlesOwn)
+        || !_program.breedsOwn().equals(oldBreedsOwn)
+        || !_program.breeds().keySet().equals(oldBreeds.keySet());
+  }
+
+  private boolean linkDeclarationsChanged() {
+    return !_program.linksOwn().equals(oldLinksOwn)
+        || !_program.linkBreedsOwn().equals(oldLinkBreedsOwn)
+        || !_program.linkBreeds().keySet().equals(oldLinkBreeds.keySet());
+  }
+
   /// patch scratch
   //  a scratch area that can be used by commands such as _diffuse
 
@@ -963,6 +991,59 @@ public strictfp class World
     return patchScratch;
   }
 
+  /// columnar patch variables
+  //  optional storage for patches-own variables as one double[] per
+  //  variable, indexed by patch id, so numeric writes from diffuse etc.
+  //  don't have to box.  a null in Patch.variables means "the value is
+  //  in the column", the same trick Patch already plays with pcolor.
+  //  anything non-null (a boxed Double, or a non-number) wins over the
+  //  column, so code that writes Patch.variables directly stays correct.
+
+  private boolean columnarPatchVariables =
+      Boolean.getBoolean("org.nlogo.columnarPatchVariables");
+  double[][] patchColumns;
+
+  public boolean columnarPatchVariables() {
+    return columnarPatchVariables;
+  }
+
+  public void columnarPatchVariables(boolean columnarPatchVariables) {
+    if (this.columnarPatchVariables != columnarPatchVariables) {
+      boxPatchColumns();
+      this.columnarPatchVariables = columnarPatchVariables;
+      allocatePatchColumns();
+    }
+  }
+
+  // returns null for built-in variables, or if columnar storage is off
+  public double[] patchColumn(int vn) {
+    return patchColumns == null ? null : patchColumns[vn];
+  }
+
+  void allocatePatchColumns() {
+    patchColumns = null;
+    if (columnarPatchVariables && _patches != null) {
+      int numVariables = _program.patchesOwn().size();
+      int numPatches = _patches.count();
+      double[][] columns = new double[numVariables][];
+      for (int vn = Patch.LAST_PREDEFINED_VAR + 1; vn < numVariables; vn++) {
+        columns[vn] = new double[numPatches];
+      }
+      patchColumns = columns;
+    }
+  }
+
+  // moves values that only live in a column back into the patches'
+  // variables arrays, so the columns can be safely thrown away
+  void boxPatchColumns() {
+    if (patchColumns != null) {
+      for (AgentSet.Iterator iter = _patches.iterator(); iter.hasNext();) {
+        ((Patch) iter.next()).boxColumns(patchColumns);
+      }
+      patchColumns = null;
+    }
+  }
+
   /// agent-owns
 
   public int indexOfVariable(Class<? extends Agent> agentClass, String name) {
@@ -209,6 +209,7 @@ public final strictfp class World3D
                             int minPzcor, int maxPzcor) {
     patchScratch = null;
     patchScratch3d = null;
+    agentIdGeneration++;
     _minPxcor = minPxcor;
     _maxPxcor = maxPxcor;
     _minPycor = minPycor;
@@ -220,6 +221,7 @@ public final strictfp class World3D
     _worldDepth = _maxPzcor - _minPzcor + 1;
 
     rootsTable = new RootsTable(_worldWidth, _worldHeight);
+    turtleBuckets = new TurtleBuckets(minPxcor, maxPxcor, minPycor, maxPycor);
 
     _worldWidthBoxed = Double.valueOf(_worldWidth);
     _worldHeightBoxed = Double.valueOf(_worldHeight);
@@ -237,7 +239,7 @@ public final strictfp class World3D
         ((AgentSet) iter.next()).clear();
       }
     }
-    _turtles = new TreeAgentSet(Turtle.class, "TURTLES", this);
+    _turtles = new WhoAgentSet(Turtle.class, "TURTLES", this);
     _links = new TreeAgentSet(Link.class, "LINKS", this);
 
     int x = _minPxcor;
@@ -305,6 +307,12 @@ public final strictfp class World3D
     return patchScratch3d;
   }
 
+  // Patch3D doesn't know about columnar patch variables yet
+  @Override
+  void allocatePatchColumns() {
+    patchColumns = null;
+  }
+
   // these methods are primarily for behaviorspace
   // to vary the size of the world without
   // knowing quite so much about the world.
@@ -6,4 +6,8 @@ import java.util.{ Collections, List => JList }
 
 final case class Let(varName: String, startPos: Int, endPos: Int, children: JList[Let]) {
   def this() = this(null, -1, -1, Collections.emptyList[Let])
+  // filled in by the compiler: whose frame the variable lives in (the procedure or reporter task
+  // that binds it) and its slot there (see nvm.LetFrame)
+  var scope: AnyRef = null
+  var index = -1
 }
@@ -5,54 +5,137 @@ package org.nlogo.api
 import collection.immutable.{ Vector, VectorBuilder }
 
 object LogoList {
-  val Empty = new LogoList(Vector[AnyRef]())
-  def apply(objs: AnyRef*) = new LogoList(Vector[AnyRef]() ++ objs)
+  val Empty = new LogoList(Vector[AnyRef](), null, null, 0)
+  def apply(objs: AnyRef*) = fromIterator(objs.iterator)
   def fromJava(objs: java.lang.Iterable[_ <: AnyRef]) = {
     import collection.JavaConverters._
     fromIterator(objs.iterator.asScala)
   }
-  def fromIterator(it: scala.Iterator[AnyRef]) =
-    new LogoList(Vector[AnyRef]() ++ it)
+  def fromIterator(it: scala.Iterator[AnyRef]) = {
+    val b = new LogoListBuilder
+    while(it.hasNext)
+      b.add(it.next())
+    b.toLogoList
+  }
   def fromVector(v: Vector[AnyRef]) =
-    new LogoList(v)
+    new LogoList(v, null, null, 0)
+  // we keep the array, so the caller mustn't change it afterwards
+  def fromDoubles(ds: Array[Double]) =
+    if(ds.isEmpty) Empty
+    else new LogoList(null, ds, null, 0)
+  // the first n items of the array.  we keep the array, so the caller mustn't change those
+  // afterwards, though adding more after them is fine (see nvm.TransientList)
+  def fromArray(objs: Array[AnyRef], n: Int) =
+    if(n == 0) Empty
+    else new LogoList(null, null, objs, n)
   implicit def toIterator(ll:LogoList) = ll.scalaIterator
 }
 
-class LogoList private (private val v: Vector[AnyRef])
+// A list of numbers may be backed by an array of unboxed doubles instead of a Vector.  Prims like
+// sum and sort can use the array directly (see isDoubles), so a big list of numbers doesn't need
+// a Double object per item.  Anything that changes the list (fput, lput, replace-item, and so on)
+// gives back an ordinary Vector-backed list, whether or not what was added is a number, since
+// copying the array each time would make building up a list in a loop quadratic.  The first such
+// change boxes all the numbers, once; we hang on to the Vector in case there's another.
+// LogoListBuilder makes the array-backed kind when everything added to it is a number.
+//
+// A list can also be the first n items of an array of objects.  That's how nvm.TransientList,
+// which lput and replace-item on a local variable change in place, hands out its contents without
+// copying them.  Those lists also turn into Vector-backed ones as soon as they're changed.
+
+class LogoList private (@volatile private var vector: Vector[AnyRef],
+                        private val ds: Array[Double],
+                        private val objs: Array[AnyRef], private val n: Int)
 extends java.util.AbstractSequentialList[AnyRef] with Serializable {
 
-  def scalaIterator = v.iterator
+  // if two threads get here at once, they both build the same Vector, which is fine
+  private def v: Vector[AnyRef] = {
+    if(vector == null) {
+      val b = new VectorBuilder[AnyRef]
+      if(ds != null) {
+        var i = 0
+        while(i < ds.length) {
+          b += Double.box(ds(i))
+          i += 1
+        }
+      }
+      else {
+        var i = 0
+        while(i < n) {
+          b += objs(i)
+          i += 1
+        }
+      }
+      vector = b.result
+    }
+    vector
+  }
+
+  def scalaIterator: scala.Iterator[AnyRef] =
+    if(ds != null) new DoublesIterator
+    else if(objs != null) objs.iterator.take(n)
+    else v.iterator
   def toVector = v
 
+  /** true if every item is a number and doubles is available */
+  def isDoubles = ds != null
+  /** the items, unboxed, if isDoubles; otherwise null. callers mustn't change the array */
+  def doubles: Array[Double] = ds
+
   /// methods required by AbstractSequentialList
 
-  override def get(index: Int) = v(index)
-  override def size = v.size
+  override def get(index: Int): AnyRef =
+    if(ds != null) Double.box(ds(index))
+    else if(objs != null) {
+      if(index >= n)
+        throw new IndexOutOfBoundsException(index.toString)
+      objs(index)
+    }
+    else v(index)
+  override def size =
+    if(ds != null) ds.length
+    else if(objs != null) n
+    else v.size
   override def iterator: java.util.Iterator[AnyRef] =
-    new Iterator(v)
+    new Iterator(scalaIterator)
   override def listIterator(i: Int): java.util.ListIterator[AnyRef] =
-    new Iterator(v.drop(i))
+    new Iterator(scalaIterator.drop(i))
   override def add(index: Int, obj: AnyRef) = unsupported
 
   /// public methods for prims. input validity checking is caller's job
 
-  def first = v.head
-  def fput(obj: AnyRef) = new LogoList(obj +: v)
-  def lput(obj: AnyRef) = new LogoList(v :+ obj)
-  def reverse = new LogoList(v.reverse)
+  def first =
+    if(ds != null) Double.box(ds(0))
+    else if(objs != null) objs(0)
+    else v.head
+  def fput(obj: AnyRef) = LogoList.fromVector(obj +: v)
+  def lput(obj: AnyRef) = LogoList.fromVector(v :+ obj)
+  def reverse =
+    if(ds != null) LogoList.fromDoubles(ds.reverse)
+    else LogoList.fromVector(v.reverse)
   def replaceItem(index: Int, obj: AnyRef) =
-    new LogoList(v.updated(index, obj))
+    LogoList.fromVector(v.updated(index, obj))
   def logoSublist(start: Int, stop: Int) =
-    new LogoList(v.slice(start, stop))
-  def butFirst = new LogoList(v.tail)
-  def butLast = new LogoList(v.init)
+    LogoList.fromVector(v.slice(start, stop))
+  def butFirst = LogoList.fromVector(v.tail)
+  def butLast = LogoList.fromVector(v.init)
   def removeItem(index: Int) =
-    new LogoList(v.patch(index, Nil, 1))
+    LogoList.fromVector(v.patch(index, Nil, 1))
 
-  /// Iterator class
+  /// Iterator classes
 
-  private class Iterator(v: Vector[AnyRef]) extends java.util.ListIterator[AnyRef] {
-    private val it = v.iterator
+  private class DoublesIterator extends scala.Iterator[AnyRef] {
+    private var i = 0
+    def hasNext = i < ds.length
+    def next(): AnyRef = {
+      if(i >= ds.length)
+        throw new java.util.NoSuchElementException
+      i += 1
+      Double.box(ds(i - 1))
+    }
+  }
+
+  private class Iterator(it: scala.Iterator[AnyRef]) extends java.util.ListIterator[AnyRef] {
     override def hasNext = it.hasNext
     override def hasPrevious = unsupported
     override def next = it.next
@@ -69,18 +152,82 @@ extends java.util.AbstractSequentialList[AnyRef] with Serializable {
 }
   
 // for use from Java, or when efficiency is paramount - ST 2/25/11
+// As long as everything added is a number, we keep the numbers unboxed and make an array-backed
+// LogoList; the first thing that isn't a number sends us back to a VectorBuilder.
 class LogoListBuilder {
-  private val b = new VectorBuilder[AnyRef]
+  private var b: VectorBuilder[AnyRef] = null
+  private var ds: Array[Double] = null
+  private var count = 0
   def add(obj: AnyRef) {
-    b += obj
+    if(b != null)
+      b += obj
+    else obj match {
+      case d: java.lang.Double =>
+        ensureRoom(1)
+        ds(count) = d.doubleValue
+        count += 1
+      case _ =>
+        generic()
+        b += obj
+    }
   }
   def addAll(objs: scala.Iterable[_ <: AnyRef]) {
-    b ++= objs
+    objs match {
+      case list: LogoList => addList(list)
+      case _ => objs.foreach(add)
+    }
   }
   def addAll(objs: java.lang.Iterable[_ <: AnyRef]) {
-    val it = objs.iterator
-    while(it.hasNext)
-      b += it.next()
+    objs match {
+      case list: LogoList => addList(list)
+      case _ =>
+        val it = objs.iterator
+        while(it.hasNext)
+          add(it.next())
+    }
+  }
+  private def addList(list: LogoList) {
+    if(b == null && list.isDoubles) {
+      val more = list.doubles
+      ensureRoom(more.length)
+      System.arraycopy(more, 0, ds, count, more.length)
+      count += more.length
+    }
+    else {
+      if(b == null && !list.isEmpty)
+        generic()
+      if(b != null)
+        b ++= list.toVector
+    }
+  }
+  private def ensureRoom(n: Int) {
+    if(ds == null)
+      ds = new Array[Double](16 max n)
+    else if(count + n > ds.length) {
+      val newDs = new Array[Double]((ds.length * 2) max (count + n))
+      System.arraycopy(ds, 0, newDs, 0, count)
+      ds = newDs
+    }
+  }
+  private def generic() {
+    b = new VectorBuilder[AnyRef]
+    var i = 0
+    while(i < count) {
+      b += Double.box(ds(i))
+      i += 1
+    }
+    ds = null
   }
-  def toLogoList = LogoList.fromVector(b.result)
+  def toLogoList =
+    if(b != null)
+      LogoList.fromVector(b.result)
+    else if(count == 0)
+      LogoList.Empty
+    else if(count == ds.length)
+      LogoList.fromDoubles(ds)
+    else {
+      val result = new Array[Double](count)
+      System.arraycopy(ds, 0, result, 0, count)
+      LogoList.fromDoubles(result)
+    }
 }
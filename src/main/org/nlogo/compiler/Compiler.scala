@@ -29,6 +29,15 @@ object Compiler extends CompilerInterface {
     new CompilerResults(CompilerMain.compile(source, None, program, false, noProcedures, extensionManager), 
                         program)
 
+  // like compileProgram, but procedures that haven't changed since oldProcedures were compiled
+  // against oldProgram are kept as they are, rather than compiled all over again
+  @throws(classOf[CompilerException])
+  def recompileProgram(source: String, program: Program, oldProgram: Program, oldProcedures: ProceduresMap,
+                       extensionManager: ExtensionManager): CompilerResults =
+    new CompilerResults(CompilerMain.compile(source, None, program, false, noProcedures, extensionManager,
+                                             Some((oldProgram, oldProcedures))),
+                        program)
+
   // used to compile a single procedures only, from outside the Code tab
   @throws(classOf[CompilerException])
   def compileMoreCode(source:String,displayName: Option[String], program:Program,oldProcedures:ProceduresMap,extensionManager:ExtensionManager):CompilerResults =
@@ -9,7 +9,7 @@ package org.nlogo.compiler
 
 import org.nlogo.api.{ExtensionManager, Program, Version}
 import org.nlogo.nvm.{GeneratorInterface, Procedure}
-import org.nlogo.util.Femto
+import org.nlogo.util.{Bands, Femto}
 
 private object CompilerMain {
 
@@ -17,49 +17,166 @@ private object CompilerMain {
 
   def compile(source: String, displayName: Option[String], program: Program, subprogram: Boolean,
               oldProcedures: java.util.Map[String, Procedure],
-              extensionManager: ExtensionManager): Seq[Procedure] = {
+              extensionManager: ExtensionManager,
+              previous: Option[(Program, java.util.Map[String, Procedure])] = None): Seq[Procedure] = {
 
+    val timer = new StageTimer
     implicit val tokenizer = if(program.is3D) Compiler.Tokenizer3D else Compiler.Tokenizer2D
-    val structureResults = new StructureParser(tokenizer.tokenize(source), // tokenize
-                                               displayName, program, oldProcedures, extensionManager)
-      .parse(subprogram)  // process declarations
-    val defs = new collection.mutable.ArrayBuffer[ProcedureDefinition]
+    val tokenized = timer.phase("tokenize") { tokenizer.tokenize(source) }
+    val structureResults = timer.phase("structure") {
+      new StructureParser(tokenized, displayName, program, oldProcedures, extensionManager)
+        .parse(subprogram)  // process declarations
+    }
     import collection.JavaConverters._  // structureResults.procedures.values is a java.util.Collection
-    val taskNumbers = Iterator.from(1)
-    for(procedure <- structureResults.procedures.values.asScala) {
-      procedure.topLevel = subprogram
-      val tokens =
-        new IdentifierParser(program, oldProcedures, structureResults.procedures, false)
-        .process(structureResults.tokens(procedure).iterator, procedure)  // resolve references
-      defs ++= new ExpressionParser(procedure, taskNumbers).parse(tokens) // parse
+    // keep the old versions of procedures that haven't changed (see Recompiler).  from here on,
+    // structureResults.procedures has the old ones, so the other procedures will call them.
+    val kept = previous match {
+      case Some((oldProgram, previousProcedures)) if !extensionManager.anyExtensionsLoaded =>
+        Recompiler.reusable(oldProgram, previousProcedures, program, structureResults)
+      case _ =>
+        Map[String, Procedure]()
+    }
+    val replaced = kept.keys.map(name => (name, structureResults.procedures.get(name))).toMap
+    for((name, old) <- kept)
+      structureResults.procedures.put(name, old)
+    val procedures =
+      structureResults.procedures.values.asScala.filterNot(p => kept.contains(p.name)).toArray
+    // from here on each procedure, together with the command tasks inside it, is compiled on its
+    // own, except for TypeParser, which needs to see all of them at once.  so unless there are
+    // extensions loaded (we don't know whether their primitives are threadsafe), each phase is
+    // spread over the compiler threads; see forEach below.
+    val threads =
+      if(extensionManager.anyExtensionsLoaded || procedures.size < MIN_PROCEDURES) 1
+      else CompilerMain.threads
+    val families = new Array[Seq[ProcedureDefinition]](procedures.size)
+    timer.phase("parse") {
+      forEach(procedures.size, threads) { i =>
+        val procedure = procedures(i)
+        procedure.topLevel = subprogram
+        val tokens = timer.stage("IdentifierParser") {
+          new IdentifierParser(program, oldProcedures, structureResults.procedures, false)
+          .process(structureResults.tokens(procedure).iterator, procedure)  // resolve references
+        }
+        families(i) = timer.stage("ExpressionParser") {
+          new ExpressionParser(procedure).parse(tokens) // parse
+        }
+      }
     }
     // StructureParser found the top level Procedures for us.  ExpressionParser
     // finds command tasks and makes Procedures out of them, too.  the remaining
     // phases handle all ProcedureDefinitions from both sources. - ST 2/4/11
-    for(procdef <- defs) {
-      procdef.accept(new ReferenceVisitor)  // handle ReferenceType
-      procdef.accept(new ConstantFolder)  // en.wikipedia.org/wiki/Constant_folding
-      procdef.accept(new SimpleOfVisitor)  // convert _of(_*variable) => _*variableof
-      procdef.accept(new TaskVisitor)  // handle _reportertask
-      procdef.accept(new LocalsVisitor)  // convert _let/_repeat to _locals
-      procdef.accept(new SetVisitor)   // convert _set to specific setters
-      procdef.accept(new CarefullyVisitor)  // connect _carefully to _errormessage
-      procdef.accept(new Optimizer(program.is3D))   // do various code-improving rewrites
+    timer.phase("visit") {
+      forEach(families.size, threads) { i =>
+        for(procdef <- families(i); visitor <- visitors(program))
+          timer.stage(visitor.getClass.getSimpleName) {
+            procdef.accept(visitor)
+          }
+        timer.stage("InPlaceLists") {
+          new InPlaceLists(families(i)).process()  // change local lists in place
+        }
+      }
+    }
+    val defs = families.flatten.toSeq
+    timer.phase("types") {
+      new TypeParser(defs).parse()  // catch agent type inconsistencies
     }
-    new TypeParser(defs).parse()  // catch agent type inconsistencies
-    for(procdef <- defs) {
-      procdef.accept(new ArgumentStuffer) // fill args arrays in Commands & Reporters
-      new Assembler().assemble(procdef)     // flatten tree to command array
-      if(Version.useGenerator) // generate byte code
-        procdef.procedure.code =
-          Femto.get(classOf[GeneratorInterface], "org.nlogo.generator.Generator",
-                    Array(source, procdef.procedure,
-                          Boolean.box(
-                            extensionManager.profilingEnabled)))
-            .generate()
+    timer.phase("memoize") {
+      new Memoizer(defs, subprogram, extensionManager.profilingEnabled).process()
     }
+    timer.phase("generate") {
+      forEach(families.size, threads) { i =>
+        for(procdef <- families(i)) {
+          timer.stage("ArgumentStuffer") {
+            procdef.accept(new ArgumentStuffer) // fill args arrays in Commands & Reporters
+          }
+          timer.stage("Assembler") {
+            new Assembler().assemble(procdef)     // flatten tree to command array
+          }
+          if(Version.useGenerator) // generate byte code
+            timer.stage("Generator") {
+              procdef.procedure.code =
+                Femto.get(classOf[GeneratorInterface], "org.nlogo.generator.Generator",
+                          Array(source, procdef.procedure,
+                                Boolean.box(
+                                  extensionManager.profilingEnabled)))
+                  .generate()
+            }
+        }
+      }
+    }
+    if(!subprogram) {
+      for((name, old) <- kept)
+        Recompiler.reuse(old, replaced(name), structureResults.tokens(replaced(name)))
+      if(!extensionManager.anyExtensionsLoaded)
+        for(procdef <- defs; if !procdef.procedure.isTask)
+          procdef.procedure.reuseKey =
+            Recompiler.key(procdef.procedure, structureResults.tokens(procdef.procedure))
+    }
+    if(!subprogram)
+      timer.report(procedures.size, threads)
     // only return top level procedures.
     // task procedures can be reached via the children field on Procedure.
-    defs.map(_.procedure).filterNot(_.isTask)
+    structureResults.procedures.values.asScala.toSeq
+  }
+
+  // a fresh set of visitors for each ProcedureDefinition, since some of them keep state
+  private def visitors(program: Program): Seq[AstVisitor] =
+    Seq(new ReferenceVisitor,  // handle ReferenceType
+        new ConstantFolder,  // en.wikipedia.org/wiki/Constant_folding
+        new SimpleOfVisitor,  // convert _of(_*variable) => _*variableof
+        new TaskVisitor,  // handle _reportertask
+        new LocalsVisitor,  // convert _let/_repeat to _locals
+        new SetVisitor,   // convert _set to specific setters
+        new CarefullyVisitor,  // connect _carefully to _errormessage
+        new LetSlotVisitor,  // number the remaining lets
+        new Optimizer(program.is3D),   // do various code-improving rewrites
+        new TailCallVisitor,  // let procedures call themselves in constant space
+        new ParallelVisitor,  // find read-only blocks in _of & _parallelupdate
+        new LazyAgentSetVisitor)  // let _with & _other filter as needed
+
+  /// running a phase on several threads
+
+  // not worth waking up the workers for fewer procedures than this
+  val MIN_PROCEDURES = 8
+
+  // not a val so tests can check that the answer doesn't depend on it.  volatile since compiles
+  // may be going on in other threads (other workspaces, say) when a test sets it.  at least 1,
+  // since forEach divides the work up between them
+  @volatile var threads =
+    math.max(1, Integer.getInteger("org.nlogo.compilerThreads",
+                                   Runtime.getRuntime.availableProcessors).intValue)
+
+  // calls work(0) through work(n - 1), on the given number of threads.  the threads take the next
+  // unit of work as they finish the last one, since procedures vary a lot in size.  if anything
+  // goes wrong, we throw what the serial loop would have thrown: the error from the lowest
+  // numbered unit that failed.  (units after that one have run anyway, but since we're throwing,
+  // it doesn't matter what they did.)
+  private def forEach(n: Int, threads: Int)(work: Int => Unit) {
+    if(threads <= 1)
+      (0 until n).foreach(work)
+    else {
+      val next = new java.util.concurrent.atomic.AtomicInteger
+      val failures = new Array[Exception](n)
+      // PrimitiveCache finds the prims' class files through the context class loader
+      val loader = Thread.currentThread.getContextClassLoader
+      Bands.run(threads, threads, new Bands.Band {
+        def run(start: Int, end: Int) {
+          val thread = Thread.currentThread
+          val oldLoader = thread.getContextClassLoader
+          thread.setContextClassLoader(loader)
+          try {
+            var i = next.getAndIncrement
+            while(i < n) {
+              try work(i)
+              catch { case e: Exception => failures(i) = e }
+              i = next.getAndIncrement
+            }
+          }
+          finally thread.setContextClassLoader(oldLoader)
+        }
+      })
+      // Bands.run waiting for the workers makes their writes to failures visible here
+      failures.find(_ != null).foreach(e => throw e)
+    }
   }
 }
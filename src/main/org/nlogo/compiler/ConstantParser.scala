@@ -3,7 +3,7 @@
 package org.nlogo.compiler
 import org.nlogo.compiler.CompilerExceptionThrowers.{cAssert,exception}
 import org.nlogo.agent.{AgentSet,ArrayAgentSet,Link,Observer,Patch,Turtle,World,World3D}
-import org.nlogo.api.{CompilerException,ExtensionManager,LogoList,Nobody,Token,TokenType}
+import org.nlogo.api.{CompilerException,ExtensionManager,LogoList,LogoListBuilder,Nobody,Token,TokenType}
 import org.nlogo.nvm.Reporter
 import org.nlogo.prim._
 /**
@@ -119,17 +119,17 @@ private class ConstantParser(world:World,extensionManager:ExtensionManager) {
   * contents and the close bracket.
   */
   def parseConstantList(openBracket:Token,tokens:Iterator[Token]) = {
-    var list = LogoList()
+    val list = new LogoListBuilder
     var done = false
     while(!done) {
       val token = tokens.next()
       token.tyype match {
         case TokenType.CLOSE_BRACKET => done = true
         case TokenType.EOF => exception(MISSING_CLOSE_BRACKET,openBracket)
-        case _ => list = list.lput(readConstantPrefix(token,tokens))
+        case _ => list.add(readConstantPrefix(token,tokens))
       }
     }
-    list
+    list.toLogoList
   }
 
   private def parseConstantLiteral(token:Token):AnyRef = {
@@ -0,0 +1,99 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.compiler
+
+import org.nlogo.api.Version
+import org.nlogo.prim.{ _lputlocal, _procedurevariable, _procedurevariablefrozen, _replaceitemlocal,
+                        _setprocedurevariable }
+import org.nlogo.prim.etc.{ _item, _length, _lput, _replaceitem }
+
+/**
+ * Finds "set x lput obj x" and "set x replace-item index x obj", where x is a local variable (or
+ * an input), and turns them into _lputlocal and _replaceitemlocal, which can change the list in x
+ * in place (see nvm.TransientList).  Every other use of x becomes _procedurevariablefrozen, so
+ * nothing else ever gets its hands on the TransientList.  Uses of x by item and length are marked,
+ * since those don't stop replace-item from changing the list in place afterwards; that matters
+ * for "set x replace-item i x (item i x + 1)".
+ *
+ * Command and reporter tasks use the locals of the procedure they're in, so this has to look at a
+ * procedure and its tasks together, after the visitors have been over all of them (so lets have
+ * become locals, and sets have become _setprocedurevariable).
+ *
+ * "set x fput obj x" is left alone, since adding at the front can't be done in place cheaply.
+ */
+private class InPlaceLists(family: Seq[ProcedureDefinition]) {
+
+  def process() {
+    if(Version.useOptimizer) {
+      val changed = collection.mutable.Set[Int]()
+      for(procdef <- family)
+        procdef.accept(new DefaultAstVisitor {
+          override def visitStatement(stmt: Statement) {
+            super.visitStatement(stmt)
+            stmt.command match {
+              case set: _setprocedurevariable =>
+                stmt.args(0) match {
+                  case app: ReporterApp if app.reporter.isInstanceOf[_lput] &&
+                                           isVariable(app.args(1), set.vn) =>
+                    replace(stmt, new _lputlocal(set), app, Seq(app.args(0)))
+                    changed += set.vn
+                  case app: ReporterApp if app.reporter.isInstanceOf[_replaceitem] &&
+                                           isVariable(app.args(1), set.vn) =>
+                    replace(stmt, new _replaceitemlocal(set, app.reporter.asInstanceOf[_replaceitem]),
+                            app, Seq(app.args(0), app.args(2)))
+                    changed += set.vn
+                  case _ =>
+                }
+              case _ =>
+            }
+          }
+        })
+      if(changed.nonEmpty)
+        for(procdef <- family)
+          procdef.accept(new DefaultAstVisitor {
+            override def visitReporterApp(app: ReporterApp) {
+              app.reporter match {
+                case _: _item => freeze(app.args(1), true)
+                case _: _length => freeze(app.args(0), true)
+                case _ =>
+              }
+              super.visitReporterApp(app)
+              freeze(app, false)
+            }
+            def freeze(expr: Expression, peek: Boolean) {
+              expr match {
+                case app: ReporterApp =>
+                  app.reporter match {
+                    case v: _procedurevariable if changed(v.vn) =>
+                      val frozen = new _procedurevariablefrozen(v, peek)
+                      frozen.token(v.token)
+                      app.reporter = frozen
+                    case _ =>
+                  }
+                case _ =>
+              }
+            }
+          })
+    }
+  }
+
+  private def isVariable(expr: Expression, vn: Int) =
+    expr match {
+      case app: ReporterApp =>
+        app.reporter match {
+          case v: _procedurevariable => v.vn == vn
+          case _ => false
+        }
+      case _ => false
+    }
+
+  // the new command gets the list primitive's token, so errors are about it
+  private def replace(stmt: Statement, command: org.nlogo.nvm.Command, app: ReporterApp,
+                      args: Seq[Expression]) {
+    command.token(app.reporter.token)
+    stmt.command = command
+    stmt.removeArgument(0)
+    args.foreach(stmt.addArgument)
+  }
+
+}
@@ -0,0 +1,53 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.compiler
+
+import org.nlogo.api.Version
+import org.nlogo.nvm.Reporter
+import org.nlogo.prim._
+import org.nlogo.prim.etc.{ _incone, _inconenowrap, _inradius, _inradiusnowrap }
+
+/**
+ * Tells _with and _other to hand back an agent.FilteredAgentSet instead of building the whole
+ * result up front, when nothing can tell the difference.  That means: the _with block only reads,
+ * can't fail, and reports true or false (see ReadOnly.totalBoolean), so the filter never raises
+ * an error; the result goes straight into one of the reporters below, which use it up before
+ * they return and never hand it on; and that reporter's other inputs only read too, since they may
+ * be evaluated while the filter is only partway done.  So e.g. any? stops at the first agent that
+ * passes, and in-radius only tests the agents that are close enough.
+ *
+ * Deliberately left off the list: commands like ask, which can change what the filter would say
+ * as they go, and reporters like of and n-of that look at every agent anyway.
+ */
+private class LazyAgentSetVisitor extends DefaultAstVisitor {
+  override def visitProcedureDefinition(defn: ProcedureDefinition) {
+    if(Version.useOptimizer)
+      super.visitProcedureDefinition(defn)
+  }
+  override def visitReporterApp(app: ReporterApp) {
+    if(consumesImmediately(app.reporter))
+      for ((arg, i) <- app.args.zipWithIndex) arg match {
+        case child: ReporterApp =>
+          def othersReadOnly =
+            app.args.zipWithIndex.forall{case (other, j) => j == i || ReadOnly(other)}
+          child.reporter match {
+            case w: _with =>
+              w.filterLazily = ReadOnly.totalBoolean(child.args(1)) && othersReadOnly
+            case o: _other =>
+              o.filterLazily = othersReadOnly
+            case _ =>
+          }
+        case _ =>
+      }
+    super.visitReporterApp(app)
+  }
+  private def consumesImmediately(r: Reporter) =
+    r match {
+      case _: _any | _: _count | _: _oneof | _: _with | _: _other |
+           _: _anywith | _: _countwith | _: _oneofwith | _: _otherwith |
+           _: _anyother | _: _anyotherwith | _: _countother | _: _countotherwith |
+           _: _inradius | _: _inradiusnowrap | _: _incone | _: _inconenowrap =>
+        true
+      case _ => false
+    }
+}
@@ -0,0 +1,51 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.compiler
+
+import org.nlogo.api.Let
+import org.nlogo.prim._
+import org.nlogo.prim.etc._wait
+
+/**
+ * Gives each let variable that LocalsVisitor couldn't turn into a procedure variable a slot in the
+ * LetFrame of the procedure (or task) that binds it, so the engine can find it without searching
+ * (see nvm.LetFrame).  Task inputs come first, then the variables bound by the prims that use
+ * lets: let itself, plus repeat, fd, bk, wait and carefully, which keep their state in one.
+ */
+private class LetSlotVisitor extends DefaultAstVisitor {
+  private var procdef: ProcedureDefinition = null
+  private var slots = 0
+  private def assign(let: Let) {
+    let.scope = procdef.procedure
+    let.index = slots
+    slots += 1
+  }
+  override def visitProcedureDefinition(procdef: ProcedureDefinition) {
+    this.procdef = procdef
+    procdef.procedure.taskFormals.foreach(assign)
+    super.visitProcedureDefinition(procdef)
+  }
+  override def visitStatement(stmt: Statement) {
+    stmt.command match {
+      case l: _let => assign(l.let)
+      case r: _repeat => assign(r.let)
+      case f: _fd => assign(f.let)
+      case b: _bk => assign(b.let)
+      case w: _wait => assign(w.let)
+      case c: _carefully => assign(c.let)
+      case _ =>
+    }
+    super.visitStatement(stmt)
+  }
+  override def visitReporterApp(app: ReporterApp) {
+    app.reporter match {
+      case r: _reportertask =>
+        for((formal, i) <- r.formals.zipWithIndex) {
+          formal.scope = r
+          formal.index = i
+        }
+      case _ =>
+    }
+    super.visitReporterApp(app)
+  }
+}
@@ -30,6 +30,15 @@ private class LocalsVisitor extends DefaultAstVisitor {
     super.visitProcedureDefinition(procdef)
   }
 
+  // other procedures may be asking for this one's syntax on another thread (see CompilerMain), and
+  // Procedure.syntax looks at both of these
+  private def addLocal(name: String) {
+    procedure.synchronized {
+      procedure.localsCount += 1
+      procedure.args.add(name)
+    }
+  }
+
   override def visitStatement(stmt: Statement) {
     stmt.command match {
       case _: _ask | _: _askconcurrent =>
@@ -46,8 +55,7 @@ private class LocalsVisitor extends DefaultAstVisitor {
           stmt.command.token(stmt.command.token)
           stmt.removeArgument(0)
           procedure.alteredLets.put(l.let, procedure.args.size)
-          procedure.localsCount += 1
-          procedure.args.add(l.let.varName)
+          addLocal(l.let.varName)
           procedure.lets.remove(l.let)
           super.visitStatement(stmt)
         }
@@ -57,10 +65,9 @@ private class LocalsVisitor extends DefaultAstVisitor {
         if(!procedure.isTask && askNestingLevel == 0) {
           vn = procedure.args.size
           stmt.command = new _repeatlocal(vn)
-          procedure.localsCount += 1
           procedure.lets.remove(r.let)
           // actual name here doesn't really matter, I don't think - ST 11/10/05
-          procedure.args.add("_repeatlocal:" + vn)
+          addLocal("_repeatlocal:" + vn)
         }
         super.visitStatement(stmt)
       case ri: _repeatinternal =>
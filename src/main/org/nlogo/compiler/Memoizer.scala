@@ -0,0 +1,109 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.compiler
+
+import org.nlogo.nvm.{ Memo, Procedure, Pure }
+import org.nlogo.prim.{ _callreport, _callreportmemo, _lputlocal, _procedurevariable,
+                        _procedurevariablefrozen, _replaceitemlocal, _setprocedurevariable,
+                        _tailcallreport }
+import org.nlogo.prim.etc.{ _if, _ifelse, _report }
+
+/**
+ * Finds the reporter procedures that are pure: all they do is compute a result from their inputs,
+ * using Pure reporters, their inputs and locals, if and ifelse, and other pure reporter
+ * procedures.  Calls to the ones that are worth it become _callreportmemo, which remembers what
+ * the procedure reported for which inputs (see nvm.Memo).
+ *
+ * Unlike the visitors, this has to see all the procedures at once, since whether one is pure
+ * depends on the ones it calls.  We start out assuming every reporter procedure is pure, and rule
+ * out ones that aren't until nothing changes, so procedures that call each other can be pure too.
+ * Procedures we're not compiling this time (for run and runresult, or because Recompiler kept
+ * them) remember what we found out last time in Procedure.pure.
+ *
+ * When profiling, we leave everything alone, since the profiler wants to see every call.
+ */
+private class Memoizer(defs: Seq[ProcedureDefinition], subprogram: Boolean,
+                       profilingEnabled: Boolean) {
+
+  // a procedure that doesn't call any others must be at least this big before looking up its
+  // inputs is likely to be quicker than just running it
+  val MIN_SIZE = 10
+
+  def process() {
+    if (!profilingEnabled) {
+      val candidates =
+        if (subprogram) Seq()
+        else defs.filter(d => d.procedure.tyype == Procedure.Type.REPORTER && !d.procedure.isTask)
+      var assumed = candidates.map(_.procedure).toSet
+      var done = false
+      while (!done) {
+        def pure(p: Procedure) = assumed(p) || p.pure
+        val next = assumed.filter(p =>
+          pureStatements(candidates.find(_.procedure eq p).get.statements, pure))
+        done = next.size == assumed.size
+        assumed = next
+      }
+      for (procdef <- candidates; if assumed(procdef.procedure)) {
+        procdef.procedure.pure = true
+        if (worthIt(procdef))
+          procdef.procedure.memo = new Memo
+      }
+      for (procdef <- defs)
+        procdef.accept(Replacer)
+    }
+  }
+
+  private def pureStatements(stmts: Statements, pure: Procedure => Boolean): Boolean =
+    stmts.forall { stmt =>
+      (stmt.command match {
+        case _: _report | _: _setprocedurevariable | _: _if | _: _ifelse => true
+        case _: _lputlocal | _: _replaceitemlocal => true
+        case t: _tailcallreport => pure(t.procedure)
+        case _ => false
+      }) && stmt.args.forall(pureExpression(_, pure))
+    }
+
+  private def pureExpression(expr: Expression, pure: Procedure => Boolean): Boolean =
+    expr match {
+      case app: ReporterApp =>
+        (app.reporter match {
+          case _: _procedurevariable | _: _procedurevariablefrozen => true
+          case c: _callreport => pure(c.procedure)
+          case r => r.isInstanceOf[Pure]
+        }) && app.args.forall(pureExpression(_, pure))
+      case block: ReporterBlock => pureExpression(block.app, pure)
+      case block: CommandBlock => pureStatements(block.statements, pure)
+    }
+
+  private def worthIt(procdef: ProcedureDefinition) = {
+    var size = 0
+    var calls = false
+    procdef.accept(new DefaultAstVisitor {
+      override def visitStatement(stmt: Statement) {
+        size += 1
+        calls ||= stmt.command.isInstanceOf[_tailcallreport]
+        super.visitStatement(stmt)
+      }
+      override def visitReporterApp(app: ReporterApp) {
+        size += 1
+        calls ||= app.reporter.isInstanceOf[_callreport]
+        super.visitReporterApp(app)
+      }
+    })
+    calls || size >= MIN_SIZE
+  }
+
+  private object Replacer extends DefaultAstVisitor {
+    override def visitReporterApp(app: ReporterApp) {
+      super.visitReporterApp(app)
+      app.reporter match {
+        case c: _callreport if c.procedure.memo != null =>
+          val newReporter = new _callreportmemo(c.procedure)
+          newReporter.token(c.token)
+          app.reporter = newReporter
+        case _ =>
+      }
+    }
+  }
+
+}
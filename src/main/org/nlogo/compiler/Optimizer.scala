@@ -7,6 +7,8 @@ import org.nlogo.agent.{ Patch, Turtle }
 import org.nlogo.api.{ CompilerException, LogoException, Version }
 import org.nlogo.nvm.{ Command, Instruction, Reporter }
 import org.nlogo.prim._
+import org.nlogo.prim.etc.{ _max, _mean, _min, _standarddeviation, _turtleshere, _turtleson,
+                            _variance }
 
 // "asInstanceOf" is everywhere here. Could I make it more type-safe? - ST 1/28/09
 
@@ -33,8 +35,16 @@ private class Optimizer(is3D: Boolean) extends DefaultAstVisitor {
     List(Fd1, FdLessThan1, FastHatch, FastSprout, FastCrt, FastCro)
   private val reporterMungers: List[ReporterMunger] =
     List(PatchAt, With, OneOfWith, Nsum, Nsum4, 
+         SumOf, MeanOf, MaxOf, MinOf, VarianceOf, StandardDeviationOf,
+         SumTurtleVariableOf, MeanTurtleVariableOf, MaxTurtleVariableOf, MinTurtleVariableOf,
+         VarianceTurtleVariableOf, StandardDeviationTurtleVariableOf,
+         SumPatchVariableOf, MeanPatchVariableOf, MaxPatchVariableOf, MinPatchVariableOf,
+         VariancePatchVariableOf, StandardDeviationPatchVariableOf,
          CountWith, OtherWith, WithOther, AnyOther, AnyOtherWith, CountOther, CountOtherWith, 
          AnyWith1, AnyWith2, AnyWith3, AnyWith4, AnyWith5, 
+         OtherTurtlesHere, OtherBreedHere, AnyOtherTurtlesHere, AnyOtherBreedHere,
+         CountTurtlesHere, CountOtherTurtlesHere, CountBreedHere, CountOtherBreedHere,
+         AnyTurtlesOn, AnyBreedOn, AnyCount1, AnyCount2, AnyCount3, AnyCount4,
          PatchVariableDouble, TurtleVariableDouble, RandomConst)
 
   private class MatchFailedException extends Exception
@@ -298,6 +308,81 @@ private class Optimizer(is3D: Boolean) extends DefaultAstVisitor {
         arg0.reporter.asInstanceOf[_patchvariableof].vn
     }
   }
+  // _sum/_mean/_max/_min(_of(*, *)) => _sumof/_meanof/_maxof/_minof(*, *), and likewise
+  // _variance and _standarddeviation
+  private class AggregateOf(val clazz: Class[_ <: Reporter], fused: Class[_ <: Reporter])
+  extends RewritingReporterMunger {
+    def munge(root: Match) {
+      val arg0 = root.matchArg(0, classOf[_of])
+      root.strip()
+      root.replace(fused)
+      root.graftArg(arg0.matchArg(0))
+      root.graftArg(arg0.matchArg(1))
+    }
+  }
+  private object SumOf extends AggregateOf(classOf[_sum], classOf[_sumof])
+  private object MeanOf extends AggregateOf(classOf[_mean], classOf[_meanof])
+  private object MaxOf extends AggregateOf(classOf[_max], classOf[_maxof])
+  private object MinOf extends AggregateOf(classOf[_min], classOf[_minof])
+  private object VarianceOf extends AggregateOf(classOf[_variance], classOf[_varianceof])
+  private object StandardDeviationOf
+    extends AggregateOf(classOf[_standarddeviation], classOf[_standarddeviationof])
+  // _sum(_turtlevariableof(*)) => _sumturtlevariableof(*), and so on.  (SimpleOfVisitor has
+  // already turned [var] of ... into _turtlevariableof or _patchvariableof.)
+  private class AggregateVariableOf[T <: Reporter](val clazz: Class[_ <: Reporter],
+                                                   ofClass: Class[_ <: Reporter], fused: Class[T],
+                                                   setVn: (T, Int) => Unit)
+  extends RewritingReporterMunger {
+    def munge(root: Match) {
+      val arg0 = root.matchArg(0, ofClass)
+      val vn = arg0.reporter match {
+        case r: _turtlevariableof => r.vn
+        case r: _patchvariableof => r.vn
+      }
+      root.strip()
+      root.replace(fused)
+      setVn(fused.cast(root.reporter), vn)
+      root.graftArg(arg0.matchArg(0))
+    }
+  }
+  private object SumTurtleVariableOf extends AggregateVariableOf(
+    classOf[_sum], classOf[_turtlevariableof], classOf[_sumturtlevariableof],
+    (r: _sumturtlevariableof, vn: Int) => r.vn = vn)
+  private object MeanTurtleVariableOf extends AggregateVariableOf(
+    classOf[_mean], classOf[_turtlevariableof], classOf[_meanturtlevariableof],
+    (r: _meanturtlevariableof, vn: Int) => r.vn = vn)
+  private object MaxTurtleVariableOf extends AggregateVariableOf(
+    classOf[_max], classOf[_turtlevariableof], classOf[_maxturtlevariableof],
+    (r: _maxturtlevariableof, vn: Int) => r.vn = vn)
+  private object MinTurtleVariableOf extends AggregateVariableOf(
+    classOf[_min], classOf[_turtlevariableof], classOf[_minturtlevariableof],
+    (r: _minturtlevariableof, vn: Int) => r.vn = vn)
+  private object VarianceTurtleVariableOf extends AggregateVariableOf(
+    classOf[_variance], classOf[_turtlevariableof], classOf[_varianceturtlevariableof],
+    (r: _varianceturtlevariableof, vn: Int) => r.vn = vn)
+  private object StandardDeviationTurtleVariableOf extends AggregateVariableOf(
+    classOf[_standarddeviation], classOf[_turtlevariableof],
+    classOf[_standarddeviationturtlevariableof],
+    (r: _standarddeviationturtlevariableof, vn: Int) => r.vn = vn)
+  private object SumPatchVariableOf extends AggregateVariableOf(
+    classOf[_sum], classOf[_patchvariableof], classOf[_sumpatchvariableof],
+    (r: _sumpatchvariableof, vn: Int) => r.vn = vn)
+  private object MeanPatchVariableOf extends AggregateVariableOf(
+    classOf[_mean], classOf[_patchvariableof], classOf[_meanpatchvariableof],
+    (r: _meanpatchvariableof, vn: Int) => r.vn = vn)
+  private object MaxPatchVariableOf extends AggregateVariableOf(
+    classOf[_max], classOf[_patchvariableof], classOf[_maxpatchvariableof],
+    (r: _maxpatchvariableof, vn: Int) => r.vn = vn)
+  private object MinPatchVariableOf extends AggregateVariableOf(
+    classOf[_min], classOf[_patchvariableof], classOf[_minpatchvariableof],
+    (r: _minpatchvariableof, vn: Int) => r.vn = vn)
+  private object VariancePatchVariableOf extends AggregateVariableOf(
+    classOf[_variance], classOf[_patchvariableof], classOf[_variancepatchvariableof],
+    (r: _variancepatchvariableof, vn: Int) => r.vn = vn)
+  private object StandardDeviationPatchVariableOf extends AggregateVariableOf(
+    classOf[_standarddeviation], classOf[_patchvariableof],
+    classOf[_standarddeviationpatchvariableof],
+    (r: _standarddeviationpatchvariableof, vn: Int) => r.vn = vn)
   // _count(_with) => _countwith
   private object CountWith extends RewritingReporterMunger {
     val clazz = classOf[_count]
@@ -447,6 +532,173 @@ private class Optimizer(is3D: Boolean) extends DefaultAstVisitor {
       }
     }
   }
+  // _other(_turtleshere) => _otherturtleshere
+  private object OtherTurtlesHere extends RewritingReporterMunger {
+    val clazz = classOf[_other]
+    def munge(root: Match) {
+      root.matchArg(0, classOf[_turtleshere])
+      root.strip()
+      root.replace(classOf[_otherturtleshere])
+    }
+  }
+  // _other(_breedhere) => _otherbreedhere
+  private object OtherBreedHere extends RewritingReporterMunger {
+    val clazz = classOf[_other]
+    def munge(root: Match) {
+      val arg0 = root.matchArg(0, classOf[_breedhere])
+      root.strip()
+      root.replace(classOf[_otherbreedhere],
+                   arg0.reporter.asInstanceOf[_breedhere].breedName)
+    }
+  }
+  // _any(_otherturtleshere) => _anyotherturtleshere
+  private object AnyOtherTurtlesHere extends RewritingReporterMunger {
+    val clazz = classOf[_any]
+    def munge(root: Match) {
+      root.matchArg(0, classOf[_otherturtleshere])
+      root.strip()
+      root.replace(classOf[_anyotherturtleshere])
+    }
+  }
+  // _any(_otherbreedhere) => _anyotherbreedhere
+  private object AnyOtherBreedHere extends RewritingReporterMunger {
+    val clazz = classOf[_any]
+    def munge(root: Match) {
+      val arg0 = root.matchArg(0, classOf[_otherbreedhere])
+      root.strip()
+      root.replace(classOf[_anyotherbreedhere],
+                   arg0.reporter.asInstanceOf[_otherbreedhere].breedName)
+    }
+  }
+  // _count(_turtleshere) => _countturtleshere
+  private object CountTurtlesHere extends RewritingReporterMunger {
+    val clazz = classOf[_count]
+    def munge(root: Match) {
+      root.matchArg(0, classOf[_turtleshere])
+      root.strip()
+      root.replace(classOf[_countturtleshere])
+    }
+  }
+  // _count(_otherturtleshere) => _countotherturtleshere
+  private object CountOtherTurtlesHere extends RewritingReporterMunger {
+    val clazz = classOf[_count]
+    def munge(root: Match) {
+      root.matchArg(0, classOf[_otherturtleshere])
+      root.strip()
+      root.replace(classOf[_countotherturtleshere])
+    }
+  }
+  // _count(_breedhere) => _countbreedhere
+  private object CountBreedHere extends RewritingReporterMunger {
+    val clazz = classOf[_count]
+    def munge(root: Match) {
+      val arg0 = root.matchArg(0, classOf[_breedhere])
+      root.strip()
+      root.replace(classOf[_countbreedhere],
+                   arg0.reporter.asInstanceOf[_breedhere].breedName)
+    }
+  }
+  // _count(_otherbreedhere) => _countotherbreedhere
+  private object CountOtherBreedHere extends RewritingReporterMunger {
+    val clazz = classOf[_count]
+    def munge(root: Match) {
+      val arg0 = root.matchArg(0, classOf[_otherbreedhere])
+      root.strip()
+      root.replace(classOf[_countotherbreedhere],
+                   arg0.reporter.asInstanceOf[_otherbreedhere].breedName)
+    }
+  }
+  // _any(_turtleson(*)) => _anyturtleson(*)
+  private object AnyTurtlesOn extends RewritingReporterMunger {
+    val clazz = classOf[_any]
+    def munge(root: Match) {
+      val arg0 = root.matchArg(0, classOf[_turtleson])
+      root.strip()
+      root.replace(classOf[_anyturtleson])
+      // so runtime errors mention "turtles-on", like they would unoptimized
+      root.reporter.token(arg0.reporter.token)
+      root.graftArg(arg0.matchArg(0))
+    }
+  }
+  // _any(_breedon(*)) => _anybreedon(*)
+  private object AnyBreedOn extends RewritingReporterMunger {
+    val clazz = classOf[_any]
+    def munge(root: Match) {
+      val arg0 = root.matchArg(0, classOf[_breedon])
+      root.strip()
+      root.replace(classOf[_anybreedon],
+                   arg0.reporter.asInstanceOf[_breedon].breedName)
+      root.reporter.token(arg0.reporter.token)
+      root.graftArg(arg0.matchArg(0))
+    }
+  }
+  // finishes turning _count(*) into _any(*).  the _any won't get visited
+  // again, so we apply the _any mungers to it here.  it keeps _count's
+  // token, so any runtime error still mentions "count".
+  private def anyOfCount(any: Match, count: Match) {
+    val app = any.node.asInstanceOf[ReporterApp]
+    app.reporter.token(count.reporter.token)
+    any.graftArg(count.matchArg(0))
+    List(AnyTurtlesOn, AnyBreedOn)
+      .find{munger => munger.munge(app); !app.reporter.isInstanceOf[_any]}
+  }
+  // _notequal(_count(*), _constdouble: 0.0) => _any(*)
+  private object AnyCount1 extends RewritingReporterMunger {
+    val clazz = classOf[_notequal]
+    def munge(root: Match) {
+      val count = root.matchOneArg(classOf[_count])
+      if(root.matchOtherArg(count, classOf[_constdouble]).reporter.asInstanceOf[_constdouble]
+           .primitiveValue == 0)
+      {
+        root.strip()
+        root.replace(classOf[_any])
+        anyOfCount(root, count)
+      }
+    }
+  }
+  // _greaterthan(_count(*), _constdouble: 0.0) => _any(*)
+  private object AnyCount2 extends RewritingReporterMunger {
+    val clazz = classOf[_greaterthan]
+    def munge(root: Match) {
+      val count = root.matchArg(0, classOf[_count])
+      if(root.matchArg(1, classOf[_constdouble]).reporter.asInstanceOf[_constdouble]
+           .primitiveValue == 0)
+      {
+        root.strip()
+        root.replace(classOf[_any])
+        anyOfCount(root, count)
+      }
+    }
+  }
+  // _lessthan(_constdouble: 0.0, _count(*)) => _any(*)
+  private object AnyCount3 extends RewritingReporterMunger {
+    val clazz = classOf[_lessthan]
+    def munge(root: Match) {
+      val count = root.matchArg(1, classOf[_count])
+      if(root.matchArg(0, classOf[_constdouble]).reporter.asInstanceOf[_constdouble]
+           .primitiveValue == 0)
+      {
+        root.strip()
+        root.replace(classOf[_any])
+        anyOfCount(root, count)
+      }
+    }
+  }
+  // _equal(_count(*), _constdouble: 0.0) => _not(_any(*))
+  private object AnyCount4 extends RewritingReporterMunger {
+    val clazz = classOf[_equal]
+    def munge(root: Match) {
+      val count = root.matchOneArg(classOf[_count])
+      if(root.matchOtherArg(count, classOf[_constdouble]).reporter.asInstanceOf[_constdouble]
+           .primitiveValue == 0)
+      {
+        val oldRoot = root.node.asInstanceOf[ReporterApp]
+        root.strip()
+        root.replace(classOf[_not])
+        anyOfCount(root.addArg(classOf[_any], oldRoot), count)
+      }
+    }
+  }
   // _patchvariable => _patchvariabledouble
   private object PatchVariableDouble extends RewritingReporterMunger {
     val clazz = classOf[_patchvariable]
@@ -0,0 +1,43 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.compiler
+
+import org.nlogo.prim.{ _of, _sumof, _meanof, _maxof, _minof, _varianceof, _standarddeviationof }
+import org.nlogo.prim.etc._parallelupdate
+
+/**
+ * Marks _of, the prims the Optimizer fuses it into (_sumof and so on), and _parallelupdate as
+ * safe to evaluate their reporter block on several agents at once (see nvm.ParallelEvaluation)
+ * if we can tell the block only reads (see ReadOnly).
+ */
+private class ParallelVisitor extends DefaultAstVisitor {
+  override def visitStatement(stmt: Statement) {
+    stmt.command match {
+      case p: _parallelupdate =>
+        p.parallel = ReadOnly(stmt.args.last)
+      case _ =>
+    }
+    super.visitStatement(stmt)
+  }
+  override def visitReporterApp(app: ReporterApp) {
+    app.reporter match {
+      case o: _of =>
+        o.parallel = ReadOnly(app.args(0))
+      // we run after the Optimizer, so sum [...] of agents and the like are already fused
+      case o: _sumof =>
+        o.parallel = ReadOnly(app.args(0))
+      case o: _meanof =>
+        o.parallel = ReadOnly(app.args(0))
+      case o: _maxof =>
+        o.parallel = ReadOnly(app.args(0))
+      case o: _minof =>
+        o.parallel = ReadOnly(app.args(0))
+      case o: _varianceof =>
+        o.parallel = ReadOnly(app.args(0))
+      case o: _standarddeviationof =>
+        o.parallel = ReadOnly(app.args(0))
+      case _ =>
+    }
+    super.visitReporterApp(app)
+  }
+}
@@ -0,0 +1,106 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.compiler
+
+import org.nlogo.api.Syntax
+import org.nlogo.nvm.{ Pure, Reporter }
+import org.nlogo.prim._
+import org.nlogo.prim.etc.{ _greaterorequal, _lessorequal, _myself, _self, _xor }
+
+/**
+ * Tells whether we can be sure an expression only reads: it may only contain variable reads,
+ * self/myself, and Pure reporters, none of which may take an agentset or a task.  (Agentsets are
+ * out because even looking at one, say with member? or =, can lazily rebuild its internals.)  The
+ * one exception is = and != against a constant, which is common and can't end up comparing two
+ * agentsets.  Such an expression has no side effects and doesn't use the random number generator,
+ * so it doesn't matter when, how often, or on which thread it's evaluated.
+ *
+ * That doesn't mean it can't fail, though (1 / x, or x > 0 when x is a string), so where a
+ * runtime error would come at a different time or not at all, ask totalBoolean instead.
+ */
+private object ReadOnly {
+  def apply(expr: Expression): Boolean =
+    expr match {
+      case block: ReporterBlock => apply(block.app)
+      case app: ReporterApp =>
+        (app.reporter match {
+          case _: _equal | _: _notequal =>
+            app.args.exists(isConstant)
+          case r =>
+            isVariableRead(r) || isSafePure(r)
+        }) && app.args.forall(apply)
+      case _ => false
+    }
+
+  /**
+   * Tells whether an expression, besides only reading, can't cause a runtime error and always
+   * reports true or false.  That's what a with block has to be for LazyAgentSetVisitor, since
+   * a lazy filter may be run on fewer agents than an eager one, or later on, so any error eager
+   * with would have raised (say, "WITH expected a true/false value") might be skipped or come in
+   * a different order.  So we only allow true and false; = and != against a constant; <, >, <=
+   * and >= of numbers we know are numbers (constants, and variables like xcor that can only hold
+   * numbers); and and, or, xor and not of those.  Breed variables and myself are out, since
+   * reading them can fail.
+   */
+  def totalBoolean(expr: Expression): Boolean =
+    expr match {
+      case block: ReporterBlock => totalBoolean(block.app)
+      case app: ReporterApp =>
+        app.reporter match {
+          case _: _constboolean => true
+          case _: _equal | _: _notequal =>
+            app.args.exists(isConstant) && app.args.forall(totalValue)
+          case _: _lessthan | _: _greaterthan | _: _lessorequal | _: _greaterorequal =>
+            app.args.forall(isNumber)
+          case _: _and | _: _or | _: _xor | _: _not =>
+            app.args.forall(totalBoolean)
+          case _ => false
+        }
+      case _ => false
+    }
+  private def totalValue(expr: Expression): Boolean =
+    isConstant(expr) || isNumber(expr) || totalBoolean(expr) || (expr match {
+      case app: ReporterApp =>
+        app.reporter match {
+          case _: _breedvariable | _: _linkbreedvariable | _: _myself => false
+          case r => isVariableRead(r)
+        }
+      case _ => false
+    })
+  private def isNumber(expr: Expression) =
+    expr match {
+      case app: ReporterApp =>
+        app.reporter match {
+          case _: _constdouble | _: _turtlevariabledouble | _: _patchvariabledouble => true
+          case _ => false
+        }
+      case _ => false
+    }
+  private def isVariableRead(r: Reporter) =
+    r match {
+      case _: _turtlevariable | _: _turtlevariabledouble | _: _patchvariable |
+           _: _patchvariabledouble | _: _linkvariable | _: _turtleorlinkvariable |
+           _: _breedvariable | _: _linkbreedvariable | _: _observervariable |
+           _: _procedurevariable | _: _letvariable | _: _self | _: _myself | _: _nobody =>
+        true
+      case _ => false
+    }
+  private val unsafeArgTypes =
+    Syntax.AgentsetType | Syntax.CommandTaskType | Syntax.ReporterTaskType |
+      Syntax.ReferenceType
+  private def isSafePure(r: Reporter) =
+    r.isInstanceOf[Pure] && {
+      val syntax = r.syntax
+      (syntax.left & unsafeArgTypes) == 0 &&
+        syntax.right.forall(t => (t & unsafeArgTypes) == 0)
+    }
+  private def isConstant(expr: Expression) =
+    expr match {
+      case app: ReporterApp =>
+        app.reporter match {
+          case _: _constdouble | _: _conststring | _: _constboolean | _: _constlist => true
+          case _ => false
+        }
+      case _ => false
+    }
+}
@@ -0,0 +1,127 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.compiler
+
+// When the Code tab is recompiled after an edit, usually most of the procedures haven't changed.
+// Those we can keep as they are, Procedure objects and compiled code and all, instead of running
+// them through ExpressionParser, the visitors and the Generator again.  StructureParser still
+// runs on everything, since we need it to find the procedures and the declarations.
+//
+// A procedure is kept if:
+//   - the declarations (globals, breeds, -own variables) are exactly the same, so the variable
+//     numbers and breed names its code was compiled against still mean the same thing;
+//   - no extensions are loaded, now or when it was compiled, since extension primitives may
+//     have been reloaded, and the profiler extension changes what the Generator makes;
+//   - its header and its tokens are the same as before (whitespace between tokens counts, so
+//     that we can keep the old token positions, just shifted);
+//   - every procedure it mentions is being kept too.  Its code points directly at the Procedure
+//     objects it calls, so if one of those is compiled again, so is it.  "Mentions" is just any
+//     identifier that's the name of a procedure, old or new; that's more than it calls, but
+//     it's safe, and it also catches the case where a new procedure takes a name that the
+//     procedure used for something else.
+//
+// Anything kept has its tokens shifted to wherever the procedure is in the new source.  We don't
+// do that until everything has compiled, since until then the old procedures may still be running.
+
+import org.nlogo.api.{ Program, Token, TokenType }
+import org.nlogo.nvm.{ Instruction, Procedure }
+import collection.JavaConverters._
+
+private object Recompiler {
+
+  // what goes in Procedure.reuseKey
+  case class Key(header: String, tokens: String, start: Int)
+
+  def key(procedure: Procedure, tokens: Iterable[Token]): Key = {
+    val start = tokens.headOption.map(_.startPos).getOrElse(procedure.endPos)
+    Key(procedure.tyype + " " + procedure.displayName + " " + procedure.fileName + " " +
+          procedure.args.asScala.take(procedure.args.size - procedure.localsCount).mkString(" "),
+        tokens.map(t => (t.startPos - start) + " " + t.name).mkString("\n"),
+        start)
+  }
+
+  // returns the old procedures we can keep, by name
+  def reusable(oldProgram: Program, oldProcedures: java.util.Map[String, Procedure],
+               program: Program, results: StructureParser.Results): Map[String, Procedure] =
+    if (!sameDeclarations(oldProgram, program)) Map()
+    else {
+      val procedures = results.procedures.asScala
+      val names = procedures.keySet ++ oldProcedures.keySet.asScala
+      def mentions(procedure: Procedure) =
+        results.tokens(procedure).collect {
+          case t if t.tyype == TokenType.IDENT && names(t.value.asInstanceOf[String]) =>
+            t.value.asInstanceOf[String]
+        }.toSet
+      var kept =
+        (for {
+          (name, procedure) <- procedures
+          old = oldProcedures.get(name)
+          if old != null
+          if unchanged(old.reuseKey, key(procedure, results.tokens(procedure)))
+        } yield (name, old)).toMap
+      val mentioned = kept.keys.map(name => (name, mentions(procedures(name)))).toMap
+      var done = false
+      while (!done) {
+        val next = kept.filter { case (name, _) => mentioned(name).forall(kept.contains) }
+        done = next.size == kept.size
+        kept = next
+      }
+      kept
+    }
+
+  private def unchanged(oldKey: AnyRef, key: Key) =
+    oldKey match {
+      case Key(header, tokens, _) =>
+        header == key.header && tokens == key.tokens
+      case _ =>
+        false
+    }
+
+  // called once the new program has compiled without error
+  def reuse(old: Procedure, procedure: Procedure, tokens: Iterable[Token]) {
+    val newKey = key(procedure, tokens)
+    val delta = newKey.start - old.reuseKey.asInstanceOf[Key].start
+    if (delta != 0) {
+      def move(p: Procedure) {
+        def moveAll(instr: Instruction) {
+          instr.moveTokens(delta)
+          instr.args.foreach(moveAll)
+        }
+        p.code.foreach(moveAll)
+        for (child <- p.children) {
+          child.pos += delta
+          child.endPos += delta
+          move(child)
+        }
+      }
+      move(old)
+    }
+    old.pos = procedure.pos
+    old.endPos = procedure.endPos
+    old.reuseKey = newKey
+  }
+
+  private def sameDeclarations(p1: Program, p2: Program) = {
+    // the link breeds map holds the directedness as a string until World.realloc replaces it with
+    // the agentset
+    def directedness(p: Program) =
+      p.linkBreeds.asScala.toList.map {
+        case (name, s: String) => (name, s == "DIRECTED-LINK-BREED")
+        case (name, a: org.nlogo.agent.AgentSet) => (name, a.isDirected)
+        case (name, x) => (name, x)
+      }
+    p1.is3D == p2.is3D &&
+      p1.globals == p2.globals &&
+      p1.interfaceGlobals == p2.interfaceGlobals &&
+      p1.turtlesOwn == p2.turtlesOwn &&
+      p1.patchesOwn == p2.patchesOwn &&
+      p1.linksOwn == p2.linksOwn &&
+      p1.breeds.keySet.asScala.toList == p2.breeds.keySet.asScala.toList &&
+      p1.breedsSingular == p2.breedsSingular &&
+      directedness(p1) == directedness(p2) &&
+      p1.linkBreedsSingular == p2.linkBreedsSingular &&
+      p1.breedsOwn == p2.breedsOwn &&
+      p1.linkBreedsOwn == p2.linkBreedsOwn
+  }
+
+}
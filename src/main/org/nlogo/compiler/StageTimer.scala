@@ -0,0 +1,60 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.compiler
+
+// Shows where compile time goes.  Off by default; turn on with -Dorg.nlogo.compilerTimings=true,
+// and every compile of a whole program (not run/runresult or the Command Center) prints a table
+// to stderr.  Phases are timed from start to finish on the compiling thread.  The stages inside a
+// phase are timed on whichever thread runs them and the times are added up, so on several threads
+// the stages in a phase can add up to more than the phase.
+
+private object StageTimer {
+  val enabled = java.lang.Boolean.getBoolean("org.nlogo.compilerTimings")
+}
+
+private class StageTimer {
+
+  private val start = System.nanoTime
+  private val phases = new collection.mutable.LinkedHashMap[String, Long]
+  private val stages = new collection.mutable.LinkedHashMap[String, Long]
+
+  // safe to call from several threads at once
+  def stage[T](name: String)(body: => T): T =
+    if (!StageTimer.enabled) body
+    else {
+      val t0 = System.nanoTime
+      try body
+      finally add(stages, name, System.nanoTime - t0)
+    }
+
+  def phase[T](name: String)(body: => T): T =
+    if (!StageTimer.enabled) body
+    else {
+      val t0 = System.nanoTime
+      try body
+      finally add(phases, name, System.nanoTime - t0)
+    }
+
+  private def add(times: collection.mutable.Map[String, Long], name: String, nanos: Long) {
+    synchronized {
+      times(name) = times.getOrElse(name, 0L) + nanos
+    }
+  }
+
+  def report(procedures: Int, threads: Int) {
+    if (StageTimer.enabled) synchronized {
+      def line(name: String, nanos: Long) =
+        "  %-24s %9.1f ms".format(name, nanos / 1e6)
+      val header =
+        "compiled " + procedures + " procedures on " + threads +
+          (if (threads == 1) " thread:" else " threads:")
+      val lines =
+        Seq(header, line("total", System.nanoTime - start)) ++
+        phases.map { case (name, nanos) => line(name, nanos) } ++
+        Seq("stages:") ++
+        stages.map { case (name, nanos) => line(name, nanos) }
+      System.err.println(lines.mkString("\n"))
+    }
+  }
+
+}
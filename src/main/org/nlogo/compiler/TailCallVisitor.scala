@@ -0,0 +1,57 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.compiler
+
+import org.nlogo.api.Version
+import org.nlogo.nvm.Procedure
+import org.nlogo.prim.{ _call, _callreport, _tailcall, _tailcallreport }
+import org.nlogo.prim.etc.{ _if, _ifelse, _report }
+
+/**
+ * Finds places where a procedure calls itself and has nothing left to do once the call returns, and
+ * turns them into _tailcall or _tailcallreport, which reuse the caller's place on the stack (see
+ * nvm.Context.tailCall).  For a command procedure, that's a call that is the last statement of the
+ * procedure, or the last statement in a branch of an if or ifelse that is.  For a reporter
+ * procedure, it's "report" of a call, anywhere outside of blocks other than if and ifelse's, since
+ * report leaves the procedure.  We don't look inside ask and the like, whose blocks run in other
+ * contexts, or inside tasks, whose bodies are procedures of their own.
+ */
+private class TailCallVisitor extends DefaultAstVisitor {
+  override def visitProcedureDefinition(procdef: ProcedureDefinition) {
+    if(Version.useOptimizer && !procdef.procedure.isTask)
+      visitBody(procdef.procedure, procdef.statements, true)
+  }
+  private def visitBody(procedure: Procedure, stmts: Statements, inTailPosition: Boolean) {
+    for((stmt, i) <- stmts.zipWithIndex) {
+      val last = inTailPosition && i == stmts.size - 1
+      stmt.command match {
+        case c: _call if last && (c.procedure eq procedure) =>
+          val newCommand = new _tailcall(procedure)
+          newCommand.token(c.token)
+          stmt.command = newCommand
+        case _: _report if procedure.tyype == Procedure.Type.REPORTER =>
+          stmt(0) match {
+            case app: ReporterApp =>
+              app.reporter match {
+                case cr: _callreport if cr.procedure eq procedure =>
+                  val newCommand = new _tailcallreport(procedure)
+                  newCommand.token(cr.token)
+                  stmt.command = newCommand
+                  stmt.removeArgument(0)
+                  app.args.foreach(stmt.addArgument)
+                case _ =>
+              }
+            case _ =>
+          }
+        case _: _if | _: _ifelse =>
+          for(arg <- stmt.args)
+            arg match {
+              case block: CommandBlock =>
+                visitBody(procedure, block.statements, last)
+              case _ =>
+            }
+        case _ =>
+      }
+    }
+  }
+}
@@ -66,7 +66,7 @@ package org.nlogo.compiler
 import org.nlogo.compiler.CompilerExceptionThrowers._
 import org.nlogo.api.{ CompilerException, Syntax }
 import org.nlogo.nvm.{ Command, Instruction, Procedure, Reporter }
-import org.nlogo.prim.{ _call, _callreport }
+import org.nlogo.prim.{ _call, _callreport, _tailcall, _tailcallreport }
 
 private class TypeParser(defs: Seq[ProcedureDefinition]) {
   def parse() {
@@ -143,6 +143,8 @@ private class TypeParser(defs: Seq[ProcedureDefinition]) {
         instruction match {
           case c:_call => Some(c.procedure)
           case cr:_callreport => Some(cr.procedure)
+          case t:_tailcall => Some(t.procedure)
+          case tr:_tailcallreport => Some(tr.procedure)
           case _ => None
         }
       if(calledProcedure.isDefined &&
@@ -77,7 +77,7 @@ private class CustomGenerator(profilingEnabled: Boolean) {
   /*  Example code, just to show what bytecode is being generated
    public void perform_N (Object o0, Object o1) {
      Activation newActivation =
-     new Activation(procedure, context.activation, n)
+     context.newActivation(procedure, context.activation, n)
      newActivation.args[ 0 ] = o0
      newActivation.args[ 1 ] = o1
      ...
@@ -88,20 +88,7 @@ private class CustomGenerator(profilingEnabled: Boolean) {
    }
    */
   private def generateCall(instr: _call, mv: GeneratorAdapter, thisInstrUID: Int) {
-    mv.keepField("procedure", instr.procedure, thisInstrUID)
-    mv.visitTypeInsn(NEW, "org/nlogo/nvm/Activation")
-    // stack: Activation
-    mv.visitInsn(DUP)
-    // stack: Activation Activation
-    mv.loadKeptField("procedure", thisInstrUID)
-    // stack: Activation Activation Procedure
-    mv.visitVarInsn(ALOAD, 1)
-    // stack: Activation Activation Procedure Context
-    mv.visitFieldInsn(GETFIELD, "org/nlogo/nvm/Context", "activation", "Lorg/nlogo/nvm/Activation;")
-    // stack: Activation Activation Procedure Activation
-    mv.push(instr.next)
-    // stack: Activation Activation Procedure Activation int
-    mv.visitMethodInsn(INVOKESPECIAL, "org/nlogo/nvm/Activation", "<init>", "(Lorg/nlogo/nvm/Procedure;Lorg/nlogo/nvm/Activation;I)V")
+    generateNewActivation(instr.procedure, instr.next, mv, thisInstrUID)
     // operand stack: Activation
     for (i <- 0 until (instr.procedure.args.size - instr.procedure.localsCount)) {
       // newActivation.args[ i ] = args[ i ].report(context) 
@@ -148,7 +135,7 @@ private class CustomGenerator(profilingEnabled: Boolean) {
    *
    public void perform_N (Object o0, Object o1) {
      Activation newActivation =
-     new Activation(procedure, context.activation, n)
+     context.newActivation(procedure, context.activation, n)
      newActivation.args[ 0 ] = o0
      newActivation.args[ 1 ] = o1
      ... 
@@ -159,20 +146,7 @@ private class CustomGenerator(profilingEnabled: Boolean) {
    }
    */
   private def generateCallReport(instr: _callreport, mv: GeneratorAdapter, thisInstrUID: Int, ip: Int) {
-    mv.keepField("procedure", instr.procedure, thisInstrUID)
-    mv.visitTypeInsn(NEW, "org/nlogo/nvm/Activation")
-    // stack: Activation
-    mv.visitInsn(DUP)
-    // stack: Activation Activation
-    mv.loadKeptField("procedure", thisInstrUID)
-    // stack: Activation Activation Procedure
-    mv.visitVarInsn(ALOAD, 1)
-    // stack: Activation Activation Procedure Context
-    mv.visitFieldInsn(GETFIELD, "org/nlogo/nvm/Context", "activation", "Lorg/nlogo/nvm/Activation;")
-    // stack: Activation Activation Procedure Activation
-    mv.push(ip)
-    // stack: Activation Activation Procedure Activation int
-    mv.visitMethodInsn(INVOKESPECIAL, "org/nlogo/nvm/Activation", "<init>", "(Lorg/nlogo/nvm/Procedure;Lorg/nlogo/nvm/Activation;I)V")
+    generateNewActivation(instr.procedure, ip, mv, thisInstrUID)
     // operand stack:  Activation
     for (i <- 0 until (instr.procedure.args.size - instr.procedure.localsCount)) {
       // newActivation.args[ i ] = args[ i ].report(context)
@@ -242,6 +216,39 @@ private class CustomGenerator(profilingEnabled: Boolean) {
     // operand stack: resultObj
   }
 
+  /*  Example code, just to show what bytecode is being generated
+   context.newActivation(procedure, context.activation, returnAddress)
+   // or if profiling, since the tracer may hang on to activations,
+   // so they mustn't be recycled:
+   new Activation(procedure, context.activation, returnAddress)
+   */
+  private def generateNewActivation(procedure: org.nlogo.nvm.Procedure, returnAddress: Int,
+                                    mv: GeneratorAdapter, thisInstrUID: Int) {
+    mv.keepField("procedure", procedure, thisInstrUID)
+    if (profilingEnabled) {
+      mv.visitTypeInsn(NEW, "org/nlogo/nvm/Activation")
+      // stack: Activation
+      mv.visitInsn(DUP)
+      // stack: Activation Activation
+    }
+    else {
+      mv.visitVarInsn(ALOAD, 1)
+      // stack: Context
+    }
+    mv.loadKeptField("procedure", thisInstrUID)
+    // stack: Activation Activation Procedure  (or Context Procedure)
+    mv.visitVarInsn(ALOAD, 1)
+    mv.visitFieldInsn(GETFIELD, "org/nlogo/nvm/Context", "activation", "Lorg/nlogo/nvm/Activation;")
+    // stack: Activation Activation Procedure Activation  (or Context Procedure Activation)
+    mv.push(returnAddress)
+    if (profilingEnabled)
+      mv.visitMethodInsn(INVOKESPECIAL, "org/nlogo/nvm/Activation", "<init>", "(Lorg/nlogo/nvm/Procedure;Lorg/nlogo/nvm/Activation;I)V")
+    else
+      mv.visitMethodInsn(INVOKEVIRTUAL, "org/nlogo/nvm/Context", "newActivation",
+        "(Lorg/nlogo/nvm/Procedure;Lorg/nlogo/nvm/Activation;I)Lorg/nlogo/nvm/Activation;")
+    // stack: Activation
+  }
+
   /* Example code,just to show what bytecode is being generated
    public LogoList report_N (Object o0,Object o1) {
      LogoListBuilder list = new LogoListBuilder()
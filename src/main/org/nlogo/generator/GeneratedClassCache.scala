@@ -0,0 +1,290 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.generator
+
+import java.io.{ DataInputStream, DataOutputStream, File, FileInputStream, FileOutputStream,
+                 BufferedInputStream, BufferedOutputStream, IOException }
+import java.lang.reflect.Field
+import java.security.{ DigestOutputStream, MessageDigest }
+import java.util.IdentityHashMap
+import org.nlogo.api.Version
+import org.nlogo.nvm.{ Command, Instruction, Procedure }
+import org.objectweb.asm.Type
+
+// Keeps the classes the Generator makes on disk, so that the next JVM to compile the same
+// procedure can load them instead of generating them again.  Handy when a sweep runs hundreds of
+// short-lived headless JVMs on the same model.  Off by default; turn on with
+// -Dorg.nlogo.generatorCache=<directory>.  It's always safe to delete the directory.
+//
+// We can't skip parsing, only generation, because a generated class isn't complete without the
+// objects in its kept fields: the original instructions it calls "old style", the Procedures that
+// _call and _callreport push, whatever fields of the prims the inlined code reads, and so on.  So
+// along with the bytes, we record where in the instruction tree each of those objects was found,
+// and get them from the same place in the newly parsed tree.
+//
+// The key is a hash of everything that can make a difference to the bytes: the NetLogo version,
+// whether profiling is on, the procedure's name, and the shape of its instruction tree, including
+// the class of every instruction (so extension primitives are covered) and the values of their
+// fields that the generator inlines as constants, such as variable numbers and the sizes of called
+// procedures.  A procedure whose kept fields we can't account for just isn't cached.
+
+private object GeneratedClassCache {
+
+  // read every time, so tests can turn it on and off
+  def directory: Option[File] =
+    Option(System.getProperty("org.nlogo.generatorCache")).map(new File(_))
+
+  // how many procedures the Generator found here, and how many it had to generate (see
+  // headless.TestGeneratedClassCache, which gets them by reflection)
+  private val hitCount = new java.util.concurrent.atomic.AtomicInteger
+  private val missCount = new java.util.concurrent.atomic.AtomicInteger
+  def hits = hitCount.get
+  def misses = missCount.get
+  def hit() { hitCount.incrementAndGet() }
+  def miss() { missCount.incrementAndGet() }
+
+  // bump when the generator changes what it writes, or the file format changes
+  private val FORMAT = 1
+
+  /// where things are in an instruction tree
+
+  // a path is an index into Procedure.code, then indices into args arrays
+  type Path = List[Int]
+
+  sealed trait Recipe
+  case object NullRecipe extends Recipe
+  case class InstructionRecipe(path: Path) extends Recipe
+  case class FieldRecipe(path: Path, name: String) extends Recipe
+  case class GeneratedRecipe(index: Int) extends Recipe
+
+  case class Entry(path: Path, className: String, bytecode: Array[Byte], kept: Seq[(String, Recipe)])
+  case class Choice(path: Path, name: String, descriptor: String)
+  case class Cached(entries: Seq[Entry], choices: Seq[Choice])
+
+  // the tree as it was before the generator started replacing things in it
+  class Snapshot(code: Array[Command]) {
+    val paths = new IdentityHashMap[Instruction, Path]
+    private val nodes = collection.mutable.Map[Path, Instruction]()
+    private val recipes = new IdentityHashMap[AnyRef, Recipe]
+    private def walk(instr: Instruction, path: Path) {
+      if (!paths.containsKey(instr)) {
+        paths.put(instr, path)
+        nodes(path) = instr
+        recipes.put(instr, InstructionRecipe(path))
+        for (f <- fields(instr.getClass); if !f.getType.isPrimitive) {
+          val value = f.get(instr)
+          if (value != null && !recipes.containsKey(value))
+            recipes.put(value, FieldRecipe(path, f.getName))
+        }
+        for (i <- 0 until instr.args.length)
+          walk(instr.args(i), path :+ i)
+      }
+    }
+    for (i <- 0 until code.length)
+      walk(code(i), List(i))
+    def roots = code.toList
+    def node(path: Path): Instruction =
+      nodes.getOrElse(path, throw new IllegalStateException("no instruction at " + path))
+    def recipe(obj: AnyRef): Option[Recipe] =
+      if (obj == null) Some(NullRecipe)
+      else Option(recipes.get(obj))
+    def resolve(recipe: Recipe, generated: collection.Seq[Instruction]): AnyRef =
+      recipe match {
+        case NullRecipe => null
+        case InstructionRecipe(path) => node(path)
+        case FieldRecipe(path, name) =>
+          val instr = node(path)
+          fields(instr.getClass).find(_.getName == name)
+            .getOrElse(throw new IllegalStateException("no field " + name + " in " + instr))
+            .get(instr)
+        case GeneratedRecipe(index) => generated(index)
+      }
+  }
+
+  // all the fields of c and its superclasses, minus any that are shadowed, in a fixed order
+  private def fields(c: Class[_]): Seq[Field] = {
+    val result = new collection.mutable.ArrayBuffer[Field]
+    var names = Set[String]()
+    var cl: Class[_] = c
+    while (cl != null && cl != classOf[Object]) {
+      for (f <- cl.getDeclaredFields.sortBy(_.getName); if !names(f.getName)) {
+        names += f.getName
+        f.setAccessible(true)
+        result += f
+      }
+      cl = cl.getSuperclass
+    }
+    result
+  }
+
+  /// the key
+
+  def key(procedure: Procedure, profilingEnabled: Boolean, snapshot: Snapshot): String = {
+    val digest = MessageDigest.getInstance("SHA-1")
+    val out = new DataOutputStream(new DigestOutputStream(new java.io.OutputStream {
+      def write(b: Int) { }
+    }, digest))
+    out.writeInt(FORMAT)
+    out.writeUTF(Version.version)
+    out.writeUTF(Version.buildDate)
+    out.writeBoolean(profilingEnabled)
+    out.writeUTF(procedure.displayName)
+    def writeInstruction(instr: Instruction) {
+      out.writeUTF(instr.getClass.getName)
+      out.writeUTF(instr.displayName)
+      for (f <- fields(instr.getClass))
+        f.get(instr) match {
+          case p: Procedure =>
+            out.writeUTF(f.getName)
+            out.writeUTF(p.name)
+            out.writeInt(p.args.size)
+            out.writeInt(p.localsCount)
+          case v @ (_: String | _: java.lang.Number | _: java.lang.Boolean | _: java.lang.Character) =>
+            out.writeUTF(f.getName)
+            out.writeUTF(v.toString)
+          case _ =>
+        }
+      out.writeInt(instr.args.length)
+      instr.args.foreach(writeInstruction)
+    }
+    snapshot.roots.foreach(writeInstruction)
+    out.flush()
+    digest.digest.map(b => "%02x".format(b & 0xff)).mkString
+  }
+
+  /// remembering what the generator did
+
+  class Recorder(snapshot: Snapshot) {
+    private val entries = new collection.mutable.ArrayBuffer[Entry]
+    private val indices = new IdentityHashMap[Instruction, Integer]
+    private var ok = true
+    def generated(original: Instruction, result: Instruction, className: String,
+                  bytecode: Array[Byte], kept: Iterable[(String, AnyRef)]) {
+      val path = snapshot.paths.get(original)
+      if (path == null)
+        ok = false
+      else {
+        val recipes =
+          for ((name, obj) <- kept.toSeq)
+          yield (name, Option(indices.get(obj)).map(i => GeneratedRecipe(i.intValue))
+                         .orElse(snapshot.recipe(obj))
+                         .getOrElse { ok = false; NullRecipe })
+        indices.put(result, Int.box(entries.size))
+        entries += Entry(path, className, bytecode, recipes)
+      }
+    }
+    def finish(): Option[Cached] =
+      if (!ok) None
+      else {
+        import collection.JavaConverters._
+        val choices =
+          for {
+            (instr, path) <- snapshot.paths.asScala.toSeq
+            method = instr.chosenMethod
+            if method != null
+          } yield Choice(path, method.getName, Type.getMethodDescriptor(method))
+        Some(Cached(entries, choices))
+      }
+  }
+
+  def method(instr: Instruction, choice: Choice) =
+    instr.getClass.getMethods
+      .find(m => m.getName == choice.name && Type.getMethodDescriptor(m) == choice.descriptor)
+      .getOrElse(throw new IllegalStateException("no method " + choice.name + " in " + instr))
+
+  /// the files
+
+  private def file(dir: File, key: String) = new File(dir, key + ".bin")
+
+  def read(dir: File, key: String): Option[Cached] = {
+    val f = file(dir, key)
+    if (!f.exists) None
+    else try {
+      val in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))
+      try {
+        def readPath(): Path = List.fill(in.readInt())(in.readInt())
+        def readRecipe(): Recipe =
+          in.readByte() match {
+            case 0 => NullRecipe
+            case 1 => InstructionRecipe(readPath())
+            case 2 => FieldRecipe(readPath(), in.readUTF())
+            case 3 => GeneratedRecipe(in.readInt())
+          }
+        if (in.readInt() != FORMAT) None
+        else {
+          val entries =
+            for (_ <- 1 to in.readInt()) yield {
+              val path = readPath()
+              val className = in.readUTF()
+              val bytecode = new Array[Byte](in.readInt())
+              in.readFully(bytecode)
+              val kept = for (_ <- 1 to in.readInt()) yield (in.readUTF(), readRecipe())
+              Entry(path, className, bytecode, kept)
+            }
+          val choices =
+            for (_ <- 1 to in.readInt())
+            yield Choice(readPath(), in.readUTF(), in.readUTF())
+          Some(Cached(entries, choices))
+        }
+      }
+      finally in.close()
+    }
+    catch {
+      // a file that another JVM is halfway through writing, or that got truncated somehow, is
+      // just a miss.  we'll write over it.
+      case _: IOException => None
+      case _: RuntimeException => None
+    }
+  }
+
+  def write(dir: File, key: String, cached: Cached) {
+    try {
+      dir.mkdirs()
+      // write somewhere else first, so other JVMs never see half a file
+      val temp = File.createTempFile(key, ".tmp", dir)
+      val out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))
+      try {
+        def writePath(path: Path) {
+          out.writeInt(path.size)
+          path.foreach(out.writeInt)
+        }
+        out.writeInt(FORMAT)
+        out.writeInt(cached.entries.size)
+        for (entry <- cached.entries) {
+          writePath(entry.path)
+          out.writeUTF(entry.className)
+          out.writeInt(entry.bytecode.length)
+          out.write(entry.bytecode)
+          out.writeInt(entry.kept.size)
+          for ((name, recipe) <- entry.kept) {
+            out.writeUTF(name)
+            recipe match {
+              case NullRecipe =>
+                out.writeByte(0)
+              case InstructionRecipe(path) =>
+                out.writeByte(1); writePath(path)
+              case FieldRecipe(path, fieldName) =>
+                out.writeByte(2); writePath(path); out.writeUTF(fieldName)
+              case GeneratedRecipe(index) =>
+                out.writeByte(3); out.writeInt(index)
+            }
+          }
+        }
+        out.writeInt(cached.choices.size)
+        for (choice <- cached.choices) {
+          writePath(choice.path)
+          out.writeUTF(choice.name)
+          out.writeUTF(choice.descriptor)
+        }
+      }
+      finally out.close()
+      if (!temp.renameTo(file(dir, key)))
+        temp.delete()
+    }
+    catch {
+      // not being able to cache is no reason not to run the model
+      case _: IOException =>
+    }
+  }
+
+}
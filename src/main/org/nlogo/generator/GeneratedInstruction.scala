@@ -27,6 +27,10 @@ trait GeneratedInstruction extends Instruction {
     // the GeneratedInstruction itself is the default culprit. ~Forrest 5/22/06
     this
   }
+  override def moveTokens(delta: Int) {
+    super.moveTokens(delta)
+    original.moveTokens(delta)
+  }
   override def dump(indentLevel: Int): String = {
     val buf = new StringBuilder
     buf ++= super.dump(indentLevel)
@@ -19,10 +19,62 @@ object Generator {
 
 class Generator(source: String, procedure: Procedure, profilingEnabled: Boolean) extends GeneratorInterface {
   var ip = 0 // kinda ugly we need to track this only to use in one place, in generateCallReport - ST 2/10/09
-  def generate() = {
+  def generate() =
+    GeneratedClassCache.directory match {
+      case Some(dir) => generateCached(dir)
+      case None => generateAll()
+    }
+  private def generateAll() = {
     ip = 0
     procedure.code.map { cmd => val result = recurse(cmd); ip += 1; result }
   }
+  private var recorder: GeneratedClassCache.Recorder = null
+  private def generateCached(dir: java.io.File) = {
+    val snapshot = new GeneratedClassCache.Snapshot(procedure.code)
+    val key = GeneratedClassCache.key(procedure, profilingEnabled, snapshot)
+    GeneratedClassCache.read(dir, key).flatMap(restore(snapshot, _)) match {
+      case Some(result) =>
+        GeneratedClassCache.hit()
+        result
+      case None =>
+        GeneratedClassCache.miss()
+        recorder = new GeneratedClassCache.Recorder(snapshot)
+        val result = generateAll()
+        recorder.finish().foreach(GeneratedClassCache.write(dir, key, _))
+        recorder = null
+        result
+    }
+  }
+  // does what generateAll() would, using classes generated by an earlier run.  if anything goes
+  // wrong, we haven't touched the procedure yet, so we can still generate the usual way: we look
+  // everything up and load everything first, and only change the instructions once that's done.
+  private def restore(snapshot: GeneratedClassCache.Snapshot, cached: GeneratedClassCache.Cached): Option[Array[Command]] =
+    try {
+      val chosen =
+        for (choice <- cached.choices) yield {
+          val instr = snapshot.node(choice.path)
+          (instr, GeneratedClassCache.method(instr, choice))
+        }
+      val instances = new collection.mutable.ArrayBuffer[Instruction]
+      for (entry <- cached.entries) {
+        nextCustomClassNumUID() // so the usual way won't reuse the names, if we fail
+        val kept = entry.kept.map { case (name, recipe) => (name, snapshot.resolve(recipe, instances)) }
+        instances += define(snapshot.node(entry.path), entry.className, entry.bytecode, kept)
+      }
+      for ((instr, method) <- chosen)
+        instr.chosenMethod = method
+      val result = procedure.code.clone
+      for ((entry, instance) <- cached.entries zip instances)
+        entry.path match {
+          case List(i) => result(i) = instance.asInstanceOf[Command]
+          case path => snapshot.node(path.init).args(path.last) = instance.asInstanceOf[Reporter]
+        }
+      Some(result)
+    }
+    catch {
+      case _: Exception => None
+      case _: LinkageError => None
+    }
   private def recurse[A <: Instruction](instr: A): A = // A is Command or Reporter
     if (BytecodeUtils.isRejiggered(instr))
       new InstructionGenerator(instr).generate()
@@ -41,6 +93,42 @@ class Generator(source: String, procedure: Procedure, profilingEnabled: Boolean)
   // something to do with the fact that Femto instantiates Generator using Class.forName().  I don't
   // understand this getContextClassLoader thing, either. - ST 4/16/09
   private val loader = new CustomClassLoader(Thread.currentThread.getContextClassLoader)
+  // loads a generated class and makes the instance that takes original's place
+  private def define[A <: Instruction](original: A, className: String, bytecode: Array[Byte],
+                                       kept: Iterable[(String, AnyRef)]): A = {
+    import org.objectweb.asm.ClassReader
+    import org.objectweb.asm.util.TraceClassVisitor
+    val result = loader.loadBytecodeClass(className, bytecode).newInstance.asInstanceOf[A]
+    for ((fieldName, value) <- kept) {
+      val f = result.getClass.getDeclaredField(fieldName)
+      f.setAccessible(true)
+      f.set(result, value)
+    }
+    result.args = original.args
+    result.token(original.token)
+    val sourceStart = original.getSourceStartPosition
+    val sourceEnd = original.getSourceEndPosition
+    result.source =
+      if (sourceStart < 0 || sourceStart > sourceEnd || sourceEnd > source.length) ""
+      else source.substring(sourceStart, sourceEnd)
+    // disassembly is stored as a thunk, so it's not generated unless used
+    def isBoring(line: String) =
+      List("\\s*LINENUMBER.*", "\\s*MAXSTACK.*", "\\s*MAXLOCALS.*").exists(line.matches(_))
+    result.disassembly = new org.nlogo.util.Thunk[String] {
+      def compute = {
+        val sw = new java.io.StringWriter
+        new ClassReader(bytecode).accept(new TraceClassVisitor(new java.io.PrintWriter(sw)), 0)
+        // (?s) = let dot match newlines. match until blank line (don't include init method)
+        """(?s)public final strictfp (?:perform|report).*?\n(.*?)\n\s*\n""".r
+          .findFirstMatchIn(sw.getBuffer.toString).get.subgroups.head
+          .split("\n").filter(!isBoring(_)).mkString("\n")
+      }
+    }
+    result.agentClassString = original.agentClassString
+    result.asInstanceOf[GeneratedInstruction].original = original
+    result.chosenMethod = original.chosenMethod
+    result
+  }
   private[generator] class InstructionGenerator[A <: Instruction](original: A) {
     import org.objectweb.asm
     import asm.Opcodes._
@@ -90,11 +178,7 @@ class Generator(source: String, procedure: Procedure, profilingEnabled: Boolean)
       generateBodyMethod()
       generateInitMethod()
       generateKeptFields()
-      val result = finish()
-      result.agentClassString = original.agentClassString
-      result.asInstanceOf[GeneratedInstruction].original = original
-      result.chosenMethod = original.chosenMethod
-      result
+      finish()
     }
     def generateConstructor() {
       val constructor = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null)
@@ -238,28 +322,10 @@ class Generator(source: String, procedure: Procedure, profilingEnabled: Boolean)
       cw.visitEnd()
       val bytecode = cw.toByteArray
       val cName = fullClassName.replace('/', '.')
-      val result = loader.loadBytecodeClass(cName, bytecode).newInstance.asInstanceOf[A]
-      setAllKeptFields(result)
-      result.args = original.args
-      result.token(original.token)
-      val sourceStart = original.getSourceStartPosition
-      val sourceEnd = original.getSourceEndPosition
-      result.source =
-        if (sourceStart < 0 || sourceStart > sourceEnd || sourceEnd > source.length) ""
-        else source.substring(sourceStart, sourceEnd)
-      // disassembly is stored as a thunk, so it's not generated unless used
-      def isBoring(line: String) =
-        List("\\s*LINENUMBER.*", "\\s*MAXSTACK.*", "\\s*MAXLOCALS.*").exists(line.matches(_))
-      result.disassembly = new org.nlogo.util.Thunk[String] {
-        def compute = {
-          val sw = new java.io.StringWriter
-          new ClassReader(bytecode).accept(new TraceClassVisitor(new java.io.PrintWriter(sw)), 0)
-          // (?s) = let dot match newlines. match until blank line (don't include init method)
-          """(?s)public final strictfp (?:perform|report).*?\n(.*?)\n\s*\n""".r
-            .findFirstMatchIn(sw.getBuffer.toString).get.subgroups.head
-            .split("\n").filter(!isBoring(_)).mkString("\n")
-        }
-      }
+      import collection.JavaConverters._
+      val result = define(original, cName, bytecode, keptThings.asScala)
+      if (recorder != null)
+        recorder.generated(original, result, cName, bytecode, keptThings.asScala)
       if (debugEndOfMethodLabel.getOffset > Generator.METHOD_SIZE_WARNING_THRESHOLD) {
         System.err.println
         System.err.println("WARNING: method size=" + debugEndOfMethodLabel.getOffset +
@@ -344,14 +410,6 @@ class Generator(source: String, procedure: Procedure, profilingEnabled: Boolean)
         cw.visitField(accessCode, fieldName, descriptor, null, null).visitEnd()
       }
     }
-    def setAllKeptFields(resultInstr: Instruction) {
-      import collection.JavaConverters._
-      for (fieldName <- keptThings.keySet.asScala) {
-        val f = resultInstr.getClass.getDeclaredField(fieldName)
-        f.setAccessible(true)
-        f.set(resultInstr, keptThings.get(fieldName))
-      }
-    }
     /**
      * This is a kind of a hack, to create the synthetic method that javac creates to deal with code
      * like "Turtle.class" ~Forrest (7/16/2006)
@@ -2,6 +2,7 @@
 
 package org.nlogo.headless
 import org.nlogo.api.{CompilerException,LogoException,Version}
+import org.nlogo.nvm.Sampler
 import org.nlogo.workspace.Benchmarker
 import org.nlogo.util.SysInfo
 object HeadlessBenchmarker {
@@ -16,9 +17,26 @@ object HeadlessBenchmarker {
     println("@@@@@@ benchmarking " + Version.fullVersion)
     println("@@@@@@ warmup " + minTime + " seconds, min " + minTime + " seconds, max " + maxTime + " seconds")
     val workspace = HeadlessWorkspace.newInstance
+    // -Dorg.nlogo.sampler=foo samples the whole run, writing foo.folded for flamegraph.pl
+    // and foo.txt with the totals (see nvm.Sampler)
+    val samplerPath = Option(System.getProperty("org.nlogo.sampler"))
     try {
       workspace.open("models/test/benchmarks/" + name + " Benchmark.nlogo")
+      for(path <- samplerPath) {
+        workspace.setSampler(new Sampler(workspace.world))
+        workspace.sampler.start()
+      }
       Benchmarker.benchmark(workspace,minTime,maxTime)
+      for(path <- samplerPath) {
+        val sampler = workspace.sampler
+        sampler.stop()
+        def write(suffix: String)(f: java.io.PrintStream => Unit) {
+          val out = new java.io.PrintStream(new java.io.FileOutputStream(path + suffix))
+          try f(out) finally out.close()
+        }
+        write(".folded")(sampler.writeCollapsed)
+        write(".txt")(sampler.writeTable)
+      }
     }
     finally { workspace.dispose() }
   }
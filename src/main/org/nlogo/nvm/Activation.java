@@ -2,23 +2,76 @@
 
 package org.nlogo.nvm;
 
+// An Activation is one call of a procedure: its inputs (and the let
+// variables LocalsVisitor turned into locals), plus where to return to.
+// Procedure calls get theirs from Context.newActivation(), which hands
+// back ones whose procedure has returned, so ordinary calls don't
+// allocate; see Context.releaseActivation() for when that's safe.
+
 public final strictfp class Activation {
 
-  public final Procedure procedure;
-  public final Activation parent;
-  final int returnAddress;
+  // not final so Context can recycle us
+  public Procedure procedure;
+  public Activation parent;
+  public int returnAddress;
   // not final so ReporterTask can swap in the definition-site args - ST 2/5/11
   public Object[] args;
 
+  // what args normally points to.  kept separately so that if we're
+  // recycled while a ReporterTask's locals are swapped in, we don't
+  // hand the task's locals to the next procedure call
+  private Object[] slots;
+
+  // true if we came from Context.newActivation() and may go back to it
+  final boolean recyclable;
+
+  // true once a task has closed over our args, which then have to
+  // outlive the call, so we mustn't be recycled
+  boolean captured = false;
+
+  // true if we took the place of a call to the same procedure (see
+  // Context.tailCall), so "stop" in us shouldn't stop a forever button
+  boolean tailCalled = false;
+
+  // next in Context's list of free activations
+  Activation nextFree = null;
+
   private static final Object[] NO_ARGS = new Object[]{};
 
   public Activation(Procedure procedure, Activation parent,
                     int returnAddress) {
+    this(procedure, parent, returnAddress, false);
+  }
+
+  Activation(Procedure procedure, Activation parent,
+             int returnAddress, boolean recyclable) {
     this.procedure = procedure;
     this.parent = parent;
     this.returnAddress = returnAddress;
+    this.recyclable = recyclable;
     int size = procedure.size;
-    args = (size > 0) ? new Object[size] : NO_ARGS;
+    slots = (size > 0) ? new Object[size] : NO_ARGS;
+    args = slots;
+  }
+
+  // turns us into a fresh activation, as if just constructed
+  void reuse(Procedure procedure, Activation parent, int returnAddress) {
+    this.procedure = procedure;
+    this.parent = parent;
+    this.returnAddress = returnAddress;
+    tailCalled = false;
+    if (slots.length < procedure.size) {
+      slots = new Object[procedure.size];
+    }
+    args = slots;
+  }
+
+  // so a free activation doesn't keep anything from being garbage
+  // collected.  only slots up to procedure.size can have been used
+  void clear() {
+    java.util.Arrays.fill(slots, 0, procedure.size, null);
+    args = slots;
+    parent = null;
   }
 
   public void setUpArgsForRunOrRunresult() {
@@ -26,6 +79,13 @@ public final strictfp class Activation {
     // original, I no longer remember it - ST 2/6/11
     System.arraycopy(parent.args, 0, args, 0,
         parent.procedure.args.size());
+    // the code being run wasn't compiled with the parent, so it doesn't
+    // know a local may hold a TransientList (see compiler.InPlaceLists)
+    for (int i = 0; i < parent.procedure.args.size(); i++) {
+      if (args[i] instanceof TransientList) {
+        args[i] = ((TransientList) args[i]).freeze();
+      }
+    }
   }
 
   @Override
@@ -11,6 +11,10 @@ trait CompilerInterface {
   @throws(classOf[CompilerException])
   def compileProgram(source: String, program: Program, extensionManager: ExtensionManager): CompilerResults
 
+  @throws(classOf[CompilerException])
+  def recompileProgram(source: String, program: Program, oldProgram: Program, oldProcedures: java.util.Map[String, Procedure],
+                       extensionManager: ExtensionManager): CompilerResults
+
   @throws(classOf[CompilerException])
   def compileMoreCode(source: String, displayName: Option[String], program: Program, oldProcedures: java.util.Map[String, Procedure],
                       extensionManager: ExtensionManager): CompilerResults
@@ -22,9 +22,14 @@ public final strictfp class Context {
   public boolean waiting = false; // are we waiting on a child job?
   private boolean inReporterProcedure = false;
 
-  @SuppressWarnings("unchecked") // Java doesn't know about variance
-  public scala.collection.immutable.List<LetBinding> letBindings =
-      (scala.collection.immutable.List<LetBinding>) ((Object) scala.collection.immutable.Nil$.MODULE$);
+  public LetFrame letFrame = null;
+
+  // activations whose procedures have returned, for newActivation()
+  private Activation freeActivations = null;
+  private int freeActivationCount = 0;
+  // enough for the call depths most models reach; deep recursion
+  // unwinding shouldn't leave us holding thousands of them
+  private static final int MAX_FREE_ACTIVATIONS = 32;
 
   /**
    * It is necessary for each Context to have its own stopping flag
@@ -57,7 +62,7 @@ public final strictfp class Context {
   public Context(Context context, AgentSet agents) {
     job = context.job;
     activation = context.activation;
-    letBindings = context.letBindings;
+    letFrame = context.letFrame;
     myself = context.agent;
     agentBit = agents.getAgentBit();
   }
@@ -65,7 +70,7 @@ public final strictfp class Context {
   public Context(Context context, Agent agent) {
     job = context.job;
     activation = context.activation;
-    letBindings = context.letBindings;
+    letFrame = context.letFrame;
     myself = context.agent;
     agentBit = agent.getAgentBit();
   }
@@ -175,14 +180,80 @@ public final strictfp class Context {
   }
 
   public void returnFromProcedure() {
-    ip = activation.returnAddress;
-    activation = activation.parent;
+    Activation done = activation;
+    ip = done.returnAddress;
+    activation = done.parent;
+    releaseActivation(done);
+  }
+
+  /// procedure calls
+
+  /**
+   * Used by _call and _callreport instead of the Activation constructor.
+   * May hand back an activation whose procedure has already returned,
+   * with its args cleared, so calling a procedure doesn't allocate.
+   */
+  public Activation newActivation(Procedure procedure, Activation parent,
+                                  int returnAddress) {
+    Activation result = freeActivations;
+    if (result == null) {
+      return new Activation(procedure, parent, returnAddress, true);
+    }
+    freeActivations = result.nextFree;
+    freeActivationCount--;
+    result.nextFree = null;
+    result.reuse(procedure, parent, returnAddress);
+    return result;
+  }
+
+  // called when the activation's procedure has returned.  only
+  // activations from newActivation() come back to us, since the others
+  // may still be known elsewhere (Evaluator's thunks, the profiler,
+  // ExclusiveJob and ConcurrentJob's top level activations), and not
+  // if a task closed over the args.  nothing else keeps hold of an
+  // activation after it returns: ask's child contexts share ours, but
+  // they're done before we return, and if there's an error, nothing
+  // returns, so nothing is released.
+  private void releaseActivation(Activation done) {
+    if (done.recyclable && !done.captured
+        && freeActivationCount < MAX_FREE_ACTIVATIONS) {
+      done.clear();
+      done.nextFree = freeActivations;
+      freeActivations = done;
+      freeActivationCount++;
+    }
+  }
+
+  /**
+   * Used by _tailcall and _tailcallreport.  newActivation, which should
+   * have the current activation's parent and return address, takes the
+   * current activation's place instead of going on top of it, so a
+   * procedure that calls itself in tail position runs in constant space.
+   */
+  public void tailCall(Activation newActivation) {
+    Activation done = activation;
+    activation = newActivation;
+    activation.tailCalled = true;
+    ip = 0;
+    releaseActivation(done);
+  }
+
+  /**
+   * For tasks, which go on using the current activation's args after
+   * the procedure returns, so the activation mustn't be recycled.
+   */
+  public Object[] closeOverLocals() {
+    activation.captured = true;
+    return activation.args;
   }
 
   public void stop() {
     if (activation.procedure.isTask()) {
       throw NonLocalExit$.MODULE$;
     }
+    // if we replaced the caller's own call (see tailCall), the caller
+    // would have gone on to its _return, which resets the flag
+    boolean tailCalled = activation.tailCalled;
     if (activation.procedure.topLevel) {
       // In the BehaviorSpace case, there are two cases: stop
       // used inside a procedure called from the go commands,
@@ -211,7 +282,7 @@ public final strictfp class Context {
     // directly by the button. - ST
     // It's also used to stop a BehaviorSpace run, using
     // __experimentstepend. - ST 3/8/06
-    stopping = true;
+    stopping = !tailCalled;
   }
 
   ///
@@ -254,8 +325,10 @@ public final strictfp class Context {
     } finally {
       inReporterProcedure = oldInReporterProcedure;
     }
-    ip = activation.returnAddress;
-    activation = activation.parent;
+    Activation done = activation;
+    ip = done.returnAddress;
+    activation = done.parent;
+    releaseActivation(done);
     Object result = job.result;
     job.result = null;
     return result;
@@ -264,36 +337,57 @@ public final strictfp class Context {
   /// stuff for "let"
 
   public void let(Let let, Object value) {
-    letBindings = letBindings.$colon$colon(new LetBinding(let, value));
+    Object scope = let.scope();
+    LetFrame frame = letFrame;
+    while (frame != null && frame.scope != scope) {
+      frame = frame.next;
+    }
+    if (frame == null) {
+      frame = new LetFrame(scope, let.index() + 1, letFrame);
+      letFrame = frame;
+    } else if (frame.captured && frame.get(let.index()) != null) {
+      // a task has the old binding, leave it be
+      frame = frame.copy(letFrame);
+      letFrame = frame;
+    }
+    frame.bind(let.index(), value);
   }
 
   public Object getLet(Let let) {
-    scala.collection.immutable.List<LetBinding> rest = letBindings;
-    while ((Object) rest != scala.collection.immutable.Nil$.MODULE$) // NOPMD
-    {
-      LetBinding binding = rest.head();
-      if (let == binding.let) {
-        return binding.value;
+    Object scope = let.scope();
+    for (LetFrame frame = letFrame; frame != null; frame = frame.next) {
+      if (frame.scope == scope) {
+        Object value = frame.get(let.index());
+        if (value != null) {
+          return value;
+        }
       }
-      rest = rest.tail();
     }
     return job.parentContext.getLet(let);
   }
 
   public void setLet(Let let, Object value) {
-    scala.collection.immutable.List<LetBinding> rest = letBindings;
-    while ((Object) rest != scala.collection.immutable.Nil$.MODULE$) // NOPMD
-    {
-      LetBinding binding = rest.head();
-      if (let == binding.let) {
-        binding.value = value;
+    Object scope = let.scope();
+    for (LetFrame frame = letFrame; frame != null; frame = frame.next) {
+      if (frame.scope == scope && frame.get(let.index()) != null) {
+        frame.set(let.index(), value);
         return;
       }
-      rest = rest.tail();
     }
     job.parentContext.setLet(let, value);
   }
 
+  // for tasks, which need to go on seeing the current bindings even
+  // if they get overwritten here later
+  public LetFrame closeOverLets() {
+    // frames below a captured frame were captured along with it
+    for (LetFrame frame = letFrame; frame != null && !frame.captured;
+         frame = frame.next) {
+      frame.captured = true;
+    }
+    return letFrame;
+  }
+
   ///
 
   // this had to be made public so that workspace.Evaluator could call it when
@@ -338,6 +432,10 @@ public final strictfp class Context {
     if (command.switches && job.owner.ownsPrimaryJobs()) {
       command.workspace.breathe();
     }
+    Sampler sampler = command.workspace.sampler();
+    if (sampler != null && sampler.isDue()) {
+      sampler.sample(this, command);
+    }
     if (Thread.currentThread().isInterrupted()) {
       command.world.comeUpForAir = false;
       finished = true;
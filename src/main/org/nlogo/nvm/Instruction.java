@@ -142,6 +142,30 @@ public abstract strictfp class Instruction
     return end;
   }
 
+  // for when the compiler keeps this instruction for a procedure that
+  // has moved delta characters in the source (see compiler.Recompiler).
+  // doesn't touch args; the caller gets to those itself.
+  public void moveTokens(int delta) {
+    if (token != null) {
+      token = moveToken(token, delta);
+    }
+    if (token2 != null) {
+      token2 = moveToken(token2, delta);
+    }
+    if (storedSourceStartPosition > -1) {
+      storedSourceStartPosition += delta;
+    }
+    if (storedSourceEndPosition > -1) {
+      storedSourceEndPosition += delta;
+    }
+  }
+
+  private static org.nlogo.api.Token moveToken(org.nlogo.api.Token token, int delta) {
+    return new org.nlogo.api.Token
+        (token.name(), token.tyype(), token.value(),
+            token.startPos() + delta, token.endPos() + delta, token.fileName());
+  }
+
   // We want this information for creating some error messages
   // (particularly ArgumentTypeExceptions) ~Forrest (11/10/2006)
   private String storedSourceSnippet = "";
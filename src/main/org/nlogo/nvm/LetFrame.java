@@ -0,0 +1,82 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.nvm;
+
+// The values of the let variables (and task inputs) bound by one
+// procedure or task in one Context.  The compiler gives every Let a
+// scope and a slot number (see compiler.LetSlotVisitor), so looking a
+// variable up is a matter of finding the frame for its scope and
+// indexing into it.  Frames are chained: a task's frame points to the
+// frames it closed over.
+//
+// Re-running a let overwrites its slot, unless a task has closed over
+// the frame, in which case Context.let() copies the frame first, so the
+// task goes on seeing the binding it closed over.  That's the same
+// thing that happens when "let" makes a fresh binding every time.  The
+// other slots are still the same bindings, though, so that "set" on one
+// of them is seen by both frames; copy() puts each of them in a Binding
+// that both frames share.
+
+public final strictfp class LetFrame {
+
+  final Object scope;
+  final LetFrame next;
+  private Object[] values;
+  boolean captured = false;
+
+  // a slot shared between a frame and its copies
+  private static final class Binding {
+    Object value;
+
+    Binding(Object value) {
+      this.value = value;
+    }
+  }
+
+  LetFrame(Object scope, int size, LetFrame next) {
+    this.scope = scope;
+    this.next = next;
+    values = new Object[StrictMath.max(size, 4)];
+  }
+
+  // null if unbound
+  Object get(int index) {
+    Object value = index < values.length ? values[index] : null;
+    return value instanceof Binding ? ((Binding) value).value : value;
+  }
+
+  // changes the binding in the slot, wherever else it's shared
+  void set(int index, Object value) {
+    if (index < values.length && values[index] instanceof Binding) {
+      ((Binding) values[index]).value = value;
+    } else {
+      bind(index, value);
+    }
+  }
+
+  // a new binding in the slot, for this frame only
+  void bind(int index, Object value) {
+    if (index >= values.length) {
+      Object[] newValues = new Object[StrictMath.max(index + 1, values.length * 2)];
+      System.arraycopy(values, 0, newValues, 0, values.length);
+      values = newValues;
+    }
+    values[index] = value;
+  }
+
+  LetFrame copy(LetFrame next) {
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] != null && !(values[i] instanceof Binding)) {
+        values[i] = new Binding(values[i]);
+      }
+    }
+    LetFrame result = new LetFrame(scope, values.length, next);
+    System.arraycopy(values, 0, result.values, 0, values.length);
+    return result;
+  }
+
+  void clear() {
+    java.util.Arrays.fill(values, null);
+  }
+
+}
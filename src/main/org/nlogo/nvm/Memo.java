@@ -0,0 +1,122 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.nvm;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.nlogo.api.LogoList;
+import org.nlogo.api.Nobody$;
+
+// The results of a reporter procedure the compiler found to be pure
+// (see compiler.Memoizer), by the values of its inputs, so calling it
+// again with the same inputs doesn't run it again.  Once there are more
+// than SIZE entries, the least recently used one goes.  clear-all
+// empties us.
+//
+// Only inputs that can't change underneath us can be part of a key:
+// numbers, strings, booleans, nobody, and lists of those.  A call with
+// anything else as an input (an agent, say) just runs the procedure.
+//
+// Synchronized since the event thread may clear us while the job
+// thread is running code.
+
+public final strictfp class Memo {
+
+  public static final int SIZE =
+      Integer.getInteger("org.nlogo.memoSize", 1024);
+
+  private final Map<Key, Object> map =
+      new LinkedHashMap<Key, Object>(16, 0.75f, true) { // true = access order
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+          return size() > SIZE;
+        }
+      };
+
+  private long hits = 0;
+  private long misses = 0;
+
+  // null if we don't have it
+  public synchronized Object get(Object[] inputs) {
+    Object result = map.get(new Key(inputs));
+    if (result == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return result;
+  }
+
+  // we keep the array, so the caller mustn't change it afterwards
+  public synchronized void put(Object[] inputs, Object result) {
+    map.put(new Key(inputs), result);
+  }
+
+  public synchronized void clear() {
+    map.clear();
+  }
+
+  public synchronized int size() {
+    return map.size();
+  }
+
+  public synchronized long hits() {
+    return hits;
+  }
+
+  public synchronized long misses() {
+    return misses;
+  }
+
+  public static boolean canBeKey(Object[] inputs) {
+    for (int i = 0; i < inputs.length; i++) {
+      if (!isValue(inputs[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isValue(Object obj) {
+    if (obj instanceof Double || obj instanceof String
+        || obj instanceof Boolean || obj == Nobody$.MODULE$) {
+      return true;
+    }
+    if (obj instanceof LogoList) {
+      for (Object element : (LogoList) obj) {
+        if (!isValue(element)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return false;
+  }
+
+  // Double.equals tells 0 from -0, which is what we want here, since a
+  // procedure may not give the same answer for both
+  private static final class Key {
+    private final Object[] inputs;
+    private final int hash;
+
+    Key(Object[] inputs) {
+      this.inputs = inputs;
+      hash = Arrays.hashCode(inputs);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      return obj instanceof Key
+          && hash == ((Key) obj).hash
+          && Arrays.equals(inputs, ((Key) obj).inputs);
+    }
+  }
+
+}
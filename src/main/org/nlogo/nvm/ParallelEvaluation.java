@@ -0,0 +1,147 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.nvm;
+
+import org.nlogo.agent.Agent;
+import org.nlogo.agent.AgentSet;
+import org.nlogo.api.LogoException;
+import org.nlogo.util.Bands;
+import org.nlogo.util.MersenneTwisterFast;
+
+// Evaluates a reporter block for every agent in an agentset on several
+// threads at once, each with a Context of its own.  The compiler only
+// lets _of and _parallelupdate come here if the block can't have any
+// side effects and doesn't use the random number generator (see
+// compiler.ParallelVisitor), so the agents can be evaluated in any
+// order.  Results come back in the order the serial loop would have
+// produced them, and if anything goes wrong, it's the error the serial
+// loop would have hit first that gets thrown.
+//
+// Off by default; turn on with -Dorg.nlogo.parallelEvaluation=true.
+
+public final strictfp class ParallelEvaluation {
+
+  // this class is not instantiable
+  private ParallelEvaluation() {
+    throw new IllegalStateException();
+  }
+
+  public static boolean enabled =
+      Boolean.getBoolean("org.nlogo.parallelEvaluation");
+
+  public static int threads =
+      Integer.getInteger("org.nlogo.parallelEvaluationThreads",
+          Runtime.getRuntime().availableProcessors());
+
+  // below this many agents it isn't worth waking up the workers
+  public static final int MIN_AGENTS = 512;
+
+  public static boolean worthIt(int agentCount) {
+    return enabled && threads > 1 && agentCount >= MIN_AGENTS;
+  }
+
+  /**
+   * Like looping over agents.shufflerator(), and consumes random
+   * numbers exactly the same way, even if an error occurs.
+   */
+  public static Object[] evaluateShuffled(Context context, AgentSet agents,
+                                          Reporter reporter)
+      throws LogoException {
+    MersenneTwisterFast random = context.job.random;
+    MersenneTwisterFast saved = random.clone();
+    Agent[] order = new Agent[agents.count()];
+    int n = 0;
+    for (AgentSet.Iterator iter = agents.shufflerator(random); iter.hasNext();) {
+      order[n++] = iter.next();
+    }
+    Outcome outcome = evaluate(context, agents, order, n, reporter);
+    if (outcome.index == -1) {
+      return outcome.results;
+    }
+    // the serial loop would have stopped partway through the shuffle,
+    // so put the generator back and replay just that much of it
+    random.load(saved.save());
+    AgentSet.Iterator iter = agents.shufflerator(random);
+    for (int i = 0; i <= outcome.index && iter.hasNext(); i++) {
+      iter.next();
+    }
+    throw outcome.rethrow();
+  }
+
+  /**
+   * Like looping over agents.iterator().
+   */
+  public static Object[] evaluate(Context context, AgentSet agents,
+                                  Reporter reporter)
+      throws LogoException {
+    Agent[] order = new Agent[agents.count()];
+    int n = 0;
+    for (AgentSet.Iterator iter = agents.iterator(); iter.hasNext();) {
+      order[n++] = iter.next();
+    }
+    Outcome outcome = evaluate(context, agents, order, n, reporter);
+    if (outcome.index == -1) {
+      return outcome.results;
+    }
+    throw outcome.rethrow();
+  }
+
+  // the results, plus the earliest exception and the index of the
+  // agent it happened on, or -1 if there wasn't one
+  private static class Outcome {
+    final Object[] results;
+    int index = -1;
+    Throwable exception;
+
+    Outcome(Object[] results) {
+      this.results = results;
+    }
+
+    synchronized void fail(int index, Throwable exception) {
+      if (this.index == -1 || index < this.index) {
+        this.index = index;
+        this.exception = exception;
+      }
+    }
+
+    // returns instead of throwing a LogoException so the caller can
+    // say "throw", keeping javac happy
+    LogoException rethrow() {
+      if (exception instanceof RuntimeException) {
+        throw (RuntimeException) exception;
+      }
+      if (exception instanceof Error) {
+        throw (Error) exception;
+      }
+      return (LogoException) exception;
+    }
+  }
+
+  private static Outcome evaluate(final Context context, final AgentSet agents,
+                                  final Agent[] order, int n,
+                                  final Reporter reporter) {
+    final Outcome outcome = new Outcome(new Object[n]);
+    Bands.run(n, threads, new Bands.Band() {
+      public void run(int start, int end) {
+        Context freshContext = new Context(context, agents);
+        for (int i = start; i < end; i++) {
+          try {
+            outcome.results[i] =
+                freshContext.evaluateReporter(order[i], reporter);
+          } catch (LogoException ex) {
+            outcome.fail(i, ex);
+            return;
+          } catch (RuntimeException ex) {
+            outcome.fail(i, ex);
+            return;
+          } catch (StackOverflowError ex) {
+            outcome.fail(i, ex);
+            return;
+          }
+        }
+      }
+    });
+    return outcome;
+  }
+
+}
@@ -42,6 +42,18 @@ public strictfp class Procedure {
 
   public int size; // cache args.size() for efficiency with making Activations
 
+  // the compiler leaves something here so that next time the whole program is
+  // compiled, it can tell whether this procedure changed (see compiler.Recompiler)
+  public Object reuseKey = null;
+
+  // non-null if the compiler found this is a pure reporter procedure
+  // worth memoizing (see compiler.Memoizer)
+  public Memo memo = null;
+
+  // whether the compiler found this is a pure reporter procedure, whether
+  // or not it's worth memoizing; later compiles that call it need to know
+  public boolean pure = false;
+
   // ExpressionParser doesn't know how many parameters the task is going to take;
   // that's determined by TaskVisitor. so for now this is mutable - ST 2/4/11
   public final scala.collection.mutable.ArrayBuffer<Let> taskFormals =
@@ -85,7 +97,8 @@ public strictfp class Procedure {
     return name + " (" + fileName + ")";
   }
 
-  public Syntax syntax() {
+  // synchronized since compiler.LocalsVisitor may be adding locals on another thread
+  public synchronized Syntax syntax() {
     int[] right = new int[(args.size() - localsCount)];
     for (int i = 0; i < right.length; i++) {
       right[i] = Syntax.WildcardType();
@@ -0,0 +1,161 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.nvm
+
+import org.nlogo.agent.World
+
+// A sampling profiler.  Tracer times every procedure call, which costs something on every call and
+// still can't say which command inside a long procedure is the slow one.  Instead, every so often,
+// we look at what the job thread is doing.
+//
+// A timer thread raises World.comeUpForAir, which the engine already checks after every command.
+// So the next command to finish ends up in Context.comeUpForAir, which calls sample() if we asked
+// for it.  The engine's loops don't do anything extra, sampler or no sampler.  A sample is charged
+// to the command that was running when the timer went off, so time spent in a reporter counts
+// against the command it's an input to.
+//
+// A stack is the procedures (and tasks) the command was called from, then the command itself and
+// its position in its procedure's code.  writeCollapsed writes the stacks in the format that
+// flamegraph.pl reads.  writeTable writes how many samples landed in each primitive and in each
+// command.
+//
+// To use it, install it with AbstractWorkspace.setSampler, then start() and stop() it.
+
+class Sampler(world: World, val intervalMillis: Int = 1) {
+
+  @volatile private var due = false
+  private var thread: Thread = null
+
+  private var total = 0L
+  private val stacks = new collection.mutable.HashMap[String, Long]
+  private val primitives = new collection.mutable.HashMap[String, Long]
+  private val commands = new collection.mutable.HashMap[String, Long]
+
+  /// control
+
+  def start() {
+    synchronized {
+      if (thread == null) {
+        thread = new Thread("Sampler") {
+          override def run() {
+            try while (true) {
+              Thread.sleep(intervalMillis)
+              due = true
+              world.comeUpForAir = true
+            }
+            catch {
+              case _: InterruptedException => // stop() wants us to go away
+            }
+          }
+        }
+        thread.setDaemon(true)
+        thread.start()
+      }
+    }
+  }
+
+  def stop() {
+    synchronized {
+      if (thread != null) {
+        thread.interrupt()
+        thread = null
+      }
+    }
+    due = false
+  }
+
+  def running = synchronized { thread != null }
+
+  def reset() {
+    synchronized {
+      total = 0
+      stacks.clear()
+      primitives.clear()
+      commands.clear()
+    }
+  }
+
+  def samples = synchronized { total }
+
+  /// sampling
+
+  // checked on the job thread by Context.comeUpForAir
+  def isDue = due
+
+  // called on the job thread, right after command ran
+  def sample(context: Context, command: Command) {
+    due = false
+    // we raised the flag, so we lower it, or the engine would keep coming up for air after every
+    // command.  whoever else wants it up (GUIWorkspace's Lifeguard, JobManager when halting)
+    // keeps raising it until they get what they want.
+    world.comeUpForAir = false
+    // find the activation whose code the command is in.  usually that's the current one, but if
+    // the command was a call, the callee's activation has been pushed already; we charge the
+    // time to the call, since the callee hasn't started.  if the command was a return, its
+    // activation is gone, and we charge the time to the caller, without a position.
+    var activation = context.activation
+    var ip = indexOf(activation.procedure.code, command)
+    if (ip == -1 && activation.parent != null) {
+      val callerIp = indexOf(activation.parent.procedure.code, command)
+      if (callerIp != -1) {
+        activation = activation.parent
+        ip = callerIp
+      }
+    }
+    var frames = List[String]()
+    var a = activation
+    while (a != null) {
+      frames ::= frameName(a.procedure)
+      a = a.parent
+    }
+    val primitive = command.displayName
+    val leaf = if (ip == -1) primitive else primitive + " [" + ip + "]"
+    val stack = (frames :+ leaf).mkString(";")
+    val location = frameName(activation.procedure) + " " + leaf
+    synchronized {
+      total += 1
+      stacks(stack) = stacks.getOrElse(stack, 0L) + 1
+      primitives(primitive) = primitives.getOrElse(primitive, 0L) + 1
+      commands(location) = commands.getOrElse(location, 0L) + 1
+    }
+  }
+
+  private def indexOf(code: Array[Command], command: Command): Int = {
+    var i = 0
+    while (i < code.length) {
+      if (code(i) eq command)
+        return i
+      i += 1
+    }
+    -1
+  }
+
+  // semicolons separate frames in the collapsed format, so we mustn't have any of our own
+  private def frameName(procedure: Procedure): String =
+    if (procedure.isTask) frameName(procedure.parent) + " task"
+    else procedure.name.replace(';', ',')
+
+  /// output
+
+  def writeCollapsed(out: java.io.PrintStream) {
+    synchronized {
+      for ((stack, n) <- stacks.toSeq.sortBy(_._1))
+        out.println(stack + " " + n)
+    }
+  }
+
+  def writeTable(out: java.io.PrintStream) {
+    synchronized {
+      out.println(total + " samples, every " + intervalMillis + " ms")
+      def table(title: String, counts: collection.Map[String, Long]) {
+        out.println()
+        out.println("%8s %7s  %s".format("samples", "%", title))
+        for ((name, n) <- counts.toSeq.sortBy { case (k, v) => (-v, k) })
+          out.println("%8d %7.2f  %s".format(n, 100.0 * n / total, name))
+      }
+      table("primitive", primitives)
+      table("command", commands)
+    }
+  }
+
+}
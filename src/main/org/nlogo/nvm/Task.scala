@@ -9,24 +9,38 @@ import org.nlogo.api
 //
 // tasks take inputs: ?1, ?2, etc. these are passed using Lets.
 //
-// bindArgs binds formal inputs to actual inputs at runtime.  note that it's the caller's
-// responsibility to ensure in advance that there will be enough actuals.  if there are extra
-// actuals, they are ignored. - JC, ST 11/4/10, 2/6/11
+// bindArgs binds formal inputs to actual inputs at runtime, in a LetFrame of their own in front of
+// the frames the task closed over.  note that it's the caller's responsibility to ensure in advance
+// that there will be enough actuals.  if there are extra actuals, they are ignored. - JC, ST
+// 11/4/10, 2/6/11
 //
 // tasks may close over two kinds of variables, let variables and procedure parameters (aka
 // "locals"), so we have storage for both of those in the task.
 
 sealed trait Task {
   val formals: Array[api.Let]  // don't mutate please! Array for efficiency
-  val lets: List[LetBinding]
+  val lets: LetFrame
   val locals: Array[AnyRef]
-  def bindArgs(c: Context, args: Array[AnyRef]) {
+  // the frame from the last call, for reuse by the next one, so that e.g. foreach and map don't
+  // make a new one for every item.  not kept if a task made during the call closed over it.
+  private var spare: LetFrame = null
+  def bindArgs(scope: AnyRef, args: Array[AnyRef]): LetFrame = {
+    val frame =
+      if(spare != null) { val f = spare; spare = null; f }
+      else new LetFrame(scope, formals.size, lets)
     var i = 0
     var n = formals.size
     while(i < n) {
-      c.let(formals(i), args(i))
+      frame.bind(formals(i).index, args(i))
       i += 1
     }
+    frame
+  }
+  def unbindArgs(frame: LetFrame) {
+    if(!frame.captured) {
+      frame.clear()
+      spare = frame
+    }
   }
   def missingInputs(n: Int) = {
     val plural =
@@ -39,20 +53,25 @@ sealed trait Task {
 // Reporter tasks are pretty simple.  The body is simply a Reporter.  To run it, we swap closed-over
 // variables into the context, bind actuals to formals, call report(), then unswap.
 
-case class ReporterTask(body: Reporter, formals: Array[api.Let], lets: List[LetBinding], locals: Array[AnyRef])
+case class ReporterTask(body: Reporter, formals: Array[api.Let], lets: LetFrame, locals: Array[AnyRef])
 extends Task with org.nlogo.api.ReporterTask {
   override def toString = "(reporter task)"
   def report(context: api.Context, args: Array[AnyRef]): AnyRef =
     report(context.asInstanceOf[ExtensionContext].nvmContext, args)
   def report(context: Context, args: Array[AnyRef]): AnyRef = {
-    val oldLets = context.letBindings
+    val oldLets = context.letFrame
     val oldLocals = context.activation.args
     context.activation.args = locals
-    context.letBindings = lets
-    bindArgs(context, args)
+    // with no inputs there's nothing to bind, and the body can't make any lets of its own
+    val frame =
+      if(formals.isEmpty) null
+      else bindArgs(formals(0).scope, args)
+    context.letFrame = if(frame == null) lets else frame
     val result = body.report(context)
-    context.letBindings = oldLets
+    context.letFrame = oldLets
     context.activation.args = oldLocals
+    if(frame != null)
+      unbindArgs(frame)
     result
   }
 }
@@ -61,16 +80,16 @@ extends Task with org.nlogo.api.ReporterTask {
 // make a new Activation, then call runExclusive() on the context.  We also have to check if the
 // turtle died and see if a "non-local exit" occurred (namely _report or _stop).
 
-case class CommandTask(procedure: Procedure, formals: Array[api.Let], lets: List[LetBinding], locals: Array[AnyRef])
+case class CommandTask(procedure: Procedure, formals: Array[api.Let], lets: LetFrame, locals: Array[AnyRef])
 extends Task with org.nlogo.api.CommandTask {
   override def toString = procedure.displayName
   def perform(context: api.Context, args: Array[AnyRef]) {
     perform(context.asInstanceOf[ExtensionContext].nvmContext, args)
   }
   def perform(context: Context, args: Array[AnyRef]) {
-    val oldLets = context.letBindings
-    context.letBindings = lets
-    bindArgs(context, args)
+    val oldLets = context.letFrame
+    val frame = bindArgs(procedure, args)
+    context.letFrame = frame
     val oldActivation = context.activation
     // the return address doesn't matter here since we're not actually using
     // _call and _return, we're just executing the body - ST 2/4/11
@@ -92,7 +111,8 @@ extends Task with org.nlogo.api.CommandTask {
       finally {
         context.finished = context.agent.id == -1
         context.activation = oldActivation
-        context.letBindings = oldLets
+        context.letFrame = oldLets
+        unbindArgs(frame)
       }
     if(exited && context.activation.procedure.tyype == Procedure.Type.COMMAND)
       context.stop()
@@ -0,0 +1,80 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.nvm;
+
+import org.nlogo.api.LogoList;
+
+// A list that _lputlocal and _replaceitemlocal are changing in place in a
+// local variable, so "set acc lput x acc" in a loop doesn't make a new
+// list every time around (see compiler.InPlaceLists).  Nothing else ever
+// sees one of these: _procedurevariablefrozen, which the compiler puts in
+// place of every other use of the variable, calls freeze() or peek() instead,
+// and so does Activation when run or runresult copies the locals.
+//
+// freeze() doesn't copy anything; the list it returns is the first size()
+// items of our array.  Adding more items after those doesn't affect that
+// list, so add() can go on using the same array.  set() can't, so once
+// we've handed out a list, set() copies the array first.  peek() is for
+// when whoever gets the list is done with it before we can change again
+// (item and length), so set() needn't worry about it.
+
+public final strictfp class TransientList {
+
+  private Object[] elements;
+  private int size;
+  // true if a list freeze() returned shares elements
+  private boolean shared = false;
+  // what freeze() returned, if nothing has changed since
+  private LogoList frozen = null;
+
+  public TransientList(LogoList list) {
+    size = list.size();
+    elements = new Object[Math.max(16, size * 2)];
+    int i = 0;
+    for (Object obj : list) {
+      elements[i++] = obj;
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  // whether set() would have to copy everything first
+  public boolean isShared() {
+    return shared;
+  }
+
+  public void add(Object obj) {
+    if (size == elements.length) {
+      Object[] newElements = new Object[size * 2];
+      System.arraycopy(elements, 0, newElements, 0, size);
+      elements = newElements;
+      shared = false;
+    }
+    elements[size++] = obj;
+    frozen = null;
+  }
+
+  public void set(int index, Object obj) {
+    if (shared) {
+      elements = elements.clone();
+      shared = false;
+    }
+    elements[index] = obj;
+    frozen = null;
+  }
+
+  public LogoList peek() {
+    return frozen != null ? frozen : LogoList.fromArray(elements, size);
+  }
+
+  public LogoList freeze() {
+    if (frozen == null) {
+      frozen = LogoList.fromArray(elements, size);
+      shared = true;
+    }
+    return frozen;
+  }
+
+}
@@ -135,6 +135,9 @@ public interface Workspace
                           boolean reporter)
       throws CompilerException;
 
+  // hits, misses and size of the cache compileForRun keeps
+  long[] runCacheStats();
+
   String convertToNormal() throws java.io.IOException;
 
   String getModelPath();
@@ -254,4 +257,7 @@ public interface Workspace
   boolean profilingEnabled();
 
   Tracer profilingTracer();
+
+  // null unless someone is sampling
+  Sampler sampler();
 }
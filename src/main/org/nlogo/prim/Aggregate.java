@@ -0,0 +1,279 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.prim;
+
+import org.nlogo.agent.Agent;
+import org.nlogo.agent.AgentSet;
+import org.nlogo.agent.Patch;
+import org.nlogo.api.AgentException;
+import org.nlogo.api.I18N;
+import org.nlogo.api.LogoException;
+import org.nlogo.api.LogoList;
+import org.nlogo.api.LogoListBuilder;
+import org.nlogo.api.Syntax;
+import org.nlogo.nvm.ArgumentTypeException;
+import org.nlogo.nvm.Context;
+import org.nlogo.nvm.EngineException;
+import org.nlogo.nvm.ParallelEvaluation;
+import org.nlogo.nvm.Reporter;
+
+// What the reporters that "sum [...] of agents", "variance [...] of
+// agents" and so on become (see compiler.Optimizer) have in common.
+// Instead of making the list "[...] of agents" would have reported,
+// they hand each value to an Aggregate as it comes.
+//
+// We go through the agents in the same shufflerator order _of does, so
+// the values come in the order they would have been in the list.  That
+// keeps the random number generator where it would have been, whether
+// or not the block uses it, so the rest of the run doesn't change; and
+// it keeps the answer the same to the last bit, since it matters what
+// order floating point numbers are added in.  Given a single agent, the
+// value must be a list, as for _of, and we go through that.
+
+public abstract strictfp class Aggregate {
+
+  // each number, in order
+  public abstract void add(double d);
+
+  // each value that isn't a number, in order
+  public abstract void addOther(Object obj);
+
+  public void addValue(Object obj) {
+    if (obj instanceof Double) {
+      add(((Double) obj).doubleValue());
+    } else {
+      addOther(obj);
+    }
+  }
+
+  public void addAll(LogoList list) {
+    if (list.isDoubles()) {
+      double[] ds = list.doubles();
+      for (int i = 0; i < ds.length; i++) {
+        add(ds[i]);
+      }
+    } else {
+      for (Object elt : list) {
+        addValue(elt);
+      }
+    }
+  }
+
+  /// [block] of agentOrSet
+
+  // parallel is as for _of: set by the compiler if the block is safe to
+  // run on several agents at once.  the values still come in shufflerator
+  // order, so the answer is the same either way.
+  public void addValuesOf(Context context, Reporter instr, Reporter block, Object agentOrSet,
+                          boolean parallel)
+      throws LogoException {
+    if (agentOrSet instanceof AgentSet) {
+      AgentSet sourceSet = (AgentSet) agentOrSet;
+      block.checkAgentSetClass(sourceSet, context);
+      if (parallel && ParallelEvaluation.worthIt(sourceSet.count())) {
+        Object[] results = ParallelEvaluation.evaluateShuffled(context, sourceSet, block);
+        for (int i = 0; i < results.length; i++) {
+          addValue(results[i]);
+        }
+        return;
+      }
+      Context freshContext = new Context(context, sourceSet);
+      for (AgentSet.Iterator iter = sourceSet.shufflerator(context.job.random);
+           iter.hasNext();) {
+        addValue(freshContext.evaluateReporter(iter.next(), block));
+      }
+    } else if (agentOrSet instanceof Agent) {
+      Agent agent = alive(context, instr, (Agent) agentOrSet);
+      block.checkAgentClass(agent, context);
+      addList(context, instr, new Context(context, agent).evaluateReporter(agent, block));
+    } else {
+      throw new ArgumentTypeException
+          (context, instr, 1, Syntax.AgentsetType() | Syntax.AgentType(), agentOrSet);
+    }
+  }
+
+  /// [turtle-variable] of agentOrSet
+
+  public void addTurtleVariables(Context context, Reporter instr, int vn, Object agentOrSet)
+      throws LogoException {
+    try {
+      if (agentOrSet instanceof AgentSet) {
+        for (AgentSet.Iterator iter = ((AgentSet) agentOrSet).shufflerator(context.job.random);
+             iter.hasNext();) {
+          addValue(iter.next().getTurtleVariable(vn));
+        }
+      } else if (agentOrSet instanceof Agent) {
+        addList(context, instr,
+            alive(context, instr, (Agent) agentOrSet).getTurtleVariable(vn));
+      } else {
+        throw new ArgumentTypeException
+            (context, instr, 0, Syntax.TurtleType() | Syntax.TurtlesetType(), agentOrSet);
+      }
+    } catch (AgentException ex) {
+      throw new EngineException(context, instr, ex.getMessage());
+    }
+  }
+
+  /// [patch-variable] of agentOrSet.  patch variables holding numbers
+  /// may be stored unboxed, so we read them that way when we can.
+
+  public void addPatchVariables(Context context, Reporter instr, int vn, Object agentOrSet)
+      throws LogoException {
+    try {
+      if (agentOrSet instanceof AgentSet) {
+        for (AgentSet.Iterator iter = ((AgentSet) agentOrSet).shufflerator(context.job.random);
+             iter.hasNext();) {
+          Agent agent = iter.next();
+          if (agent instanceof Patch && ((Patch) agent).patchVariableIsDouble(vn)) {
+            add(((Patch) agent).getPatchVariableDouble(vn));
+          } else {
+            addValue(agent.getPatchVariable(vn));
+          }
+        }
+      } else if (agentOrSet instanceof Agent) {
+        addList(context, instr,
+            alive(context, instr, (Agent) agentOrSet).getPatchVariable(vn));
+      } else {
+        throw new ArgumentTypeException
+            (context, instr, 0,
+                Syntax.TurtleType() | Syntax.PatchType()
+                    | Syntax.TurtlesetType() | Syntax.PatchsetType(),
+                agentOrSet);
+      }
+    } catch (AgentException ex) {
+      throw new EngineException(context, instr, ex.getMessage());
+    }
+  }
+
+  private static Agent alive(Context context, Reporter instr, Agent agent)
+      throws LogoException {
+    if (agent.id == -1) {
+      throw new EngineException(context, instr,
+        I18N.errorsJ().getN("org.nlogo.$common.thatAgentIsDead", agent.classDisplayName()));
+    }
+    return agent;
+  }
+
+  private void addList(Context context, Reporter instr, Object value)
+      throws LogoException {
+    if (!(value instanceof LogoList)) {
+      throw new ArgumentTypeException(context, instr, 0, Syntax.ListType(), value);
+    }
+    addAll((LogoList) value);
+  }
+
+  /// the aggregates
+
+  // like _sum, ignores non-numbers
+  public static final class Sum extends Aggregate {
+    public double sum = 0;
+
+    @Override
+    public void add(double d) {
+      sum += d;
+    }
+
+    @Override
+    public void addOther(Object obj) {
+    }
+  }
+
+  public static final class Mean extends Aggregate {
+    public double sum = 0;
+    public int count = 0;
+    // the first value that wasn't a number, for _mean's error message
+    public Object nonNumber = null;
+
+    @Override
+    public void add(double d) {
+      sum += d;
+      count++;
+    }
+
+    @Override
+    public void addOther(Object obj) {
+      if (nonNumber == null) {
+        nonNumber = obj;
+      }
+      count++;
+    }
+  }
+
+  // the largest number, or the smallest
+  public static final class Extreme extends Aggregate {
+    private final boolean largest;
+    public double winner = 0;
+    public boolean found = false;
+    // until we find a number, the values so far; if we never do, that's
+    // the whole list, for _max's and _min's error message
+    private LogoListBuilder nonNumbers = new LogoListBuilder();
+
+    public Extreme(boolean largest) {
+      this.largest = largest;
+    }
+
+    @Override
+    public void add(double d) {
+      if (!found || (largest ? d > winner : d < winner)) {
+        winner = d;
+        found = true;
+        nonNumbers = null;
+      }
+    }
+
+    @Override
+    public void addOther(Object obj) {
+      if (!found) {
+        nonNumbers.add(obj);
+      }
+    }
+
+    public LogoList nonNumbers() {
+      return nonNumbers.toLogoList();
+    }
+  }
+
+  // like _variance, ignores non-numbers.  Welford's method: we keep a
+  // running mean and sum of squared differences from it, so one pass is
+  // enough and nothing needs keeping.  _variance and _standarddeviation
+  // go over their list twice instead, so the answers can differ from
+  // theirs in the last bits.
+  public static final class Variance extends Aggregate {
+    public int count = 0;
+    private double mean = 0;
+    private double squares = 0;
+    // until there are two numbers, the values so far; if there never
+    // are, that's the whole list, for _variance's error message
+    private LogoListBuilder values = new LogoListBuilder();
+
+    @Override
+    public void add(double d) {
+      if (values != null) {
+        values.add(Double.valueOf(d));
+      }
+      double delta = d - mean;
+      mean += delta / ++count;
+      squares += delta * (d - mean);
+      if (count == 2) {
+        values = null;
+      }
+    }
+
+    @Override
+    public void addOther(Object obj) {
+      if (values != null) {
+        values.add(obj);
+      }
+    }
+
+    // needs count >= 2
+    public double variance() {
+      return squares / (count - 1);
+    }
+
+    public LogoList values() {
+      return values.toLogoList();
+    }
+  }
+
+}
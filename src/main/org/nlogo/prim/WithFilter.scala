@@ -0,0 +1,26 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.prim
+
+import org.nlogo.agent.{ Agent, AgentSet, FilteredAgentSet }
+import org.nlogo.api.{ Dump, I18N }
+import org.nlogo.nvm.{ Context, EngineException, Reporter }
+
+// the test _with hands to a FilteredAgentSet when the compiler has told it to be lazy.
+// accept() may throw LogoException; FilteredAgentSet.Filter can't declare that, but
+// since we're in Scala we don't have to.
+
+class WithFilter(context: Context, sourceSet: AgentSet, block: Reporter, instruction: Reporter)
+extends FilteredAgentSet.Filter {
+  private val freshContext = new Context(context, sourceSet)
+  override def accept(agent: Agent) =
+    freshContext.evaluateReporter(agent, block) match {
+      case b: java.lang.Boolean =>
+        b.booleanValue
+      case value =>
+        throw new EngineException(
+          context, instruction,
+          I18N.errors.getN("org.nlogo.prim.$common.expectedBooleanValue",
+                           instruction.displayName, Dump.logoObject(agent), Dump.logoObject(value)))
+    }
+}
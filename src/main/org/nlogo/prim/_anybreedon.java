@@ -0,0 +1,90 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.prim;
+
+import org.nlogo.agent.AgentSet;
+import org.nlogo.agent.Patch;
+import org.nlogo.agent.Turtle;
+import org.nlogo.api.I18N;
+import org.nlogo.api.LogoException;
+import org.nlogo.api.Syntax;
+import org.nlogo.nvm.ArgumentTypeException;
+import org.nlogo.nvm.Context;
+import org.nlogo.nvm.EngineException;
+import org.nlogo.nvm.Reporter;
+
+public final strictfp class _anybreedon
+    extends Reporter {
+  public final String breedName;
+
+  public _anybreedon(String breedName) {
+    this.breedName = breedName;
+  }
+
+  @Override
+  public Syntax syntax() {
+    return Syntax.reporterSyntax
+        (new int[]{Syntax.TurtleType() | Syntax.PatchType() |
+            Syntax.TurtlesetType() | Syntax.PatchsetType()},
+            Syntax.BooleanType());
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + ":" + breedName;
+  }
+
+  @Override
+  public Object report(Context context) throws LogoException {
+    return report_1(context, args[0].report(context));
+  }
+
+  public boolean report_1(Context context, Object agentOrSet)
+      throws LogoException {
+    AgentSet breed = world.getBreed(breedName);
+    if (agentOrSet instanceof Turtle) {
+      Turtle turtle = (Turtle) agentOrSet;
+      if (turtle.id == -1) {
+        throw new EngineException(context, this,
+          I18N.errorsJ().getN("org.nlogo.$common.thatAgentIsDead", turtle.classDisplayName()));
+      }
+      for (Turtle t : turtle.getPatchHere().turtlesHere()) {
+        if (t.getBreed() == breed) {
+          return true;
+        }
+      }
+    } else if (agentOrSet instanceof Patch) {
+      for (Turtle turtle : ((Patch) agentOrSet).turtlesHere()) {
+        if (turtle.getBreed() == breed) {
+          return true;
+        }
+      }
+    } else if (agentOrSet instanceof AgentSet) {
+      AgentSet sourceSet = (AgentSet) agentOrSet;
+      if (sourceSet.type() == Turtle.class) {
+        for (AgentSet.Iterator iter = sourceSet.iterator(); iter.hasNext();) {
+          for (Turtle turtle : ((Turtle) iter.next()).getPatchHere().turtlesHere()) {
+            if (turtle.getBreed() == breed) {
+              return true;
+            }
+          }
+        }
+      } else if (sourceSet.type() == Patch.class) {
+        for (AgentSet.Iterator iter = sourceSet.iterator(); iter.hasNext();) {
+          for (Turtle turtle : ((Patch) iter.next()).turtlesHere()) {
+            if (turtle.getBreed() == breed) {
+              return true;
+            }
+          }
+        }
+      }
+    } else {
+      throw new ArgumentTypeException
+          (context, this, 0,
+              Syntax.TurtleType() | Syntax.PatchType() |
+                  Syntax.TurtlesetType() | Syntax.PatchsetType(),
+              agentOrSet);
+    }
+    return false;
+  }
+}
@@ -0,0 +1,62 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.prim;
+
+import org.nlogo.agent.AgentSet;
+import org.nlogo.agent.Patch;
+import org.nlogo.agent.Turtle;
+import org.nlogo.api.I18N;
+import org.nlogo.api.LogoException;
+import org.nlogo.api.Syntax;
+import org.nlogo.nvm.ArgumentTypeException;
+import org.nlogo.nvm.Context;
+import org.nlogo.nvm.EngineException;
+import org.nlogo.nvm.Reporter;
+
+public final strictfp class _anyturtleson
+    extends Reporter {
+  @Override
+  public Syntax syntax() {
+    return Syntax.reporterSyntax
+        (new int[]{Syntax.AgentType() | Syntax.AgentsetType()},
+            Syntax.BooleanType());
+  }
+
+  @Override
+  public Object report(Context context) throws LogoException {
+    return report_1(context, args[0].report(context));
+  }
+
+  public boolean report_1(Context context, Object agentOrSet)
+      throws LogoException {
+    if (agentOrSet instanceof Turtle) {
+      Turtle turtle = (Turtle) agentOrSet;
+      if (turtle.id == -1) {
+        throw new EngineException(context, this,
+          I18N.errorsJ().getN("org.nlogo.$common.thatAgentIsDead", turtle.classDisplayName()));
+      }
+      return turtle.getPatchHere().turtleCount() > 0;
+    } else if (agentOrSet instanceof Patch) {
+      return ((Patch) agentOrSet).turtleCount() > 0;
+    } else if (agentOrSet instanceof AgentSet) {
+      AgentSet sourceSet = (AgentSet) agentOrSet;
+      if (sourceSet.type() == Turtle.class) {
+        for (AgentSet.Iterator iter = sourceSet.iterator(); iter.hasNext();) {
+          if (((Turtle) iter.next()).getPatchHere().turtleCount() > 0) {
+            return true;
+          }
+        }
+      } else {
+        for (AgentSet.Iterator iter = sourceSet.iterator(); iter.hasNext();) {
+          if (((Patch) iter.next()).turtleCount() > 0) {
+            return true;
+          }
+        }
+      }
+      return false;
+    } else {
+      throw new ArgumentTypeException
+          (context, this, 0, Syntax.AgentType() | Syntax.AgentsetType(), agentOrSet);
+    }
+  }
+}
@@ -12,7 +12,7 @@ import org.nlogo.api.Syntax;
 
 public final strictfp class _breedhere
     extends Reporter {
-  final String breedName;
+  public final String breedName;
 
   public _breedhere(String breedName) {
     this.breedName = breedName;
@@ -20,7 +20,7 @@ import org.nlogo.nvm.Context;
 
 public final strictfp class _breedon
     extends Reporter {
-  final String breedName;
+  public final String breedName;
 
   public _breedon(String breedName) {
     this.breedName = breedName;
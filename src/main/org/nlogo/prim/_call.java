@@ -37,7 +37,7 @@ public final strictfp class _call
 
   @Override
   public void perform(Context context) throws LogoException {
-    Activation newActivation = new Activation(procedure, context.activation, next);
+    Activation newActivation = context.newActivation(procedure, context.activation, next);
     for (int i = 0; i < (procedure.args.size() - procedure.localsCount); i++) {
       newActivation.args[i] = args[i].report(context);
     }
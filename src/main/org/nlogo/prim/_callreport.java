@@ -39,7 +39,7 @@ public final strictfp class _callreport
   @Override
   public Object report(Context context) throws LogoException {
     Activation newActivation =
-        new Activation(procedure, context.activation, context.ip);
+        context.newActivation(procedure, context.activation, context.ip);
     for (int i = 0; i < (procedure.args.size() - procedure.localsCount); i++) {
       newActivation.args[i] = args[i].report(context);
     }
@@ -0,0 +1,63 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.prim;
+
+import org.nlogo.api.LogoException;
+import org.nlogo.api.Syntax;
+import org.nlogo.nvm.Activation;
+import org.nlogo.nvm.Context;
+import org.nlogo.nvm.EngineException;
+import org.nlogo.nvm.Memo;
+import org.nlogo.nvm.Procedure;
+import org.nlogo.nvm.Reporter;
+
+// Like _callreport, but for a procedure the compiler found to be pure
+// (see compiler.Memoizer): we look in the procedure's Memo before
+// calling it, and remember what it reported afterwards.
+
+public final strictfp class _callreportmemo
+    extends Reporter {
+  public final Procedure procedure;
+
+  public _callreportmemo(Procedure procedure) {
+    this.procedure = procedure;
+  }
+
+  @Override
+  public Syntax syntax() {
+    return procedure.syntax();
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + ":" + procedure.name;
+  }
+
+  @Override
+  public Object report(Context context) throws LogoException {
+    Object[] inputs = new Object[procedure.args.size() - procedure.localsCount];
+    for (int i = 0; i < inputs.length; i++) {
+      inputs[i] = args[i].report(context);
+    }
+    Memo memo = procedure.memo;
+    boolean remember = Memo.canBeKey(inputs);
+    if (remember) {
+      Object result = memo.get(inputs);
+      if (result != null) {
+        return result;
+      }
+    }
+    Activation newActivation =
+        context.newActivation(procedure, context.activation, context.ip);
+    System.arraycopy(inputs, 0, newActivation.args, 0, inputs.length);
+    Object result = context.callReporterProcedure(newActivation);
+    if (result == null) {
+      throw new EngineException
+          (context, this, "the " + procedure.name + " procedure failed to report a result");
+    }
+    if (remember) {
+      memo.put(inputs, result);
+    }
+    return result;
+  }
+}
@@ -16,7 +16,7 @@ class _commandtask(proc: Procedure) extends Reporter {
   override def report(c: Context): AnyRef =
     CommandTask(procedure = proc,
                   formals = proc.taskFormals.reverse.dropWhile(_ == null).reverse.toArray,
-                  lets = c.letBindings,
-                  locals = c.activation.args)
+                  lets = c.closeOverLets(),
+                  locals = c.closeOverLocals())
 
 }
@@ -0,0 +1,51 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.prim;
+
+import org.nlogo.agent.AgentSet;
+import org.nlogo.agent.Patch;
+import org.nlogo.agent.Turtle;
+import org.nlogo.api.Syntax;
+import org.nlogo.nvm.Context;
+import org.nlogo.nvm.Reporter;
+
+public final strictfp class _countbreedhere
+    extends Reporter {
+  public final String breedName;
+
+  public _countbreedhere(String breedName) {
+    this.breedName = breedName;
+  }
+
+  @Override
+  public Syntax syntax() {
+    return Syntax.reporterSyntax(Syntax.NumberType(), "-TP-");
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + ":" + breedName;
+  }
+
+  @Override
+  public Object report(Context context) {
+    return report_1(context);
+  }
+
+  public double report_1(Context context) {
+    Patch patch;
+    if (context.agent instanceof Turtle) {
+      patch = ((Turtle) context.agent).getPatchHere();
+    } else {
+      patch = (Patch) context.agent;
+    }
+    AgentSet breed = world.getBreed(breedName);
+    int result = 0;
+    for (Turtle turtle : patch.turtlesHere()) {
+      if (turtle.getBreed() == breed) {
+        result++;
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,30 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.prim;
+
+import org.nlogo.agent.Patch;
+import org.nlogo.agent.Turtle;
+import org.nlogo.api.Syntax;
+import org.nlogo.nvm.Context;
+import org.nlogo.nvm.Reporter;
+
+public final strictfp class _countotherturtleshere
+    extends Reporter {
+  @Override
+  public Syntax syntax() {
+    return Syntax.reporterSyntax(Syntax.NumberType(), "-TP-");
+  }
+
+  @Override
+  public Object report(Context context) {
+    return report_1(context);
+  }
+
+  public double report_1(Context context) {
+    if (context.agent instanceof Turtle) {
+      // a turtle is always among the turtles on its own patch
+      return ((Turtle) context.agent).getPatchHere().turtleCount() - 1;
+    }
+    return ((Patch) context.agent).turtleCount();
+  }
+}
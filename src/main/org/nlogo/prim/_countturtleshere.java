@@ -0,0 +1,32 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.prim;
+
+import org.nlogo.agent.Patch;
+import org.nlogo.agent.Turtle;
+import org.nlogo.api.Syntax;
+import org.nlogo.nvm.Context;
+import org.nlogo.nvm.Reporter;
+
+public final strictfp class _countturtleshere
+    extends Reporter {
+  @Override
+  public Syntax syntax() {
+    return Syntax.reporterSyntax(Syntax.NumberType(), "-TP-");
+  }
+
+  @Override
+  public Object report(Context context) {
+    return report_1(context);
+  }
+
+  public double report_1(Context context) {
+    Patch patch;
+    if (context.agent instanceof Turtle) {
+      patch = ((Turtle) context.agent).getPatchHere();
+    } else {
+      patch = (Patch) context.agent;
+    }
+    return patch.turtleCount();
+  }
+}
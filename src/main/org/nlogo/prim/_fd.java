@@ -14,7 +14,7 @@ import org.nlogo.nvm.MutableDouble;
 public final strictfp class _fd
     extends Command
     implements org.nlogo.nvm.CustomAssembled {
-  final Let let = new Let();
+  public final Let let = new Let();
 
   @Override
   public Syntax syntax() {
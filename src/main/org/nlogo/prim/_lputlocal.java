@@ -0,0 +1,70 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.prim;
+
+import org.nlogo.api.LogoException;
+import org.nlogo.api.LogoList;
+import org.nlogo.api.Syntax;
+import org.nlogo.nvm.ArgumentTypeException;
+import org.nlogo.nvm.Command;
+import org.nlogo.nvm.Context;
+import org.nlogo.nvm.TransientList;
+
+// "set x lput obj x", where x is a local variable (see compiler.InPlaceLists).
+// Once x holds a TransientList, we add to it in place.
+//
+// We don't make one the first time we see an ordinary list, since copying a
+// long list into a TransientList to add one item would cost more than lput
+// does.  But if x still holds the list we made last time, we're probably in
+// a loop, and from then on adding in place pays for the copy.
+//
+// There's no perform_1, since that remembering means setting a field, which
+// the generator can't rip (see generator.MethodRipper); generated code
+// calls perform instead.
+
+public final strictfp class _lputlocal
+    extends Command {
+  public final int vn;
+  public final String name;
+  // what we stored in x last time, if it was an ordinary list
+  private LogoList last = null;
+
+  public _lputlocal(_setprocedurevariable set) {
+    vn = set.vn;
+    name = set.name;
+  }
+
+  @Override
+  public Syntax syntax() {
+    return Syntax.commandSyntax
+        (new int[]{Syntax.WildcardType()});
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + ":" + name;
+  }
+
+  @Override
+  public void perform(final Context context) throws LogoException {
+    Object obj = args[0].report(context);
+    Object value = context.activation.args[vn];
+    if (value instanceof TransientList) {
+      ((TransientList) value).add(obj);
+    } else if (value instanceof LogoList) {
+      if (value == last) {
+        last = null;
+        TransientList list = new TransientList((LogoList) value);
+        list.add(obj);
+        context.activation.args[vn] = list;
+      } else {
+        last = ((LogoList) value).lput(obj);
+        context.activation.args[vn] = last;
+      }
+    } else {
+      throw new ArgumentTypeException
+          (context, this, 1, Syntax.ListType(), value);
+    }
+    context.ip = next;
+  }
+}
@@ -0,0 +1,47 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.prim;
+
+import org.nlogo.api.Dump;
+import org.nlogo.api.I18N;
+import org.nlogo.api.LogoException;
+import org.nlogo.api.Syntax;
+import org.nlogo.nvm.Context;
+import org.nlogo.nvm.EngineException;
+import org.nlogo.nvm.Reporter;
+
+// max [...] of agents, without making a list first (see Optimizer and
+// Aggregate).
+
+public final strictfp class _maxof
+    extends Reporter {
+  // set by the compiler, as for _of
+  public boolean parallel = false;
+
+  @Override
+  public Syntax syntax() {
+    return Syntax.reporterSyntax
+        (Syntax.ReporterBlockType(),
+            new int[]{Syntax.AgentType() | Syntax.AgentsetType()},
+            Syntax.NumberType(),
+            Syntax.NormalPrecedence() + 1,
+            true, "OTPL", "?");
+  }
+
+  @Override
+  public Object report(Context context) throws LogoException {
+    return report_1(context, args[0], args[1].report(context));
+  }
+
+  public double report_1(Context context, Reporter block, Object agentOrSet)
+      throws LogoException {
+    Aggregate.Extreme max = new Aggregate.Extreme(true);
+    max.addValuesOf(context, this, block, agentOrSet, parallel);
+    if (!max.found) {
+      throw new EngineException(context, this,
+          I18N.errorsJ().getN("org.nlogo.prim._max.cantFindMaxOfListWithNoNumbers",
+              Dump.logoObject(max.nonNumbers())));
+    }
+    return max.winner;
+  }
+}
@@ -0,0 +1,51 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.prim;
+
+import org.nlogo.api.Dump;
+import org.nlogo.api.I18N;
+import org.nlogo.api.LogoException;
+import org.nlogo.api.Syntax;
+import org.nlogo.nvm.Context;
+import org.nlogo.nvm.EngineException;
+import org.nlogo.nvm.Reporter;
+
+// max [patch-variable] of agents, without making a list first (see
+// Optimizer and Aggregate).
+
+public final strictfp class _maxpatchvariableof
+    extends Reporter {
+  public int vn;
+
+  @Override
+  public Syntax syntax() {
+    int[] right = {Syntax.TurtleType() | Syntax.PatchType()
+        | Syntax.TurtlesetType() | Syntax.PatchsetType()};
+    return Syntax.reporterSyntax(right, Syntax.NumberType());
+  }
+
+  @Override
+  public String toString() {
+    if (world != null) {
+      return super.toString() + ":" + world.patchesOwnNameAt(vn);
+    } else {
+      return super.toString() + ":" + vn;
+    }
+  }
+
+  @Override
+  public Object report(Context context) throws LogoException {
+    return report_1(context, args[0].report(context));
+  }
+
+  public double report_1(Context context, Object agentOrSet) throws LogoException {
+    Aggregate.Extreme max = new Aggregate.Extreme(true);
+    max.addPatchVariables(context, this, vn, agentOrSet);
+    if (!max.found) {
+      throw new EngineException(context, this,
+          I18N.errorsJ().getN("org.nlogo.prim._max.cantFindMaxOfListWithNoNumbers",
+              Dump.logoObject(max.nonNumbers())));
+    }
+    return max.winner;
+  }
+}
@@ -46,14 +46,14 @@ public final strictfp class _nsum extends Reporter {
     }
     double sum = 0;
     for (AgentSet.Iterator it = patch.getNeighbors().iterator(); it.hasNext();) {
-      Object value = ((Patch) it.next()).getPatchVariable(vn);
-      if (!(value instanceof Double)) {
+      Patch neighbor = (Patch) it.next();
+      if (!neighbor.patchVariableIsDouble(vn)) {
+        Object value = neighbor.getPatchVariable(vn);
         throw new EngineException(context, this,
             I18N.errorsJ().getN("org.nlogo.prim.$common.noSumOfListWithNonNumbers",
                 Dump.logoObject(value).toString(), TypeNames.name(value)));
       }
-
-      sum += ((Double) value).doubleValue();
+      sum += neighbor.getPatchVariableDouble(vn);
     }
     return validDouble(sum);
   }
@@ -9,11 +9,16 @@ import org.nlogo.api.LogoException;
 import org.nlogo.api.LogoListBuilder;
 import org.nlogo.nvm.Context;
 import org.nlogo.nvm.EngineException;
+import org.nlogo.nvm.ParallelEvaluation;
 import org.nlogo.nvm.Reporter;
 import org.nlogo.api.Syntax;
 
 public final strictfp class _of
     extends Reporter {
+  // set by the compiler if the reporter block is safe to run on
+  // several agents at once (see ParallelEvaluation)
+  public boolean parallel = false;
+
   @Override
   public Syntax syntax() {
     return Syntax.reporterSyntax
@@ -41,8 +46,16 @@ public final strictfp class _of
     } else if (agentOrSet instanceof AgentSet) {
       AgentSet sourceSet = (AgentSet) agentOrSet;
       LogoListBuilder result = new LogoListBuilder();
-      Context freshContext = new Context(context, sourceSet);
       args[0].checkAgentSetClass(sourceSet, context);
+      if (parallel && ParallelEvaluation.worthIt(sourceSet.count())) {
+        Object[] results =
+            ParallelEvaluation.evaluateShuffled(context, sourceSet, args[0]);
+        for (int i = 0; i < results.length; i++) {
+          result.add(results[i]);
+        }
+        return result.toLogoList();
+      }
+      Context freshContext = new Context(context, sourceSet);
       for (AgentSet.Iterator iter = sourceSet.shufflerator(context.job.random);
            iter.hasNext();) {
         result.add(freshContext.evaluateReporter(iter.next(), args[0]));
@@ -4,6 +4,7 @@ package org.nlogo.prim;
 
 import org.nlogo.agent.Agent;
 import org.nlogo.agent.AgentSet;
+import org.nlogo.agent.FilteredAgentSet;
 import org.nlogo.api.LogoException;
 import org.nlogo.nvm.Context;
 import org.nlogo.nvm.Reporter;
@@ -11,6 +12,10 @@ import org.nlogo.api.Syntax;
 
 public final strictfp class _other
     extends Reporter {
+  // set by the compiler if nothing can tell the difference (see
+  // compiler.LazyAgentSetVisitor)
+  public boolean filterLazily = false;
+
   // super( "TPL" ) ;
   @Override
   public Syntax syntax() {
@@ -26,6 +31,10 @@ public final strictfp class _other
   }
 
   public AgentSet report_1(final Context context, AgentSet sourceSet) {
+    if (filterLazily) {
+      return new FilteredAgentSet
+          (sourceSet, new FilteredAgentSet.AllBut(context.agent));
+    }
     AgentSet result =
         new org.nlogo.agent.ArrayAgentSet(sourceSet.type(), sourceSet.count(),
             false, world);
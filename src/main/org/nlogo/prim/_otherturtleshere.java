@@ -0,0 +1,42 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.prim;
+
+import org.nlogo.agent.AgentSet;
+import org.nlogo.agent.ArrayAgentSet;
+import org.nlogo.agent.Patch;
+import org.nlogo.agent.Turtle;
+import org.nlogo.api.Syntax;
+import org.nlogo.nvm.Context;
+import org.nlogo.nvm.Reporter;
+
+public final strictfp class _otherturtleshere
+    extends Reporter {
+  @Override
+  public Syntax syntax() {
+    return Syntax.reporterSyntax(Syntax.TurtlesetType(), "-TP-");
+  }
+
+  @Override
+  public Object report(Context context) {
+    return report_1(context);
+  }
+
+  public AgentSet report_1(Context context) {
+    Patch patch;
+    if (context.agent instanceof Turtle) {
+      patch = ((Turtle) context.agent).getPatchHere();
+    } else {
+      patch = (Patch) context.agent;
+    }
+    AgentSet agentset =
+        new ArrayAgentSet(Turtle.class, patch.turtleCount(),
+            false, world);
+    for (Turtle turtle : patch.turtlesHere()) {
+      if (turtle != context.agent) {
+        agentset.add(turtle);
+      }
+    }
+    return agentset;
+  }
+}
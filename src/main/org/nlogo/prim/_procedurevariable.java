@@ -8,8 +8,8 @@ import org.nlogo.nvm.Context;
 
 public final strictfp class _procedurevariable
     extends Reporter {
-  final int vn;
-  final String name;
+  public final int vn;
+  public final String name;
 
   public _procedurevariable(int vn, String name) {
     this.vn = vn;
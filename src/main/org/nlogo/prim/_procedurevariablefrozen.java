@@ -0,0 +1,51 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.prim;
+
+import org.nlogo.api.Syntax;
+import org.nlogo.nvm.Context;
+import org.nlogo.nvm.Reporter;
+import org.nlogo.nvm.TransientList;
+
+// Like _procedurevariable, for a variable that _lputlocal or
+// _replaceitemlocal may be changing in place (see compiler.InPlaceLists).
+// If it holds a TransientList, we report an ordinary LogoList instead.
+// If peek is true, the list is going straight to item or length, which
+// won't hang on to it (see TransientList.peek).
+
+public final strictfp class _procedurevariablefrozen
+    extends Reporter {
+  public final int vn;
+  public final String name;
+  public final boolean peek;
+
+  public _procedurevariablefrozen(_procedurevariable original, boolean peek) {
+    vn = original.vn;
+    name = original.name;
+    this.peek = peek;
+  }
+
+  @Override
+  public Syntax syntax() {
+    return Syntax.reporterSyntax(Syntax.WildcardType());
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + ":" + name;
+  }
+
+  @Override
+  public Object report(Context context) {
+    return report_1(context);
+  }
+
+  public Object report_1(Context context) {
+    Object value = context.activation.args[vn];
+    if (value instanceof TransientList) {
+      TransientList list = (TransientList) value;
+      return peek ? list.peek() : list.freeze();
+    }
+    return value;
+  }
+}
@@ -0,0 +1,80 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.prim;
+
+import org.nlogo.api.LogoException;
+import org.nlogo.api.LogoList;
+import org.nlogo.api.Syntax;
+import org.nlogo.nvm.Command;
+import org.nlogo.nvm.Context;
+import org.nlogo.nvm.TransientList;
+import org.nlogo.prim.etc._replaceitem;
+
+// "set x replace-item index x obj", where x is a local variable (see
+// compiler.InPlaceLists).  Like _lputlocal, once x holds a TransientList
+// we change it in place.
+//
+// If the TransientList has handed out its contents since the last change,
+// changing it means copying it, which is worse than what replace-item does.
+// If that happens, the loop is probably reading x every time around, so we
+// go back to plain replace-item for good.  (No perform_1, for the same
+// reason as _lputlocal.)
+
+public final strictfp class _replaceitemlocal
+    extends Command {
+  public final int vn;
+  public final String name;
+  // the _replaceitem we replaced.  we let it handle anything but a list in
+  // range, so the errors (and strings) come out the same
+  private final _replaceitem replaceItem;
+  // what we stored in x last time, if it was an ordinary list (see _lputlocal)
+  private LogoList last = null;
+  private boolean inPlace = true;
+
+  public _replaceitemlocal(_setprocedurevariable set, _replaceitem replaceItem) {
+    vn = set.vn;
+    name = set.name;
+    this.replaceItem = replaceItem;
+  }
+
+  @Override
+  public Syntax syntax() {
+    return Syntax.commandSyntax
+        (new int[]{Syntax.NumberType(), Syntax.WildcardType()});
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + ":" + name;
+  }
+
+  @Override
+  public void perform(final Context context) throws LogoException {
+    int index = (int) argEvalDoubleValue(context, 0);
+    Object obj = args[1].report(context);
+    Object value = context.activation.args[vn];
+    if (value instanceof TransientList) {
+      TransientList list = (TransientList) value;
+      if (!list.isShared() && index >= 0 && index < list.size()) {
+        list.set(index, obj);
+        context.ip = next;
+        return;
+      }
+      if (list.isShared()) {
+        inPlace = false;
+      }
+      value = list.freeze();
+    }
+    if (inPlace && last != null && value == last && index >= 0 && index < last.size()) {
+      last = null;
+      TransientList list = new TransientList((LogoList) value);
+      list.set(index, obj);
+      context.activation.args[vn] = list;
+    } else {
+      Object result = replaceItem.replaceItem(context, index, value, obj);
+      last = inPlace && result instanceof LogoList ? (LogoList) result : null;
+      context.activation.args[vn] = result;
+    }
+    context.ip = next;
+  }
+}
@@ -16,8 +16,8 @@ class _reportertask extends Reporter {
   override def report(c: Context): AnyRef =
     ReporterTask(body = args(0),
                    formals = formals.reverse.dropWhile(_==null).reverse.toArray,
-                   lets = c.letBindings,
-                   locals = c.activation.args)
+                   lets = c.closeOverLets(),
+                   locals = c.closeOverLocals())
 
   def getFormal(n: Int): Let = {
     while(formals.size < n)
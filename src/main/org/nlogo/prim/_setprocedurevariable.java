@@ -8,8 +8,8 @@ import org.nlogo.api.Syntax;
 
 public final strictfp class _setprocedurevariable
     extends Command {
-  private final int vn;
-  private final String name;
+  public final int vn;
+  public final String name;
 
   public _setprocedurevariable(_procedurevariable original) {
     vn = original.vn;
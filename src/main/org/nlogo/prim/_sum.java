@@ -26,6 +26,13 @@ public final strictfp class _sum extends Reporter implements Pure {
 
   public double report_1(Context context, LogoList l0) throws LogoException {
     double sum = 0;
+    if (l0.isDoubles()) {
+      double[] ds = l0.doubles();
+      for (int i = 0; i < ds.length; i++) {
+        sum += ds[i];
+      }
+      return validDouble(sum);
+    }
     for (Iterator<Object> it = l0.iterator(); it.hasNext();) {
       Object elt = it.next();
       if (elt instanceof Double) {
@@ -0,0 +1,60 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.prim;
+
+import org.nlogo.api.LogoException;
+import org.nlogo.api.Syntax;
+import org.nlogo.nvm.Activation;
+import org.nlogo.nvm.Command;
+import org.nlogo.nvm.Context;
+import org.nlogo.nvm.Procedure;
+
+// A _call of the procedure we're in, with nothing left for us to do
+// once it returns (see compiler.TailCallVisitor).  So the new
+// activation replaces ours instead of going on top of it, and returns
+// straight to our caller; a procedure that loops by calling itself
+// runs in constant space.  The price is that errors inside it show only
+// one "called by" for it in the stack trace, not one per call.
+
+public final strictfp class _tailcall
+    extends Command {
+  public final Procedure procedure;
+
+  public _tailcall(Procedure procedure) {
+    this.procedure = procedure;
+  }
+
+  @Override
+  public Syntax syntax() {
+    return procedure.syntax();
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + ":" + procedure.name;
+  }
+
+  @Override
+  public void perform(Context context) throws LogoException {
+    Activation current = context.activation;
+    boolean profiling = workspace.profilingEnabled();
+    // when profiling, don't let the tracer see a recycled activation
+    // (see CustomGenerator.generateNewActivation)
+    Activation newActivation =
+        profiling
+            ? new Activation(procedure, current.parent, current.returnAddress)
+            : context.newActivation(procedure, current.parent, current.returnAddress);
+    // our args may refer to the current activation's, so they all have
+    // to be evaluated before it goes away
+    for (int i = 0; i < (procedure.args.size() - procedure.localsCount); i++) {
+      newActivation.args[i] = args[i].report(context);
+    }
+    if (profiling) {
+      workspace.profilingTracer().closeCallRecord(context, current);
+    }
+    context.tailCall(newActivation);
+    if (profiling) {
+      workspace.profilingTracer().openCallRecord(context, newActivation);
+    }
+  }
+}
@@ -0,0 +1,54 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.prim;
+
+import org.nlogo.api.LogoException;
+import org.nlogo.api.Syntax;
+import org.nlogo.nvm.Activation;
+import org.nlogo.nvm.Command;
+import org.nlogo.nvm.Context;
+import org.nlogo.nvm.Procedure;
+
+// Takes the place of "report" when what's being reported is a call of
+// the reporter procedure we're in (see compiler.TailCallVisitor).
+// Like _tailcall, the new activation replaces ours, so the loop in
+// Context.callReporterProcedure that's running us just goes on to run
+// it, and whatever it reports is what we'd have reported.
+
+public final strictfp class _tailcallreport
+    extends Command {
+  public final Procedure procedure;
+
+  public _tailcallreport(Procedure procedure) {
+    this.procedure = procedure;
+  }
+
+  @Override
+  public Syntax syntax() {
+    return procedure.syntax();
+  }
+
+  @Override
+  public String toString() {
+    return super.toString() + ":" + procedure.name;
+  }
+
+  @Override
+  public void perform(Context context) throws LogoException {
+    Activation current = context.activation;
+    // when profiling, the profiler goes on thinking this is all one call,
+    // since it's _callreport that closes the call record, and it only
+    // knows about the activation it made.  the activation can't be a
+    // recycled one, though (see CustomGenerator.generateNewActivation)
+    Activation newActivation =
+        workspace.profilingEnabled()
+            ? new Activation(procedure, current.parent, current.returnAddress)
+            : context.newActivation(procedure, current.parent, current.returnAddress);
+    for (int i = 0; i < (procedure.args.size() - procedure.localsCount); i++) {
+      newActivation.args[i] = args[i].report(context);
+    }
+    // as _report does
+    context.stopping = false;
+    context.tailCall(newActivation);
+  }
+}
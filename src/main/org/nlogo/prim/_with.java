@@ -7,6 +7,7 @@ import java.util.List;
 
 import org.nlogo.agent.Agent;
 import org.nlogo.agent.AgentSet;
+import org.nlogo.agent.FilteredAgentSet;
 import org.nlogo.api.Dump;
 import org.nlogo.api.I18N;
 import org.nlogo.api.LogoException;
@@ -17,6 +18,11 @@ import org.nlogo.api.Syntax;
 
 public final strictfp class _with
     extends Reporter {
+  // set by the compiler if nothing can tell the difference between
+  // testing every agent now and testing them only as needed (see
+  // compiler.LazyAgentSetVisitor)
+  public boolean filterLazily = false;
+
   @Override
   public Syntax syntax() {
     return Syntax.reporterSyntax
@@ -39,9 +45,13 @@ public final strictfp class _with
 
   public AgentSet report_1(final Context context, AgentSet sourceSet, Reporter reporterBlock)
       throws LogoException {
+    reporterBlock.checkAgentSetClass(sourceSet, context);
+    if (filterLazily) {
+      return new FilteredAgentSet
+          (sourceSet, new WithFilter(context, sourceSet, reporterBlock, this));
+    }
     Context freshContext = new Context(context, sourceSet);
     List<Agent> result = new ArrayList<Agent>();
-    reporterBlock.checkAgentSetClass(sourceSet, context);
     for (AgentSet.Iterator iter = sourceSet.iterator(); iter.hasNext();) {
       Agent tester = iter.next();
       Object value = freshContext.evaluateReporter(tester, reporterBlock);
@@ -75,10 +75,10 @@ public final strictfp class _fire
       if (patch.pcolorDouble() == GREEN) {
         // set counts (nsum4 fire)
         double counts =
-            ((Double) patch.getPatchNorth().variables[FIRE_VAR]).doubleValue() +
-                ((Double) patch.getPatchSouth().variables[FIRE_VAR]).doubleValue() +
-                ((Double) patch.getPatchEast().variables[FIRE_VAR]).doubleValue() +
-                ((Double) patch.getPatchWest().variables[FIRE_VAR]).doubleValue();
+            patch.getPatchNorth().getPatchVariableDouble(FIRE_VAR) +
+                patch.getPatchSouth().getPatchVariableDouble(FIRE_VAR) +
+                patch.getPatchEast().getPatchVariableDouble(FIRE_VAR) +
+                patch.getPatchWest().getPatchVariableDouble(FIRE_VAR);
         patch.variables[COUNTS_VAR] = Double.valueOf(counts);
       }
     }
@@ -86,7 +86,7 @@ public final strictfp class _fire
       Patch patch = world.getPatch(i);
       double pcolor = patch.pcolorDouble();
       if (pcolor == GREEN) {
-        if (((Double) patch.variables[COUNTS_VAR]).doubleValue() > 0) {
+        if (patch.getPatchVariableDouble(COUNTS_VAR) > 0) {
           // set fire 1
           patch.variables[FIRE_VAR] = World.ONE;
           // set pcolor red
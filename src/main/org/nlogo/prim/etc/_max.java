@@ -23,6 +23,16 @@ public final strictfp class _max extends Reporter implements Pure {
   @Override
   public Object report(Context context) throws LogoException {
     LogoList list = argEvalList(context, 0);
+    if (list.isDoubles()) {
+      double[] ds = list.doubles();
+      double winner = ds[0];
+      for (int i = 1; i < ds.length; i++) {
+        if (ds[i] > winner) {
+          winner = ds[i];
+        }
+      }
+      return Double.valueOf(winner);
+    }
     double winner = 0;
     Double boxedWinner = null;
     for (Object elt : list) {
@@ -30,6 +30,13 @@ public final strictfp class _mean extends Reporter implements Pure {
 
   public double report_1(Context context, LogoList list) throws LogoException {
     double sum = 0;
+    if (list.isDoubles()) {
+      double[] ds = list.doubles();
+      for (int i = 0; i < ds.length; i++) {
+        sum += ds[i];
+      }
+      return validDouble(sum / ds.length);
+    }
     for (Iterator<Object> it = list.iterator(); it.hasNext();) {
       Object elt = it.next();
       if (!(elt instanceof Double)) {
@@ -2,10 +2,6 @@
 
 package org.nlogo.prim.etc;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
 import org.nlogo.api.Dump;
 import org.nlogo.api.I18N;
 import org.nlogo.api.LogoException;
@@ -13,6 +9,7 @@ import org.nlogo.api.LogoList;
 import org.nlogo.nvm.Context;
 import org.nlogo.nvm.EngineException;
 import org.nlogo.nvm.Reporter;
+import org.nlogo.util.Sorting;
 import org.nlogo.api.Syntax;
 
 public final strictfp class _median
@@ -21,30 +18,41 @@ public final strictfp class _median
   @Override
   public Object report(final Context context) throws LogoException {
     LogoList list = argEvalList(context, 0);
-    int badElts = 0;
-    List<Double> nums =
-        new ArrayList<Double>(list.size());
-    for (Object elt : list) {
-      if (!(elt instanceof Double)) {
-        ++badElts;
-        continue;
+    double[] nums;
+    if (list.isDoubles()) {
+      nums = list.doubles().clone();
+    } else {
+      nums = new double[list.size()];
+      int count = 0;
+      for (Object elt : list) {
+        if (elt instanceof Double) {
+          nums[count++] = ((Double) elt).doubleValue();
+        }
+      }
+      if (count == 0) {
+        throw new EngineException(context, this,
+            I18N.errorsJ().getN("org.nlogo.prim.etc.median.cantFindMedianOfListWithNoNumbers", Dump.logoObject(list)));
+      }
+      if (count < nums.length) {
+        double[] trimmed = new double[count];
+        System.arraycopy(nums, 0, trimmed, 0, count);
+        nums = trimmed;
       }
-      nums.add((Double) elt);
     }
-    int listSize = list.size();
-    if (listSize == badElts) {
-      throw new EngineException(context, this,
-          I18N.errorsJ().getN("org.nlogo.prim.etc.median.cantFindMedianOfListWithNoNumbers", Dump.logoObject(list)));
+    // no need to sort them all; see util.Sorting.select
+    int medianPos = nums.length / 2;
+    double middle2 = Sorting.select(nums, medianPos);
+    if (nums.length % 2 == 1) {
+      return Double.valueOf(middle2);
     }
-    Collections.sort(nums);
-    int medianPos = (listSize - badElts) / 2;
-    if ((listSize - badElts) % 2 == 1) {
-      return nums.get(medianPos);
+    // select left the smaller half in front of medianPos
+    double middle1 = nums[0];
+    for (int i = 1; i < medianPos; i++) {
+      if (Double.compare(nums[i], middle1) > 0) {
+        middle1 = nums[i];
+      }
     }
-    Double middle1 = nums.get(medianPos - 1);
-    Double middle2 = nums.get(medianPos);
-    return newValidDouble
-        ((middle1.doubleValue() + middle2.doubleValue()) / 2);
+    return newValidDouble((middle1 + middle2) / 2);
   }
 
   @Override
@@ -0,0 +1,25 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.prim.etc
+
+import org.nlogo.api.{ LogoList, Syntax }
+import org.nlogo.nvm.{ Context, Reporter }
+import collection.JavaConverters._
+
+// [[name hits misses size] ...] for each memoized procedure (see
+// nvm.Memo), then "RUN" for the run/runresult cache (see
+// workspace.CodeBits), so we can see whether they're paying off
+class _memostats extends Reporter {
+  override def syntax =
+    Syntax.reporterSyntax(Syntax.ListType)
+  override def report(context: Context): LogoList = {
+    def stats(name: String, hits: Long, misses: Long, size: Long) =
+      LogoList(name, Double.box(hits), Double.box(misses), Double.box(size))
+    val memos =
+      for (p <- workspace.getProcedures.values.asScala.toSeq.sortBy(_.name)
+           if p.memo != null)
+      yield stats(p.name, p.memo.hits, p.memo.misses, p.memo.size)
+    val Array(hits, misses, size) = workspace.runCacheStats
+    LogoList.fromIterator((memos :+ stats("RUN", hits, misses, size)).iterator)
+  }
+}
@@ -26,6 +26,16 @@ public final strictfp class _min extends Reporter implements Pure {
   }
 
   public double report_1(Context context, LogoList list) throws LogoException {
+    if (list.isDoubles()) {
+      double[] ds = list.doubles();
+      double winner = ds[0];
+      for (int i = 1; i < ds.length; i++) {
+        if (ds[i] < winner) {
+          winner = ds[i];
+        }
+      }
+      return winner;
+    }
     double winner = 0;
     Double boxedWinner = null;
     for (Object elt : list) {
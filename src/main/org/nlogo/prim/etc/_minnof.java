@@ -2,16 +2,13 @@
 
 package org.nlogo.prim.etc;
 
-import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.TreeMap;
-
 import org.nlogo.agent.Agent;
 import org.nlogo.agent.AgentSet;
 import org.nlogo.api.I18N;
 import org.nlogo.api.LogoException;
 import org.nlogo.nvm.EngineException;
 import org.nlogo.nvm.Reporter;
+import org.nlogo.util.Sorting;
 import org.nlogo.api.Syntax;
 
 public final strictfp class _minnof
@@ -37,9 +34,10 @@ public final strictfp class _minnof
           I18N.errorsJ().getN("org.nlogo.prim.etc.$common.notThatManyAgentsExist", n, count));
     }
     args[2].checkAgentSetClass(sourceSet, context);
-    TreeMap<Object, LinkedList<Agent>> resultAgents =
-        new TreeMap<Object, LinkedList<Agent>>();
-
+    // the keys in shufflerator order, so ties go to whichever agent came first
+    Agent[] agents = new Agent[count];
+    double[] keys = new double[count];
+    int found = 0;
     org.nlogo.nvm.Context freshContext =
         new org.nlogo.nvm.Context(context, sourceSet);
     for (AgentSet.Iterator iter = sourceSet.shufflerator(context.job.random);
@@ -49,24 +47,21 @@ public final strictfp class _minnof
       if (!(result instanceof Double)) {
         continue;
       }
-      LinkedList<Agent> resultList = resultAgents.get(result);
-      if (resultList == null) {
-        resultList = new LinkedList<Agent>();
-        resultAgents.put(result, resultList);
-      }
-      resultList.add(tester);
+      agents[found] = tester;
+      keys[found] = ((Double) result).doubleValue();
+      found++;
+    }
+    if (found < count) {
+      double[] trimmed = new double[found];
+      System.arraycopy(keys, 0, trimmed, 0, found);
+      keys = trimmed;
     }
 
     AgentSet resultSet = new org.nlogo.agent.ArrayAgentSet
         (sourceSet.type(), n, false, world);
-
-    for (Iterator<LinkedList<Agent>> iter = resultAgents.values().iterator();
-         n > 0 && iter.hasNext();) {
-      LinkedList<Agent> list = iter.next();
-      for (Iterator<Agent> iter2 = list.iterator(); n > 0 && iter2.hasNext();) {
-        resultSet.add(iter2.next());
-        n--;
-      }
+    int[] winners = Sorting.top(keys, n, false);
+    for (int i = 0; i < winners.length; i++) {
+      resultSet.add(agents[winners[i]]);
     }
 
     return resultSet;
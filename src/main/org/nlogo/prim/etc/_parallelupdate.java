@@ -6,10 +6,15 @@ import org.nlogo.agent.AgentSet;
 import org.nlogo.api.LogoException;
 import org.nlogo.nvm.Command;
 import org.nlogo.nvm.EngineException;
+import org.nlogo.nvm.ParallelEvaluation;
 import org.nlogo.api.Syntax;
 
 public final strictfp class _parallelupdate
     extends Command {
+  // set by the compiler if the reporter block is safe to run on
+  // several agents at once (see ParallelEvaluation)
+  public boolean parallel = false;
+
   @Override
   public Syntax syntax() {
     return Syntax.commandSyntax
@@ -22,14 +27,18 @@ public final strictfp class _parallelupdate
   public void perform(final org.nlogo.nvm.Context context) throws LogoException {
     AgentSet set = argEvalAgentSet(context, 0);
 
-    Object[] results = new Object[set.count()];
-
-    org.nlogo.nvm.Context freshContext =
-        new org.nlogo.nvm.Context(context, set);
+    Object[] results;
     int i = 0;
     args[1].checkAgentSetClass(set, context);
-    for (AgentSet.Iterator it = set.iterator(); it.hasNext(); i++) {
-      results[i] = freshContext.evaluateReporter(it.next(), args[1]);
+    if (parallel && ParallelEvaluation.worthIt(set.count())) {
+      results = ParallelEvaluation.evaluate(context, set, args[1]);
+    } else {
+      results = new Object[set.count()];
+      org.nlogo.nvm.Context freshContext =
+          new org.nlogo.nvm.Context(context, set);
+      for (AgentSet.Iterator it = set.iterator(); it.hasNext(); i++) {
+        results[i] = freshContext.evaluateReporter(it.next(), args[1]);
+      }
     }
 
     try {
@@ -19,6 +19,12 @@ public final strictfp class _replaceitem
     int index = argEvalIntValue(context, 0);
     Object obj = args[1].report(context);
     Object elt = args[2].report(context);
+    return replaceItem(context, index, obj, elt);
+  }
+
+  // also used by _replaceitemlocal
+  public Object replaceItem(final org.nlogo.nvm.Context context, int index, Object obj, Object elt)
+      throws LogoException {
     if (index < 0) {
       throw new EngineException(context, this,
           I18N.errorsJ().getN("org.nlogo.prim.etc.$common.negativeIndex", index));
@@ -3,8 +3,8 @@
 package org.nlogo.prim.etc;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Iterator;
 
 import org.nlogo.agent.Agent;
 import org.nlogo.agent.AgentSet;
@@ -14,6 +14,7 @@ import org.nlogo.nvm.ArgumentTypeException;
 import org.nlogo.nvm.Context;
 import org.nlogo.nvm.Pure;
 import org.nlogo.nvm.Reporter;
+import org.nlogo.util.Sorting;
 import org.nlogo.api.Syntax;
 
 public final strictfp class _sort
@@ -37,30 +38,7 @@ public final strictfp class _sort
     if (obj instanceof AgentSet) {
       return ((AgentSet) obj).toLogoList();
     } else if (obj instanceof LogoList) {
-      LogoList input = (LogoList) obj;
-      ArrayList<Double> numbers = new ArrayList<Double>();
-      ArrayList<String> strings = new ArrayList<String>();
-      ArrayList<Agent> agents = new ArrayList<Agent>();
-      for (Iterator<Object> it = input.iterator(); it.hasNext();) {
-        Object elt = it.next();
-        if (elt instanceof Double) {
-          numbers.add((Double) elt);
-        } else if (elt instanceof String) {
-          strings.add((String) elt);
-        } else if (elt instanceof Agent) {
-          agents.add((Agent) elt);
-        }
-      }
-      if (!numbers.isEmpty()) {
-        Collections.sort(numbers);
-        return LogoList.fromJava(numbers);
-      } else if (!strings.isEmpty()) {
-        Collections.sort(strings);
-        return LogoList.fromJava(strings);
-      } else {
-        Collections.sort(agents);
-        return LogoList.fromJava(agents);
-      }
+      return sort((LogoList) obj);
     }
     throw new ArgumentTypeException
         (context, this, 0, Syntax.ListType() | Syntax.AgentsetType(), obj);
@@ -71,24 +49,39 @@ public final strictfp class _sort
   }
 
   public LogoList report_3(Context context, LogoList input) {
-    ArrayList<Double> numbers = new ArrayList<Double>();
+    return sort(input);
+  }
+
+  // numbers if there are any, otherwise strings, otherwise agents; we
+  // sort the numbers and strings unboxed (see util.Sorting)
+  private static LogoList sort(LogoList input) {
+    if (input.isDoubles()) {
+      double[] ds = input.doubles().clone();
+      Sorting.sort(ds);
+      return LogoList.fromDoubles(ds);
+    }
+    double[] numbers = new double[input.size()];
+    int numberCount = 0;
     ArrayList<String> strings = new ArrayList<String>();
     ArrayList<Agent> agents = new ArrayList<Agent>();
     for (Object elt : input) {
       if (elt instanceof Double) {
-        numbers.add((Double) elt);
+        numbers[numberCount++] = ((Double) elt).doubleValue();
       } else if (elt instanceof String) {
         strings.add((String) elt);
       } else if (elt instanceof Agent) {
         agents.add((Agent) elt);
       }
     }
-    if (!numbers.isEmpty()) {
-      Collections.sort(numbers);
-      return LogoList.fromJava(numbers);
+    if (numberCount > 0) {
+      double[] ds = new double[numberCount];
+      System.arraycopy(numbers, 0, ds, 0, numberCount);
+      Sorting.sort(ds);
+      return LogoList.fromDoubles(ds);
     } else if (!strings.isEmpty()) {
-      Collections.sort(strings);
-      return LogoList.fromJava(strings);
+      String[] ss = strings.toArray(new String[strings.size()]);
+      Sorting.sort(ss);
+      return LogoList.fromJava(Arrays.asList(ss));
     } else {
       Collections.sort(agents);
       return LogoList.fromJava(agents);
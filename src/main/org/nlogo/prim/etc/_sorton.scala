@@ -5,6 +5,7 @@ package org.nlogo.prim.etc
 import org.nlogo.agent.Agent
 import org.nlogo.api.{ Dump, LogoListBuilder, Syntax, TypeNames }
 import org.nlogo.nvm.{ Context, EngineException, Reporter }
+import org.nlogo.util.Sorting
 
 class _sorton extends Reporter {
 
@@ -27,13 +28,29 @@ class _sorton extends Reporter {
       pairs(i) = (a, freshContext.evaluateReporter(a, reporterBlock))
       i += 1
     }
-    implicit val o = ordering(context)
-    scala.util.Sorting.stableSort(pairs)
     val result = new LogoListBuilder
-    result.addAll(pairs.view.map(_._1))
+    // we've evaluated every key once already.  if they're all numbers or all strings, we sort
+    // them unboxed, and put the agents in the order of the keys.  the sort is stable either way,
+    // so agents with the same key stay in the order the shufflerator put them in.
+    order(pairs) match {
+      case Some(indices) =>
+        for(i <- indices)
+          result.add(pairs(i)._1)
+      case None =>
+        implicit val o = ordering(context)
+        scala.util.Sorting.stableSort(pairs)
+        result.addAll(pairs.view.map(_._1))
+    }
     result.toLogoList
   }
 
+  private def order(pairs: Array[(Agent, AnyRef)]): Option[Array[Int]] =
+    if(pairs.forall(_._2.isInstanceOf[java.lang.Double]))
+      Some(Sorting.order(pairs.map(_._2.asInstanceOf[java.lang.Double].doubleValue)))
+    else if(pairs.forall(_._2.isInstanceOf[String]))
+      Some(Sorting.order(pairs.map(_._2.asInstanceOf[String])))
+    else None
+
   def ordering(context: Context) =
     new Ordering[(Agent, AnyRef)] {
       def compare(pair1: (Agent, AnyRef), pair2: (Agent, AnyRef)) =
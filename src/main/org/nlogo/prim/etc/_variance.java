@@ -28,6 +28,19 @@ public final strictfp class _variance extends Reporter implements Pure {
   }
 
   public double report_1(Context context, LogoList list) throws LogoException {
+    if (list.isDoubles() && list.size() >= 2) {
+      double[] ds = list.doubles();
+      double sum = 0;
+      for (int i = 0; i < ds.length; i++) {
+        sum += ds[i];
+      }
+      double mean = sum / ds.length;
+      double squareOfDifference = 0;
+      for (int i = 0; i < ds.length; i++) {
+        squareOfDifference += StrictMath.pow(ds[i] - mean, 2);
+      }
+      return validDouble(squareOfDifference / (ds.length - 1));
+    }
     double sum = 0, badElts = 0;
     int listSize = list.size();
     for (Iterator<Object> it = list.iterator(); it.hasNext();) {
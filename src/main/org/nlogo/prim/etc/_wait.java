@@ -12,7 +12,7 @@ import org.nlogo.api.Syntax;
 public final strictfp class _wait
     extends Command
     implements org.nlogo.nvm.CustomAssembled {
-  private final Let let = new Let();
+  public final Let let = new Let();
 
   @Override
   public Syntax syntax() {
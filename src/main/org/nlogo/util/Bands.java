@@ -0,0 +1,134 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Splits a loop over 0 until n into contiguous bands and runs them on
+// a shared pool of worker threads, with the calling thread doing the
+// first band itself.  Only for loops whose iterations are independent
+// of each other, so the answer doesn't depend on how the loop was
+// split up.  Used by diffuse and by parallel evaluation of reporter
+// blocks.
+
+public final strictfp class Bands {
+
+  // this class is not instantiable
+  private Bands() {
+    throw new IllegalStateException();
+  }
+
+  public interface Band {
+    void run(int start, int end);
+  }
+
+  // a loop is split into at most this many bands: one for the calling
+  // thread, and the rest for threads in the pool.  not final so tests
+  // can split loops up even on a machine with only one processor.  at
+  // least 1
+  public static volatile int maxBands =
+      StrictMath.max(1, Integer.getInteger("org.nlogo.maxBands",
+          Runtime.getRuntime().availableProcessors()));
+
+  // how many bands have been handed to the pool, so tests can check
+  // that a loop really was split up
+  public static final AtomicLong pooledBands = new AtomicLong();
+
+  // made the first time it's needed and never shut down or replaced,
+  // since another thread (another workspace, say, or a BehaviorSpace
+  // run) may be handing it work at any time.  it makes threads as
+  // they're needed, so it keeps up if maxBands goes up, and lets idle
+  // ones go.  the threads are daemons so they don't keep the JVM alive
+  private static ExecutorService executor = null;
+
+  private static synchronized ExecutorService executor() {
+    if (executor == null) {
+      executor = Executors.newCachedThreadPool
+          (new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+              Thread thread = new Worker(r);
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
+    }
+    return executor;
+  }
+
+  private static class Worker extends Thread {
+    Worker(Runnable r) {
+      super(r, "Bands");
+    }
+  }
+
+  // splits 0 until n into at most the given number of bands (and at
+  // most maxBands, however many the caller asks for).  if a
+  // band throws, we still wait for the others to finish, then rethrow
+  // the exception from the earliest band.  a band that splits up a loop
+  // of its own (say, a reporter being evaluated in parallel that sorts
+  // a long list) runs it by itself, since waiting for the pool from
+  // inside the pool could wait forever.
+  public static void run(int n, int bands, final Band band) {
+    if (Thread.currentThread() instanceof Worker) {
+      bands = 1;
+    }
+    bands = StrictMath.max(1, StrictMath.min(StrictMath.min(bands, n), maxBands));
+    ExecutorService pool = bands > 1 ? executor() : null;
+    if (bands > 1) {
+      pooledBands.addAndGet(bands - 1);
+    }
+    List<Future<?>> futures = new ArrayList<Future<?>>(bands);
+    for (int i = 1; i < bands; i++) {
+      final int start = (int) ((long) n * i / bands);
+      final int end = (int) ((long) n * (i + 1) / bands);
+      futures.add(pool.submit(new Runnable() {
+        public void run() {
+          band.run(start, end);
+        }
+      }));
+    }
+    Throwable failure = null;
+    try {
+      band.run(0, n / bands);
+    } catch (RuntimeException ex) {
+      failure = ex;
+    } catch (Error ex) {
+      failure = ex;
+    }
+    // we must wait for every band to finish even if we're interrupted,
+    // since the workers may still be writing into shared state
+    boolean interrupted = false;
+    for (Future<?> future : futures) {
+      while (true) {
+        try {
+          future.get();
+          break;
+        } catch (InterruptedException ex) {
+          interrupted = true;
+        } catch (ExecutionException ex) {
+          if (failure == null) {
+            failure = ex.getCause();
+          }
+          break;
+        }
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    }
+    if (failure instanceof Error) {
+      throw (Error) failure;
+    }
+  }
+
+}
@@ -0,0 +1,372 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.util;
+
+import java.util.Arrays;
+
+// Sorts numbers and strings without boxing them or going through a
+// Comparator, for sort and sort-on, and picks out the few items we want
+// without sorting everything, for max-n-of, min-n-of and median.  Long
+// arrays are split into bands
+// that are sorted on several threads (see Bands), then merged, a pair
+// of bands at a time, also on several threads.  Merging keeps the
+// earlier of two equal items first, so the answer is the same however
+// many bands there were, and the same as sorting serially.
+//
+// Numbers are in Double.compare order (so -0 comes before 0), which is
+// the order Double.compareTo and Arrays.sort(double[]) use.
+
+public final strictfp class Sorting {
+
+  // this class is not instantiable
+  private Sorting() {
+    throw new IllegalStateException();
+  }
+
+  // below this many items it isn't worth waking up the workers
+  public static final int MIN_PARALLEL = 65536;
+
+  // not final so tests can check that the answer doesn't depend on it.
+  // at least 1, since bands() divides the work up between them
+  public static int threads =
+      Math.max(1, Integer.getInteger("org.nlogo.sortThreads",
+          Runtime.getRuntime().availableProcessors()));
+
+  private static int bands(int n) {
+    return n >= MIN_PARALLEL ? threads : 1;
+  }
+
+  private static int[] bounds(int n, int bands) {
+    int[] result = new int[bands + 1];
+    for (int i = 0; i <= bands; i++) {
+      result[i] = (int) ((long) n * i / bands);
+    }
+    return result;
+  }
+
+  /// numbers, in place
+
+  public static void sort(final double[] a) {
+    int bands = bands(a.length);
+    if (bands < 2) {
+      Arrays.sort(a);
+      return;
+    }
+    final int[] bounds = bounds(a.length, bands);
+    Bands.run(bands, bands, new Bands.Band() {
+      public void run(int start, int end) {
+        for (int b = start; b < end; b++) {
+          Arrays.sort(a, bounds[b], bounds[b + 1]);
+        }
+      }
+    });
+    double[] result = mergeBands(a, new double[a.length], bounds);
+    if (result != a) {
+      System.arraycopy(result, 0, a, 0, a.length);
+    }
+  }
+
+  // merges the sorted runs between bounds, back and forth between src
+  // and dst, until there's only one.  returns whichever array it's in.
+  private static double[] mergeBands(double[] src, double[] dst, int[] bounds) {
+    while (bounds.length > 2) {
+      final double[] from = src;
+      final double[] to = dst;
+      final int[] runs = bounds;
+      final int pairs = (runs.length - 1) / 2;
+      Bands.run(pairs, pairs, new Bands.Band() {
+        public void run(int start, int end) {
+          for (int p = start; p < end; p++) {
+            merge(from, to, runs[2 * p], runs[2 * p + 1], runs[2 * p + 2]);
+          }
+        }
+      });
+      // an odd run out goes across as it is
+      if ((runs.length - 1) % 2 == 1) {
+        int last = runs[runs.length - 2];
+        System.arraycopy(from, last, to, last, runs[runs.length - 1] - last);
+      }
+      bounds = mergedBounds(runs);
+      src = to;
+      dst = from;
+    }
+    return src;
+  }
+
+  private static void merge(double[] from, double[] to, int start, int middle, int end) {
+    int i = start;
+    int j = middle;
+    int k = start;
+    while (i < middle && j < end) {
+      if (Double.compare(from[j], from[i]) < 0) {
+        to[k++] = from[j++];
+      } else {
+        to[k++] = from[i++];
+      }
+    }
+    System.arraycopy(from, i, to, k, middle - i);
+    System.arraycopy(from, j, to, k + middle - i, end - j);
+  }
+
+  private static int[] mergedBounds(int[] runs) {
+    int count = (runs.length - 1 + 1) / 2;
+    int[] result = new int[count + 1];
+    for (int r = 0; r < count; r++) {
+      result[r] = runs[2 * r];
+    }
+    result[count] = runs[runs.length - 1];
+    return result;
+  }
+
+  /// strings, in place
+
+  public static void sort(String[] a) {
+    if (bands(a.length) < 2) {
+      Arrays.sort(a);
+      return;
+    }
+    int[] order = order(a);
+    String[] sorted = new String[a.length];
+    for (int i = 0; i < order.length; i++) {
+      sorted[i] = a[order[i]];
+    }
+    System.arraycopy(sorted, 0, a, 0, a.length);
+  }
+
+  /// orders: the positions of the items, sorted by key.  stable
+
+  public static int[] order(final double[] keys) {
+    return order(keys.length, new Keys() {
+      public int compare(int i, int j) {
+        return Double.compare(keys[i], keys[j]);
+      }
+    });
+  }
+
+  public static int[] order(final String[] keys) {
+    return order(keys.length, new Keys() {
+      public int compare(int i, int j) {
+        return keys[i].compareTo(keys[j]);
+      }
+    });
+  }
+
+  private interface Keys {
+    int compare(int i, int j);
+  }
+
+  private static int[] order(int n, final Keys keys) {
+    final int[] order = new int[n];
+    for (int i = 0; i < n; i++) {
+      order[i] = i;
+    }
+    final int[] scratch = new int[n];
+    int bands = bands(n);
+    final int[] bounds = bounds(n, bands);
+    Bands.run(bands, bands, new Bands.Band() {
+      public void run(int start, int end) {
+        for (int b = start; b < end; b++) {
+          mergeSort(order, scratch, bounds[b], bounds[b + 1], keys);
+        }
+      }
+    });
+    int[] src = order;
+    int[] dst = scratch;
+    int[] runs = bounds;
+    while (runs.length > 2) {
+      final int[] from = src;
+      final int[] to = dst;
+      final int[] r = runs;
+      final int pairs = (r.length - 1) / 2;
+      Bands.run(pairs, pairs, new Bands.Band() {
+        public void run(int start, int end) {
+          for (int p = start; p < end; p++) {
+            merge(from, to, r[2 * p], r[2 * p + 1], r[2 * p + 2], keys);
+          }
+        }
+      });
+      if ((r.length - 1) % 2 == 1) {
+        int last = r[r.length - 2];
+        System.arraycopy(from, last, to, last, r[r.length - 1] - last);
+      }
+      runs = mergedBounds(r);
+      src = to;
+      dst = from;
+    }
+    return src;
+  }
+
+  /// selection: when we only want some of the items in order
+
+  // the positions of the k smallest keys (or largest, if largest is
+  // true), in order.  of equal keys, earlier ones come first, and win a
+  // place if there isn't room for all of them; so the answer is the
+  // first k items of order(keys) (reversed, for largest, except that
+  // ties still go to the earlier key).  keeps the k best so far in a
+  // heap with the worst of them on top, so O(n log k).
+  public static int[] top(double[] keys, int k, boolean largest) {
+    int[] heap = new int[k];
+    int size = 0;
+    for (int i = 0; i < keys.length && k > 0; i++) {
+      if (size < k) {
+        heap[size] = i;
+        siftUp(heap, size++, keys, largest);
+      } else if (better(keys, i, heap[0], largest)) {
+        heap[0] = i;
+        siftDown(heap, size, keys, largest);
+      }
+    }
+    // pop the worst off the top, filling in from the back
+    int[] result = new int[size];
+    for (int n = size; n > 0; n--) {
+      result[n - 1] = heap[0];
+      heap[0] = heap[n - 1];
+      siftDown(heap, n - 1, keys, largest);
+    }
+    return result;
+  }
+
+  // whether key i goes before key j
+  private static boolean better(double[] keys, int i, int j, boolean largest) {
+    int c = Double.compare(keys[i], keys[j]);
+    if (largest) {
+      c = -c;
+    }
+    return c < 0 || (c == 0 && i < j);
+  }
+
+  // the heap has the worst item on top, so each parent is worse than its
+  // children
+  private static void siftUp(int[] heap, int child, double[] keys, boolean largest) {
+    while (child > 0) {
+      int parent = (child - 1) / 2;
+      if (!better(keys, heap[parent], heap[child], largest)) {
+        return;
+      }
+      swap(heap, parent, child);
+      child = parent;
+    }
+  }
+
+  private static void siftDown(int[] heap, int size, double[] keys, boolean largest) {
+    int parent = 0;
+    while (true) {
+      int worst = parent;
+      int left = 2 * parent + 1;
+      int right = left + 1;
+      if (left < size && better(keys, heap[worst], heap[left], largest)) {
+        worst = left;
+      }
+      if (right < size && better(keys, heap[worst], heap[right], largest)) {
+        worst = right;
+      }
+      if (worst == parent) {
+        return;
+      }
+      swap(heap, parent, worst);
+      parent = worst;
+    }
+  }
+
+  private static void swap(int[] a, int i, int j) {
+    int t = a[i];
+    a[i] = a[j];
+    a[j] = t;
+  }
+
+  // the item that would be at position k if a were sorted.  rearranges a
+  // so it's there, with nothing bigger before it and nothing smaller
+  // after it.  quickselect, which is O(n) on average; if the pivots keep
+  // turning out badly, we sort what's left instead, so it's never worse
+  // than O(n log n).
+  public static double select(double[] a, int k) {
+    int start = 0;
+    int end = a.length;
+    int tries = 2 * (32 - Integer.numberOfLeadingZeros(a.length));
+    while (end - start > SMALL) {
+      if (tries-- == 0) {
+        Arrays.sort(a, start, end);
+        return a[k];
+      }
+      // median of three for the pivot
+      int middle = (start + end) >>> 1;
+      double x = a[start];
+      double y = a[middle];
+      double z = a[end - 1];
+      double pivot =
+          Double.compare(x, y) < 0
+              ? (Double.compare(y, z) < 0 ? y : (Double.compare(x, z) < 0 ? z : x))
+              : (Double.compare(x, z) < 0 ? x : (Double.compare(y, z) < 0 ? z : y));
+      // three-way partition: [start, lt) < pivot, [lt, gt) = pivot, [gt, end) > pivot
+      int lt = start;
+      int gt = end;
+      int i = start;
+      while (i < gt) {
+        int c = Double.compare(a[i], pivot);
+        if (c < 0) {
+          double t = a[i];
+          a[i++] = a[lt];
+          a[lt++] = t;
+        } else if (c > 0) {
+          double t = a[i];
+          a[i] = a[--gt];
+          a[gt] = t;
+        } else {
+          i++;
+        }
+      }
+      if (k < lt) {
+        end = lt;
+      } else if (k >= gt) {
+        start = gt;
+      } else {
+        return a[k];
+      }
+    }
+    Arrays.sort(a, start, end);
+    return a[k];
+  }
+
+  // insertion sort below this many items
+  private static final int SMALL = 16;
+
+  // sorts a[start, end), using scratch[start, end)
+  private static void mergeSort(int[] a, int[] scratch, int start, int end, Keys keys) {
+    if (end - start <= SMALL) {
+      for (int i = start + 1; i < end; i++) {
+        int x = a[i];
+        int j = i;
+        while (j > start && keys.compare(x, a[j - 1]) < 0) {
+          a[j] = a[j - 1];
+          j--;
+        }
+        a[j] = x;
+      }
+      return;
+    }
+    int middle = (start + end) >>> 1;
+    mergeSort(a, scratch, start, middle, keys);
+    mergeSort(a, scratch, middle, end, keys);
+    if (keys.compare(a[middle], a[middle - 1]) >= 0) {
+      return;  // already in order
+    }
+    System.arraycopy(a, start, scratch, start, end - start);
+    merge(scratch, a, start, middle, end, keys);
+  }
+
+  private static void merge(int[] from, int[] to, int start, int middle, int end, Keys keys) {
+    int i = start;
+    int j = middle;
+    int k = start;
+    while (i < middle && j < end) {
+      if (keys.compare(from[j], from[i]) < 0) {
+        to[k++] = from[j++];
+      } else {
+        to[k++] = from[i++];
+      }
+    }
+    System.arraycopy(from, i, to, k, middle - i);
+    System.arraycopy(from, j, to, k + middle - i, end - j);
+  }
+
+}
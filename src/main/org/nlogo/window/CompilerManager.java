@@ -103,12 +103,14 @@ public strictfp class CompilerManager
   }
 
   private boolean compileProcedures() {
+    // procedures that haven't changed since the last compile can be kept as they are
+    Program oldProgram = workspace.world.program();
     workspace.world.program(workspace.world.newProgram());
     try {
       CompilerResults results =
-          workspace.compiler().compileProgram
+          workspace.compiler().recompileProgram
               (proceduresInterface.innerSource(), workspace.world.newProgram(getGlobalVariableNames()),
-                  workspace.getExtensionManager());
+                  oldProgram, workspace.getProcedures(), workspace.getExtensionManager());
       workspace.setProcedures(results.proceduresMap());
       for (Procedure procedure : workspace.getProcedures().values()) {
         if (procedure.fileName.equals("")) {
@@ -56,6 +56,19 @@ public abstract strictfp class AbstractWorkspace
     this.tracer = tracer;
   }
 
+  private volatile org.nlogo.nvm.Sampler sampler = null;
+
+  public org.nlogo.nvm.Sampler sampler() {
+    return sampler;
+  }
+
+  public void setSampler(org.nlogo.nvm.Sampler sampler) {
+    if (this.sampler != null) {
+      this.sampler.stop();
+    }
+    this.sampler = sampler;
+  }
+
   public final org.nlogo.nvm.JobManagerInterface jobManager;
   private final HubNetManagerFactory hubNetManagerFactory;
   protected HubNetInterface hubNetManager;
@@ -140,6 +153,7 @@ public abstract strictfp class AbstractWorkspace
   public void dispose()
       throws InterruptedException {
     getExtensionManager().reset();
+    setSampler(null);
     jobManager.die();
     if (hubNetManager != null) {
       hubNetManager.disconnect();
@@ -400,14 +414,14 @@ public abstract strictfp class AbstractWorkspace
 
   // this is used to cache the compiled code used by the "run"
   // and "runresult" prims - ST 6/7/07
-  public WeakHashMap<String, Procedure> codeBits =
-      new WeakHashMap<String, Procedure>();
+  public final CodeBits codeBits = new CodeBits();
 
   public Procedure compileForRun(String source, org.nlogo.nvm.Context context,
                                  boolean reporter)
       throws CompilerException {
-    String key = source + "@" + context.activation.procedure.args.size() +
-        "@" + context.agentBit;
+    CodeBits.Key key =
+        new CodeBits.Key(source, context.agent.getAgentClass(),
+            context.activation.procedure.args, reporter, world.program());
     Procedure proc = codeBits.get(key);
     if (proc == null) {
       proc = evaluator.compileForRun(source, context, reporter);
@@ -416,6 +430,10 @@ public abstract strictfp class AbstractWorkspace
     return proc;
   }
 
+  public long[] runCacheStats() {
+    return new long[]{codeBits.hits(), codeBits.misses(), codeBits.size()};
+  }
+
   /// misc
 
   // we shouldn't need "Workspace." lampsvn.epfl.ch/trac/scala/ticket/1409 - ST 4/6/09
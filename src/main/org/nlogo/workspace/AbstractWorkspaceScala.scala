@@ -57,6 +57,15 @@ abstract class AbstractWorkspaceScala(private val _world: World, hubNetManagerFa
     clearDrawing()
     plotManager.clearAll()
     extensionManager.clearAll()
+    clearMemos()
+  }
+
+  // pure reporter procedures still give the same answers, but the user
+  // expects clear-all to give back the memory (see nvm.Memo)
+  private def clearMemos() {
+    import collection.JavaConverters._
+    for (procedure <- getProcedures.values.asScala; if procedure.memo != null)
+      procedure.memo.clear()
   }
 }
 
@@ -0,0 +1,122 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.workspace;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.nlogo.agent.Agent;
+import org.nlogo.api.Program;
+import org.nlogo.nvm.Procedure;
+
+// The compiled code used by the "run" and "runresult" prims, so a model
+// that runs the same string over and over only compiles it once.  Once
+// there are more than SIZE entries, the least recently used one goes.
+//
+// A cached Procedure is only good for the program it was compiled
+// against, since it may call procedures or use breeds and globals that
+// have since changed.  So the key includes the Program, which gets
+// replaced every time the model is recompiled; the workspace also clears
+// us at that point (see GUIWorkspace, HeadlessWorkspace), so the stale
+// procedures can be garbage collected.
+//
+// Synchronized since the event thread may clear us while the job
+// thread is running code.
+
+public final strictfp class CodeBits {
+
+  public static final int SIZE =
+      Integer.getInteger("org.nlogo.runCacheSize", 256);
+
+  private final Map<Key, Procedure> map =
+      new LinkedHashMap<Key, Procedure>(16, 0.75f, true) { // true = access order
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Procedure> eldest) {
+          return size() > SIZE;
+        }
+      };
+
+  private long hits = 0;
+  private long misses = 0;
+
+  public synchronized Procedure get(Key key) {
+    Procedure result = map.get(key);
+    if (result == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return result;
+  }
+
+  public synchronized void put(Key key, Procedure procedure) {
+    map.put(key, procedure);
+  }
+
+  public synchronized void clear() {
+    map.clear();
+  }
+
+  public synchronized int size() {
+    return map.size();
+  }
+
+  public synchronized long hits() {
+    return hits;
+  }
+
+  public synchronized long misses() {
+    return misses;
+  }
+
+  // everything the compiled code depends on besides the source itself:
+  // what kind of agent runs it, the names of the calling procedure's
+  // inputs (the code may refer to them), whether it's run or runresult,
+  // and the program
+  public static final class Key {
+    private final String source;
+    private final Class<? extends Agent> agentClass;
+    private final List<String> callerArgs;
+    private final boolean reporter;
+    private final Program program;
+    private final int hash;
+
+    public Key(String source, Class<? extends Agent> agentClass,
+               List<String> callerArgs, boolean reporter, Program program) {
+      this.source = source;
+      this.agentClass = agentClass;
+      this.callerArgs = callerArgs;
+      this.reporter = reporter;
+      this.program = program;
+      int h = source.hashCode();
+      h = 31 * h + agentClass.hashCode();
+      h = 31 * h + callerArgs.hashCode();
+      h = 31 * h + (reporter ? 1 : 0);
+      h = 31 * h + System.identityHashCode(program);
+      hash = h;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      // Program doesn't define equals(), and we wouldn't want it to
+      // here anyway
+      return hash == other.hash
+          && program == other.program
+          && reporter == other.reporter
+          && agentClass == other.agentClass
+          && source.equals(other.source)
+          && callerArgs.equals(other.callerArgs);
+    }
+  }
+
+}
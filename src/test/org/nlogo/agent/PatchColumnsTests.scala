@@ -0,0 +1,107 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.agent
+
+import org.scalatest.FunSuite
+import org.nlogo.api.WorldDimensions
+
+class PatchColumnsTests extends FunSuite {
+
+  val heat = Patch.LAST_PREDEFINED_VAR + 1
+
+  def makeWorld(columnar: Boolean) = {
+    val world = new World
+    world.program.patchesOwn.add("HEAT")
+    world.createPatches(new WorldDimensions(-2, 2, -2, 2))
+    world.realloc()
+    world.columnarPatchVariables(columnar)
+    world
+  }
+
+  def heats(world: World) =
+    (0 until world.patches.count).map(i => world.getPatch(i).getPatchVariable(heat))
+
+  test("double writes go to the column") {
+    val world = makeWorld(true)
+    val patch = world.getPatch(3)
+    patch.setPatchVariable(heat, 7.5)
+    expect(null)(patch.variables(heat))
+    expect(7.5)(world.patchColumn(heat)(3))
+    expect(7.5)(patch.getPatchVariableDouble(heat))
+    expect(java.lang.Double.valueOf(7.5))(patch.getPatchVariable(heat))
+  }
+
+  test("boxed values win over the column") {
+    val world = makeWorld(true)
+    val patch = world.getPatch(0)
+    patch.setPatchVariable(heat, 2.0)
+    patch.setPatchVariable(heat, "hot")
+    assert(!patch.patchVariableIsDouble(heat))
+    expect("hot")(patch.getPatchVariable(heat))
+    patch.setPatchVariable(heat, java.lang.Double.valueOf(4))
+    assert(patch.patchVariableIsDouble(heat))
+    expect(4.0)(patch.getPatchVariableDouble(heat))
+  }
+
+  test("variables() boxes what's in the column") {
+    val world = makeWorld(true)
+    val patch = world.getPatch(2)
+    patch.setPatchVariable(heat, 1.5)
+    assert(!patch.variables().contains(null))
+    expect(java.lang.Double.valueOf(1.5))(patch.variables()(heat))
+    expect(java.lang.Double.valueOf(0))(world.getPatch(4).variables()(heat))
+    // and the column still gets later writes
+    patch.setPatchVariable(heat, 2.5)
+    expect(2.5)(patch.getPatchVariableDouble(heat))
+  }
+
+  test("turning columns off keeps values") {
+    val world = makeWorld(true)
+    world.getPatch(1).setPatchVariable(heat, 3.0)
+    world.columnarPatchVariables(false)
+    expect(null)(world.patchColumn(heat))
+    expect(java.lang.Double.valueOf(3))(world.getPatch(1).variables(heat))
+  }
+
+  test("diffuse matches boxed storage") {
+    def run(columnar: Boolean) = {
+      val world = makeWorld(columnar)
+      for (i <- 0 until world.patches.count)
+        world.getPatch(i).setPatchVariable(heat, java.lang.Double.valueOf(i * i))
+      world.diffuse(0.5, heat)
+      world.diffuse4(0.25, heat)
+      heats(world)
+    }
+    expect(run(false))(run(true))
+  }
+
+  test("banded diffuse matches serial diffuse") {
+    def run(threads: Int) = {
+      val (saved, savedMax) = (PatchBands.threads, org.nlogo.util.Bands.maxBands)
+      PatchBands.threads = threads
+      org.nlogo.util.Bands.maxBands = threads
+      try {
+        val world = new World
+        world.program.patchesOwn.add("HEAT")
+        world.createPatches(new WorldDimensions(-40, 40, -40, 40))
+        world.realloc()
+        val random = new org.nlogo.util.MersenneTwisterFast(0)
+        for (i <- 0 until world.patches.count)
+          world.getPatch(i).setPatchVariable(heat, java.lang.Double.valueOf(random.nextDouble * 100))
+        world.diffuse(0.7, heat)
+        world.diffuse4(0.3, heat)
+        heats(world)
+      }
+      finally {
+        PatchBands.threads = saved
+        org.nlogo.util.Bands.maxBands = savedMax
+      }
+    }
+    val serial = run(1)
+    val pooled = org.nlogo.util.Bands.pooledBands.get
+    expect(serial)(run(5))
+    // or the test is trivial
+    assert(org.nlogo.util.Bands.pooledBands.get > pooled)
+  }
+
+}
@@ -0,0 +1,101 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.agent
+
+import org.scalatest.FunSuite
+import org.nlogo.api.WorldDimensions
+
+class WhoAgentSetTests extends FunSuite {
+
+  def makeWorld(n: Int) = {
+    val world = new World
+    world.createPatches(new WorldDimensions(-2, 2, -2, 2))
+    world.realloc()
+    for (i <- 0 until n)
+      new Turtle(world, world.turtles, World.ZERO, World.ZERO)
+    world
+  }
+
+  def whos(set: AgentSet) = {
+    val iter = set.iterator
+    val result = collection.mutable.ListBuffer[Long]()
+    while (iter.hasNext)
+      result += iter.next.id
+    result.toList
+  }
+
+  test("iterates in who order regardless of insertion order") {
+    val world = makeWorld(5)
+    val breed = new WhoAgentSet(classOf[Turtle], "FROGS", world)
+    for (who <- Seq(3, 0, 4, 1))
+      breed.add(world.getTurtle(who))
+    expect(List(0L, 1L, 3L, 4L))(whos(breed))
+    expect(List(0L, 1L, 3L, 4L))(breed.toArray.map(_.id).toList)
+    expect(3L)(breed.randomOne(4, 2).id)
+  }
+
+  test("membership and lookup") {
+    val world = makeWorld(5)
+    val breed = new WhoAgentSet(classOf[Turtle], "FROGS", world)
+    breed.add(world.getTurtle(2))
+    assert(breed.contains(world.getTurtle(2)))
+    assert(!breed.contains(world.getTurtle(3)))
+    expect(world.getTurtle(2))(breed.agent(2))
+    expect(null)(breed.agent(3))
+    expect(null)(breed.agent(1000))
+  }
+
+  test("positional access skips tombstones") {
+    val world = makeWorld(6)
+    world.getTurtle(1).die()
+    world.getTurtle(4).die()
+    expect(4)(world.turtles.count)
+    expect(List(0L, 2L, 3L, 5L))(whos(world.turtles))
+    expect(5L)(world.turtles.randomOne(4, 3).id)
+    assert(world.turtles.contains(world.getTurtle(0).hatch()))
+  }
+
+  test("iterator made before a death skips the dead turtle") {
+    val world = makeWorld(3)
+    val iter = world.turtles.iterator
+    world.getTurtle(1).die()
+    expect(0L)(iter.next.id)
+    expect(2L)(iter.next.id)
+    assert(!iter.hasNext)
+  }
+
+  test("births and deaths") {
+    // turtle 0 lives throughout, so the who numbers get too spread out
+    // for a table part way through
+    val world = makeWorld(1)
+    var youngest = world.getTurtle(0)
+    for (i <- 1 to 1000) {
+      val child = youngest.hatch()
+      if (youngest.id != 0)
+        youngest.die()
+      youngest = child
+    }
+    expect(List(0L, 1000L))(whos(world.turtles))
+    assert(world.turtles.asInstanceOf[WhoAgentSet].isSparse)
+    assert(world.turtles.contains(youngest))
+    expect(youngest)(world.turtles.agent(1000))
+    expect(null)(world.turtles.agent(999))
+    world.getTurtle(0).die()
+    expect(youngest)(world.turtles.agent(1000))
+    expect(List(1000L))(world.turtles.toArray.map(_.id).toList)
+    assert(world.turtles.contains(youngest.hatch()))
+    expect(List(1000L, 1001L))(whos(world.turtles))
+    // with turtle 0 gone, the who numbers are close together again
+    world.getTurtle(1000).die()
+    youngest = world.getTurtle(1001)
+    for (i <- 1 to 1000) {
+      val child = youngest.hatch()
+      youngest.die()
+      youngest = child
+    }
+    assert(!world.turtles.asInstanceOf[WhoAgentSet].isSparse)
+    expect(List(2001L))(whos(world.turtles))
+    expect(youngest)(world.turtles.agent(2001))
+  }
+
+}
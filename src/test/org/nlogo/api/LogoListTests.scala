@@ -10,4 +10,44 @@ class LogoListTests extends FunSuite {
       LogoList().iterator.next
     }
   }
+  test("numbers are kept unboxed") {
+    val list = LogoList(Double.box(1), Double.box(2), Double.box(3))
+    assert(list.isDoubles)
+    expect(Seq(1.0, 2.0, 3.0))(list.doubles.toSeq)
+    expect(Double.box(2))(list.get(1))
+    expect(LogoList(Double.box(3), Double.box(2), Double.box(1)))(list.reverse)
+    assert(list.reverse.isDoubles)
+  }
+  test("adding something else") {
+    val b = new LogoListBuilder
+    b.add(Double.box(1))
+    b.add("foo")
+    b.add(Double.box(2))
+    val list = b.toLogoList
+    assert(!list.isDoubles)
+    expect("[1 \"foo\" 2]")(Dump.logoObject(list, true, false))
+  }
+  test("changes give back an ordinary list") {
+    val list = LogoList(Double.box(1), Double.box(2))
+    val list2 = list.lput(Double.box(3))
+    assert(!list2.isDoubles)
+    expect(LogoList(Double.box(1), Double.box(2), Double.box(3)))(list2)
+    expect(LogoList(Double.box(1), "x"))(list.replaceItem(1, "x"))
+    expect(2)(list.size)
+  }
+  test("addAll of unboxed lists") {
+    val b = new LogoListBuilder
+    b.addAll(LogoList(Double.box(1), Double.box(2)))
+    b.addAll(LogoList(Double.box(3)))
+    val list = b.toLogoList
+    assert(list.isDoubles)
+    expect(Seq(1.0, 2.0, 3.0))(list.doubles.toSeq)
+  }
+  test("equal either way") {
+    val boxed = LogoList.fromVector(Vector(Double.box(1), Double.box(2)))
+    val unboxed = LogoList(Double.box(1), Double.box(2))
+    assert(!boxed.isDoubles && unboxed.isDoubles)
+    expect(boxed)(unboxed)
+    expect(boxed.hashCode)(unboxed.hashCode)
+  }
 }
@@ -0,0 +1,52 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.compiler
+
+import org.scalatest.FunSuite
+import org.nlogo.api.{ CompilerException, DummyExtensionManager, Program }
+import org.nlogo.util.Bands
+
+class CompilerMainTests extends FunSuite {
+
+  /// helpers
+
+  def withThreads[T](n: Int)(body: => T): T = {
+    val (old, oldMax) = (CompilerMain.threads, Bands.maxBands)
+    CompilerMain.threads = n
+    // so the threads really are used even on a machine with one processor
+    Bands.maxBands = math.max(n, oldMax)
+    try body
+    finally {
+      CompilerMain.threads = old
+      Bands.maxBands = oldMax
+    }
+  }
+  def compile(source: String) =
+    Compiler.compileProgram(source, new Program(false), new DummyExtensionManager)
+  // enough procedures that the compiler bothers to use more than one thread, calling each other,
+  // with locals for LocalsVisitor to add and command tasks for ExpressionParser to find
+  val source =
+    (1 to 40).map(i =>
+      "to p" + i + " [x] let y x + " + i + " repeat 2 [ set y y + 1 ] " +
+      "foreach [1 2] [ print ? ] run task [ print y ] " +
+      (if (i > 1) "p" + (i - 1) + " y " else "") + "end\n" +
+      "to-report r" + i + " [x] report x * " + i + " end\n").mkString
+
+  /// tests
+
+  test("same code on one thread or several") {
+    def dumps(threads: Int) =
+      withThreads(threads) { compile(source).procedures.map(_.dump).toList }
+    expect(dumps(1))(dumps(4))
+  }
+  test("first error wins") {
+    val bad = source.replace("report x * 30", "report x * \"a\"")
+                    .replace("report x * 10", "report x *")
+    def error(threads: Int) =
+      withThreads(threads) { intercept[CompilerException] { compile(bad) } }
+    val serial = error(1)
+    val parallel = error(4)
+    expect(serial.getMessage)(parallel.getMessage)
+    expect(serial.startPos)(parallel.startPos)
+  }
+}
@@ -0,0 +1,98 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.compiler
+
+import org.scalatest.FunSuite
+import org.nlogo.api.{ DummyExtensionManager, Program }
+import org.nlogo.nvm.Procedure
+import org.nlogo.prim.{ _other, _with }
+
+class LazyAgentSetVisitorTests extends FunSuite {
+  implicit val tokenizer = Compiler.Tokenizer2D
+  // whether each _with and _other in the procedure, in the order the visitor finds them, is lazy
+  def lazies(source: String): List[Boolean] = {
+    val buf = new collection.mutable.ListBuffer[Boolean]
+    compile("globals [glob1] turtles-own [energy] to __test [x] " + source + "\nend").accept(
+      new DefaultAstVisitor {
+        override def visitReporterApp(app: ReporterApp) {
+          app.reporter match {
+            case w: _with => buf += w.filterLazily
+            case o: _other => buf += o.filterLazily
+            case _ =>
+          }
+          super.visitReporterApp(app)
+        }
+      })
+    buf.toList
+  }
+  private def compile(source: String): ProcedureDefinition = {
+    val program = new Program(false)
+    val results = new StructureParser(tokenizer.tokenize(source), None, program,
+                                      java.util.Collections.emptyMap[String, Procedure],
+                                      new DummyExtensionManager)
+      .parse(false)
+    val procedure = results.procedures.values.iterator.next()
+    val tokens =
+      new IdentifierParser(program, java.util.Collections.emptyMap[String, Procedure],
+                           results.procedures, false)
+      .process(results.tokens(procedure).iterator, procedure)
+    val procdef = new ExpressionParser(procedure).parse(tokens).head
+    procdef.accept(new ReferenceVisitor)
+    procdef.accept(new ConstantFolder)
+    procdef.accept(new SimpleOfVisitor)
+    procdef.accept(new Optimizer(false))
+    procdef.accept(new LazyAgentSetVisitor)
+    procdef
+  }
+  test("in-radius") {
+    expect(List(true))(
+      lazies("print count (turtles with [xcor > 3]) in-radius 3"))
+  }
+  test("nested with") {
+    // the outer _with becomes _oneofwith
+    expect(List(true))(
+      lazies("print one-of (turtles with [xcor > 3]) with [color = red]"))
+  }
+  test("with inside with") {
+    expect(List(false, true))(
+      lazies("print (turtles with [xcor > 3]) with [color = red]"))
+  }
+  test("other") {
+    expect(List(true))(
+      lazies("print one-of other turtles"))
+  }
+  test("block may fail") {
+    expect(List(false))(
+      lazies("print count turtles with [1 / energy = 1]"))
+    expect(List(false))(
+      lazies("print count turtles with [energy > x]"))
+  }
+  test("block may not report true or false") {
+    expect(List(false))(
+      lazies("print count turtles with [energy]"))
+  }
+  test("and, or and not of comparisons that can't fail") {
+    expect(List(true))(
+      lazies("print count (turtles with [not (xcor > 3 or color = red)]) in-radius 3"))
+  }
+  test("block has side effects") {
+    expect(List(false))(
+      lazies("print count (turtles with [random 2 = 0]) in-radius 3"))
+  }
+  test("other input has side effects") {
+    expect(List(false))(
+      lazies("print count (turtles with [xcor > 3]) in-radius random 3"))
+  }
+  test("set is kept") {
+    expect(List(false))(
+      lazies("let s turtles with [xcor > 3] print count s"))
+  }
+  test("ask forces") {
+    expect(List(false))(
+      lazies("ask turtles with [xcor > 3] [ die ]"))
+  }
+  test("of forces") {
+    expect(List(false))(
+      lazies("print [energy] of turtles with [xcor > 3]"))
+  }
+}
@@ -0,0 +1,53 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.compiler
+
+import org.scalatest.FunSuite
+import org.nlogo.api.{ DummyExtensionManager, Program }
+
+class MemoizerTests extends FunSuite {
+
+  // the procedures the compiler decided to memoize
+  def memoized(source: String): List[String] = {
+    val results = Compiler.compileProgram("globals [g] " + source, new Program(false),
+                                          new DummyExtensionManager)
+    results.procedures.filter(_.memo != null).map(_.name).toList
+  }
+
+  test("recursive") {
+    expect(List("FIB"))(memoized(
+      "to-report fib [n] ifelse n < 2 [ report n ] [ report fib (n - 1) + fib (n - 2) ] end"))
+  }
+  test("too small to bother") {
+    expect(Nil)(memoized("to-report twice [x] report x * 2 end"))
+  }
+  test("calls a pure procedure") {
+    expect(List("FOO"))(memoized(
+      "to-report twice [x] report x * 2 end\nto-report foo [x] report twice x end"))
+  }
+  test("reads a global") {
+    expect(Nil)(memoized(
+      "to-report fib [n] ifelse n < g [ report n ] [ report fib (n - 1) + fib (n - 2) ] end"))
+  }
+  test("random") {
+    expect(Nil)(memoized("to-report r [n] report random n + r (n - 1) end"))
+  }
+  test("calls an impure procedure") {
+    expect(Nil)(memoized(
+      "to-report foo [x] report x + g end\nto-report bar [x] report foo x end"))
+  }
+  test("mutual recursion") {
+    expect(List("EVEN", "ODD"))(memoized(
+      "to-report even [n] ifelse n = 0 [ report true ] [ report odd (n - 1) ] end\n" +
+      "to-report odd [n] ifelse n = 0 [ report false ] [ report even (n - 1) ] end"))
+  }
+  test("locals") {
+    expect(List("FOO"))(memoized(
+      "to-report foo [x] let y x * 2 set y y + 1 report foo2 y end\n" +
+      "to-report foo2 [x] report x end"))
+  }
+  test("commands") {
+    expect(Nil)(memoized(
+      "to-report foo [x] set g x report foo (x - 1) end"))
+  }
+}
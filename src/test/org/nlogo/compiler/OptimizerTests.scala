@@ -8,13 +8,14 @@ import org.nlogo.nvm.Procedure
 
 class OptimizerTests extends FunSuite {
   implicit val tokenizer = Compiler.Tokenizer2D
-  def compileReporter(source:String) =
-    compile("globals [glob1] breed [frogs frog] to-report __test [x] report " + source + "\nend")
+  def compileReporter(source:String, simpleOf:Boolean = false) =
+    compile("globals [glob1] breed [frogs frog] to-report __test [x] report " + source + "\nend",
+            simpleOf)
       .statements.head.head.toString
   def compileCommands(source:String) =
     compile("globals [glob1] breed [frogs frog] to __test [x] " + source + "\nend")
       .statements.head.toString
-  private def compile(source:String):ProcedureDefinition = {
+  private def compile(source:String, simpleOf:Boolean = false):ProcedureDefinition = {
     val program = new Program(false)
     val results = new StructureParser(tokenizer.tokenize(source), None, program,
                                       java.util.Collections.emptyMap[String,Procedure],
@@ -28,6 +29,8 @@ class OptimizerTests extends FunSuite {
       .process(results.tokens(procedure).iterator, procedure)
     val procdef = new ExpressionParser(procedure).parse(tokens).head
     procdef.accept(new ConstantFolder)
+    if(simpleOf)
+      procdef.accept(new SimpleOfVisitor)
     procdef.accept(new Optimizer(false))
     procdef
   }
@@ -208,4 +211,124 @@ class OptimizerTests extends FunSuite {
     expect("_countotherwith[_turtles[], [_constboolean:true[]]]")(
       compileReporter("count other turtles with [true]"))
   }
+  test("otherTurtlesHere") {
+    expect("_otherturtleshere[]")(
+      compileReporter("other turtles-here"))
+  }
+  test("otherBreedHere") {
+    expect("_otherbreedhere:FROGS[]")(
+      compileReporter("other frogs-here"))
+  }
+  test("anyOtherTurtlesHere") {
+    expect("_anyotherturtleshere[]")(
+      compileReporter("any? other turtles-here"))
+  }
+  test("anyOtherBreedHere") {
+    expect("_anyotherbreedhere:FROGS[]")(
+      compileReporter("any? other frogs-here"))
+  }
+  test("countTurtlesHere") {
+    expect("_countturtleshere[]")(
+      compileReporter("count turtles-here"))
+  }
+  test("countOtherTurtlesHere") {
+    expect("_countotherturtleshere[]")(
+      compileReporter("count other turtles-here"))
+  }
+  test("countBreedHere") {
+    expect("_countbreedhere:FROGS[]")(
+      compileReporter("count frogs-here"))
+  }
+  test("countOtherBreedHere") {
+    expect("_countotherbreedhere:FROGS[]")(
+      compileReporter("count other frogs-here"))
+  }
+  test("anyTurtlesOn") {
+    expect("_anyturtleson[_patches[]]")(
+      compileReporter("any? turtles-on patches"))
+  }
+  test("anyBreedOn") {
+    expect("_anybreedon:FROGS[_patches[]]")(
+      compileReporter("any? frogs-on patches"))
+  }
+  test("anyCount1") {
+    expect("_not[_any[_turtles[]]]")(
+      compileReporter("count turtles = 0"))
+  }
+  test("anyCount2") {
+    expect("_not[_any[_turtles[]]]")(
+      compileReporter("0 = count turtles"))
+  }
+  test("anyCount3") {
+    expect("_any[_turtles[]]")(
+      compileReporter("count turtles > 0"))
+  }
+  test("anyCount4") {
+    expect("_any[_turtles[]]")(
+      compileReporter("0 < count turtles"))
+  }
+  test("anyCount5") {
+    expect("_any[_turtles[]]")(
+      compileReporter("count turtles != 0"))
+  }
+  test("anyCount6") {
+    expect("_not[_anyturtleson[_patches[]]]")(
+      compileReporter("count turtles-on patches = 0"))
+  }
+  test("anyCount7") {
+    expect("_anybreedon:FROGS[_patches[]]")(
+      compileReporter("count frogs-on patches > 0"))
+  }
+  test("sumOf") {
+    expect("_sumof[[_turtlevariable:6[]], _turtles[]]")(
+      compileReporter("sum [label] of turtles"))
+  }
+  test("meanOf") {
+    expect("_meanof[[_patchvariabledouble:0[]], _patches[]]")(
+      compileReporter("mean [pxcor] of patches"))
+  }
+  test("maxOf") {
+    expect("_maxof[[_turtlevariabledouble:3[]], _turtles[]]")(
+      compileReporter("max [xcor] of turtles"))
+  }
+  test("minOf") {
+    expect("_minof[[_turtlevariabledouble:3[]], _turtles[]]")(
+      compileReporter("min [xcor] of turtles"))
+  }
+  test("sumTurtleVariableOf") {
+    expect("_sumturtlevariableof:3[_turtles[]]")(
+      compileReporter("sum [xcor] of turtles", simpleOf = true))
+  }
+  test("maxTurtleVariableOf") {
+    expect("_maxturtlevariableof:3[_turtles[]]")(
+      compileReporter("max [xcor] of turtles", simpleOf = true))
+  }
+  test("meanPatchVariableOf") {
+    expect("_meanpatchvariableof:0[_patches[]]")(
+      compileReporter("mean [pxcor] of patches", simpleOf = true))
+  }
+  test("minPatchVariableOf") {
+    expect("_minpatchvariableof:0[_turtles[]]")(
+      compileReporter("min [pxcor] of turtles", simpleOf = true))
+  }
+  test("varianceOf") {
+    expect("_varianceof[[_turtlevariable:6[]], _turtles[]]")(
+      compileReporter("variance [label] of turtles"))
+  }
+  test("standardDeviationOf") {
+    expect("_standarddeviationof[[_patchvariabledouble:0[]], _patches[]]")(
+      compileReporter("standard-deviation [pxcor] of patches"))
+  }
+  test("varianceTurtleVariableOf") {
+    expect("_varianceturtlevariableof:3[_turtles[]]")(
+      compileReporter("variance [xcor] of turtles", simpleOf = true))
+  }
+  test("standardDeviationPatchVariableOf") {
+    expect("_standarddeviationpatchvariableof:0[_turtles[]]")(
+      compileReporter("standard-deviation [pxcor] of turtles", simpleOf = true))
+  }
+  test("nsumStillWins") {
+    expect("_nsum:0[]")(
+      compileReporter("sum [pxcor] of neighbors", simpleOf = true))
+  }
 }
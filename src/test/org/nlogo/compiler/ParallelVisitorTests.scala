@@ -0,0 +1,63 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.compiler
+
+import org.scalatest.FunSuite
+import org.nlogo.api.{ DummyExtensionManager, Program }
+import org.nlogo.nvm.Procedure
+import org.nlogo.prim.{ _of, _sumof, _maxof }
+import org.nlogo.prim.etc._parallelupdate
+
+class ParallelVisitorTests extends FunSuite {
+  implicit val tokenizer = Compiler.Tokenizer2D
+  def parallelOf(source: String) =
+    reporter(source).asInstanceOf[_of].parallel
+  def reporter(source: String) =
+    compile("globals [glob1] turtles-own [energy] to-report __test [x] report " + source + "\nend")
+      .statements.head.head.asInstanceOf[ReporterApp].reporter
+  def parallelUpdate(source: String) =
+    compile("globals [glob1] turtles-own [energy] to __test [x] " + source + "\nend")
+      .statements.head.command.asInstanceOf[_parallelupdate].parallel
+  private def compile(source: String): ProcedureDefinition = {
+    val program = new Program(false)
+    val results = new StructureParser(tokenizer.tokenize(source), None, program,
+                                      java.util.Collections.emptyMap[String, Procedure],
+                                      new DummyExtensionManager)
+      .parse(false)
+    val procedure = results.procedures.values.iterator.next()
+    val tokens =
+      new IdentifierParser(program, java.util.Collections.emptyMap[String, Procedure],
+                           results.procedures, false)
+      .process(results.tokens(procedure).iterator, procedure)
+    val procdef = new ExpressionParser(procedure).parse(tokens).head
+    procdef.accept(new ReferenceVisitor)
+    procdef.accept(new ConstantFolder)
+    procdef.accept(new SimpleOfVisitor)
+    procdef.accept(new Optimizer(false))
+    procdef.accept(new ParallelVisitor)
+    procdef
+  }
+  test("arithmetic on variables") {
+    assert(parallelOf("[energy * 2 + xcor - x] of turtles"))
+  }
+  test("comparison against a constant") {
+    assert(parallelOf("[color = red] of turtles"))
+  }
+  test("comparison of two variables") {
+    assert(!parallelOf("[energy = glob1] of turtles"))
+  }
+  test("random numbers") {
+    assert(!parallelOf("[random energy] of turtles"))
+  }
+  test("agentsets") {
+    assert(!parallelOf("[count turtles-here] of turtles"))
+  }
+  test("fused by the optimizer") {
+    assert(reporter("sum [energy * 2] of turtles").asInstanceOf[_sumof].parallel)
+    assert(!reporter("max [random energy] of turtles").asInstanceOf[_maxof].parallel)
+  }
+  test("parallel update") {
+    assert(parallelUpdate("__parallel-update turtles energy [energy / 2]"))
+    assert(!parallelUpdate("__parallel-update turtles energy [one-of [1 2]]"))
+  }
+}
@@ -0,0 +1,78 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.compiler
+
+import org.scalatest.FunSuite
+import org.nlogo.api.{ DummyExtensionManager, Program }
+import org.nlogo.nvm.CompilerResults
+
+class RecompilerTests extends FunSuite {
+
+  /// helpers
+
+  val extensionManager = new DummyExtensionManager
+  def compile(source: String) =
+    Compiler.compileProgram(source, new Program(false), extensionManager)
+  def recompile(source: String, old: CompilerResults) =
+    Compiler.recompileProgram(source, new Program(false), old.program, old.proceduresMap,
+                              extensionManager)
+  def kept(old: CompilerResults, results: CompilerResults): List[String] = {
+    val oldMap = old.proceduresMap
+    results.procedures.filter(p => oldMap.get(p.name) eq p).map(_.name).toList
+  }
+  val source = "to foo print 123 end\nto bar foo end\nto baz print 1 end"
+
+  /// tests
+
+  test("nothing changed") {
+    val old = compile(source)
+    expect(List("FOO", "BAR", "BAZ"))(kept(old, recompile(source, old)))
+  }
+  test("one body changed") {
+    val old = compile(source)
+    expect(List("FOO", "BAR"))(
+      kept(old, recompile("to foo print 123 end\nto bar foo end\nto baz print 2 end", old)))
+  }
+  test("callers of changed procedures are compiled again") {
+    val old = compile(source)
+    expect(List("BAZ"))(
+      kept(old, recompile("to foo print 124 end\nto bar foo end\nto baz print 1 end", old)))
+  }
+  test("whitespace inside a procedure counts as a change") {
+    val old = compile(source)
+    expect(List("BAZ"))(
+      kept(old, recompile("to foo print  123 end\nto bar foo end\nto baz print 1 end", old)))
+  }
+  test("new procedure with a name some procedure used") {
+    val old = compile("to foo let x 5 print x end\nto bar end")
+    // by any other name, it leaves the old ones be, so the error below has to come from
+    // compiling foo again, not from compiling everything because something changed
+    expect(List("FOO", "BAR"))(
+      kept(old, recompile("to foo let x 5 print x end\nto bar end\nto y end", old)))
+    intercept[org.nlogo.api.CompilerException] {
+      recompile("to foo let x 5 print x end\nto bar end\nto x end", old)
+    }
+  }
+  test("declarations changed") {
+    val old = compile(source)
+    expect(Nil)(kept(old, recompile("globals [g]\n" + source, old)))
+  }
+  test("procedure removed") {
+    val old = compile(source)
+    expect(List("FOO"))(kept(old, recompile("to foo print 123 end", old)))
+  }
+  test("kept procedures move") {
+    val old = compile(source)
+    val newSource = "to baz print 1 end\n\n\nto foo print 123 end\nto bar foo end"
+    val results = recompile(newSource, old)
+    val foo = results.proceduresMap.get("FOO")
+    assert(foo eq old.proceduresMap.get("FOO"))
+    expect(newSource.indexOf("print 123"))(foo.code.head.token.startPos)
+    expect(newSource.indexOf("print 123") + "print 123".size)(foo.code.head.getSourceEndPosition)
+    // and again, so we know the key was updated too
+    val newerSource = "to foo print 123 end\nto bar foo end\nto baz print 1 end"
+    val results2 = recompile(newerSource, results)
+    assert(results2.proceduresMap.get("FOO") eq foo)
+    expect(newerSource.indexOf("print 123"))(foo.code.head.token.startPos)
+  }
+}
@@ -0,0 +1,66 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.compiler
+
+import org.scalatest.FunSuite
+import org.nlogo.api.{ DummyExtensionManager, Program }
+import org.nlogo.nvm.Procedure
+
+class TailCallVisitorTests extends FunSuite {
+  implicit val tokenizer = Compiler.Tokenizer2D
+  // the commands in the procedure, in the order the visitor finds them, plus how many inputs each has
+  def commands(source: String): List[String] = {
+    val buf = new collection.mutable.ListBuffer[String]
+    compile("turtles-own [energy] " + source).accept(
+      new DefaultAstVisitor {
+        override def visitStatement(stmt: Statement) {
+          buf += stmt.command.getClass.getSimpleName + "/" + stmt.size
+          super.visitStatement(stmt)
+        }
+      })
+    buf.toList
+  }
+  private def compile(source: String): ProcedureDefinition = {
+    val program = new Program(false)
+    val results = new StructureParser(tokenizer.tokenize(source), None, program,
+                                      java.util.Collections.emptyMap[String, Procedure],
+                                      new DummyExtensionManager)
+      .parse(false)
+    val procedure = results.procedures.values.iterator.next()
+    val tokens =
+      new IdentifierParser(program, java.util.Collections.emptyMap[String, Procedure],
+                           results.procedures, false)
+      .process(results.tokens(procedure).iterator, procedure)
+    val procdef = new ExpressionParser(procedure).parse(tokens).head
+    procdef.accept(new TailCallVisitor)
+    procdef
+  }
+  test("last statement") {
+    expect(List("_fd/1", "_tailcall/1"))(
+      commands("to __test [n] fd 1 __test n - 1 end"))
+  }
+  test("not last statement") {
+    expect(List("_call/1", "_fd/1"))(
+      commands("to __test [n] __test n - 1 fd 1 end"))
+  }
+  test("inside if") {
+    expect(List("_if/2", "_tailcall/1"))(
+      commands("to __test [n] if n > 0 [ __test n - 1 ] end"))
+  }
+  test("inside ifelse that isn't last") {
+    expect(List("_ifelse/3", "_call/1", "_call/1", "_fd/1"))(
+      commands("to __test [n] ifelse n > 0 [ __test n - 1 ] [ __test n + 1 ] fd 1 end"))
+  }
+  test("inside ask") {
+    expect(List("_ask/2", "_call/1"))(
+      commands("to __test [n] ask turtles [ __test n - 1 ] end"))
+  }
+  test("report") {
+    expect(List("_if/2", "_report/1", "_tailcallreport/1"))(
+      commands("to-report __test [n] if n = 0 [ report 1 ] report __test n - 1 end"))
+  }
+  test("report of something else") {
+    expect(List("_report/1"))(
+      commands("to-report __test [n] report n * __test n - 1 end"))
+  }
+}
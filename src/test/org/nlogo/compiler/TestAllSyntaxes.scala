@@ -142,6 +142,7 @@ class TestAllSyntaxes extends FunSuite {
                      |_mean list,number,OTPL,null,10,1,1
                      |_median list,number,OTPL,null,10,1,1
                      |_member anything/string or list or agentset,TRUE/FALSE,OTPL,null,10,2,2
+                     |_memostats ,list,OTPL,null,10,0,0
                      |_min list,number,OTPL,null,10,1,1
                      |_minnof number/agentset/number block,agentset,OTPL,?,10,3,3
                      |_minnofwithties agentset,number/number block,agentset,OTPL,?,10,2,2
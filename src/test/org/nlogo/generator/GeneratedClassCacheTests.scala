@@ -0,0 +1,95 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.generator
+
+import org.scalatest.FunSuite
+import org.nlogo.api.{ Token, TokenType }
+import org.nlogo.nvm.{ Command, Procedure, Reporter }
+import org.nlogo.prim.{ _constdouble, _fd, _plus }
+import GeneratedClassCache._
+
+class GeneratedClassCacheTests extends FunSuite {
+
+  /// helpers
+
+  def tempDir() = {
+    val dir = java.io.File.createTempFile("GeneratedClassCacheTests", "")
+    dir.delete()
+    dir.mkdir()
+    dir.deleteOnExit()
+    dir
+  }
+  def procedure() =
+    new Procedure(Procedure.Type.COMMAND, new Token("foo", TokenType.IDENT, "FOO")(0, 3, ""),
+                  "FOO", None, null)
+  // fd 1 + 2
+  def code(n: Double = 2): Array[Command] = {
+    val plus = new _plus
+    plus.args = Array[Reporter](new _constdouble(Double.box(1)), new _constdouble(Double.box(n)))
+    val fd = new _fd
+    fd.args = Array[Reporter](plus)
+    Array(fd)
+  }
+
+  /// tests
+
+  test("snapshot finds instructions and their fields") {
+    val snapshot = new Snapshot(code())
+    val fd = snapshot.node(List(0))
+    val one = snapshot.node(List(0, 0, 0))
+    expect(Some(InstructionRecipe(List(0))))(snapshot.recipe(fd))
+    expect(Some(InstructionRecipe(List(0, 0, 0))))(snapshot.recipe(one))
+    expect(Some(FieldRecipe(List(0), "let")))(snapshot.recipe(fd.asInstanceOf[_fd].let))
+    expect(Some(NullRecipe))(snapshot.recipe(null))
+    expect(None)(snapshot.recipe(new Object))
+  }
+  test("recipes find the same things in a new tree") {
+    val snapshot1 = new Snapshot(code())
+    val snapshot2 = new Snapshot(code())
+    val fd1 = snapshot1.node(List(0)).asInstanceOf[_fd]
+    val fd2 = snapshot2.node(List(0)).asInstanceOf[_fd]
+    val recipe = snapshot1.recipe(fd1.let).get
+    assert(snapshot2.resolve(recipe, Nil) eq fd2.let)
+  }
+  test("key depends on constants") {
+    def key(n: Double) = {
+      val snapshot = new Snapshot(code(n))
+      GeneratedClassCache.key(procedure(), false, snapshot)
+    }
+    expect(key(2))(key(2))
+    assert(key(2) != key(3))
+  }
+  test("key depends on profiling") {
+    val snapshot = new Snapshot(code())
+    assert(GeneratedClassCache.key(procedure(), false, snapshot) !=
+           GeneratedClassCache.key(procedure(), true, snapshot))
+  }
+  test("write and read") {
+    val dir = tempDir()
+    val cached =
+      Cached(List(Entry(List(0, 0), "org.nlogo.prim._asm_foo_plus_0", Array[Byte](1, 2, 3),
+                        List("keptinstr1" -> InstructionRecipe(List(0, 0)),
+                             "kept2_let" -> FieldRecipe(List(0), "let"),
+                             "kept3_x" -> NullRecipe,
+                             "keptinstr4" -> GeneratedRecipe(0)))),
+             List(Choice(List(0, 0), "report_1", "(Lorg/nlogo/nvm/Context;DD)D")))
+    expect(None)(read(dir, "abc"))
+    write(dir, "abc", cached)
+    val result = read(dir, "abc").get
+    expect(cached.choices)(result.choices)
+    expect(1)(result.entries.size)
+    val entry = result.entries.head
+    expect(List(0, 0))(entry.path)
+    expect("org.nlogo.prim._asm_foo_plus_0")(entry.className)
+    expect(List[Byte](1, 2, 3))(entry.bytecode.toList)
+    expect(cached.entries.head.kept.toList)(entry.kept.toList)
+  }
+  test("half a file is a miss") {
+    val dir = tempDir()
+    val out = new java.io.DataOutputStream(new java.io.FileOutputStream(new java.io.File(dir, "abc.bin")))
+    out.writeInt(1)
+    out.writeInt(5)
+    out.close()
+    expect(None)(read(dir, "abc"))
+  }
+}
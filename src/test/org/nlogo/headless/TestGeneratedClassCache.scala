@@ -0,0 +1,76 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.headless
+
+import org.scalatest.FunSuite
+import org.nlogo.api.Version
+
+// compiles the same model in fresh workspaces, as separate JVMs in a sweep would, with the
+// generator's class cache on (see generator.GeneratedClassCache)
+class TestGeneratedClassCache extends FunSuite {
+
+  val source =
+    "to-report f [n] let total 0 foreach n-values n [?] [ set total total + ? * ? ] " +
+    "report total + count patches with [pxcor > 0] end"
+
+  def tempDir() = {
+    val dir = java.io.File.createTempFile("TestGeneratedClassCache", "")
+    dir.delete()
+    dir.mkdir()
+    dir
+  }
+
+  // the generator isn't a dependency of ours, so we go through reflection
+  def counts = {
+    val c = Class.forName("org.nlogo.generator.GeneratedClassCache$")
+    val cache = c.getField("MODULE$").get(null)
+    def count(name: String) = c.getMethod(name).invoke(cache).asInstanceOf[java.lang.Integer].intValue
+    (count("hits"), count("misses"))
+  }
+
+  def run(source: String, reporter: String) = {
+    val workspace = HeadlessWorkspace.newInstance
+    try {
+      workspace.initForTesting(5, source)
+      workspace.report(reporter)
+    }
+    finally workspace.dispose()
+  }
+
+  if(Version.useGenerator)
+    test("restored classes give the same results") {
+      val dir = tempDir()
+      System.setProperty("org.nlogo.generatorCache", dir.getPath)
+      try {
+        // cold: everything is generated and written
+        val (hits0, misses0) = counts
+        expect(340.0)(run(source, "f 10"))
+        val (hits1, misses1) = counts
+        expect(hits0)(hits1)
+        assert(misses1 > misses0)
+        assert(dir.list.exists(_.endsWith(".bin")))
+        // warm: the same procedures are restored, and do the same thing
+        expect(340.0)(run(source, "f 10"))
+        val (hits2, misses2) = counts
+        assert(hits2 > hits1)
+        // a changed procedure has a different key, so it's generated again
+        expect(351.0)(run(source.replace("pxcor > 0", "pxcor > -1"), "f 10"))
+        val (hits3, misses3) = counts
+        assert(misses3 > misses2)
+        // and so is one whose file is garbage
+        for (f <- dir.listFiles; if f.getName.endsWith(".bin"))
+          org.nlogo.api.FileIO.writeFile(f.getPath, "garbage")
+        expect(340.0)(run(source, "f 10"))
+        val (hits4, misses4) = counts
+        expect(hits3)(hits4)
+        assert(misses4 > misses3)
+      }
+      finally {
+        System.clearProperty("org.nlogo.generatorCache")
+        for (f <- dir.listFiles)
+          f.delete()
+        dir.delete()
+      }
+    }
+
+}
@@ -0,0 +1,64 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.headless
+
+import org.nlogo.nvm.ParallelEvaluation
+import org.nlogo.util.Bands
+
+class TestParallelEvaluation extends TestUsingWorkspace {
+
+  // runs the commands with parallel evaluation off, then on, and
+  // checks that the reporter and the random number generator come
+  // out the same both times
+  def checkSame(workspace: HeadlessWorkspace, commands: String, reporter: String) {
+    def run(parallel: Boolean) = {
+      val (savedEnabled, savedThreads, savedMax) =
+        (ParallelEvaluation.enabled, ParallelEvaluation.threads, Bands.maxBands)
+      ParallelEvaluation.enabled = parallel
+      ParallelEvaluation.threads = 4
+      Bands.maxBands = 4
+      try {
+        workspace.command("random-seed 0 " + commands)
+        (org.nlogo.api.Dump.logoObject(workspace.report(reporter)), workspace.report("random 1000000"))
+      }
+      finally {
+        ParallelEvaluation.enabled = savedEnabled
+        ParallelEvaluation.threads = savedThreads
+        Bands.maxBands = savedMax
+      }
+    }
+    workspace.command("random-seed 1 crt 2000 [ fd random-float 5 ]")
+    val serial = run(false)
+    val pooled = Bands.pooledBands.get
+    expect(serial)(run(true))
+    // or the test is trivial
+    assert(Bands.pooledBands.get > pooled)
+  }
+
+  testUsingWorkspace("of") { workspace =>
+    checkSame(workspace, "set glob1 [xcor * 2 - heading] of turtles", "glob1")
+  }
+
+  testUsingWorkspace("of stopping partway with an error") { workspace =>
+    checkSame(workspace,
+      "set glob1 0 carefully [ set glob1 [1 / (who - 1500)] of turtles ] [ set glob1 error-message ]",
+      "glob1")
+  }
+
+  testUsingWorkspace("sum of") { workspace =>
+    checkSame(workspace, "set glob1 sum [xcor * 2 - heading] of turtles", "glob1")
+  }
+
+  testUsingWorkspace("max of stopping partway with an error") { workspace =>
+    checkSame(workspace,
+      "set glob1 0 carefully [ set glob1 max [1 / (who - 1500)] of turtles ] [ set glob1 error-message ]",
+      "glob1")
+  }
+
+  testUsingWorkspace("parallel update") { workspace =>
+    checkSame(workspace,
+      "ask turtles [ set size who ] __parallel-update turtles size [size * 2 + xcor]",
+      "sum [size] of turtles")
+  }
+
+}
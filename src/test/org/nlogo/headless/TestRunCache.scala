@@ -0,0 +1,44 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.headless
+
+class TestRunCache extends TestUsingWorkspace {
+
+  testUsingWorkspace("same string compiles once") { workspace =>
+    workspace.codeBits.clear()
+    val misses = workspace.codeBits.misses
+    val hits = workspace.codeBits.hits
+    workspace.command("repeat 10 [ run \"set glob1 glob1 + 1\" ]")
+    expect(10.0)(workspace.report("glob1"))
+    expect(misses + 1)(workspace.codeBits.misses)
+    expect(hits + 9)(workspace.codeBits.hits)
+  }
+
+  testUsingWorkspace("run and runresult don't share") { workspace =>
+    workspace.command("set glob1 runresult \"5\"")
+    workspace.command("carefully [ run \"5\" ] [ set glob2 error-message ]")
+    expect(5.0)(workspace.report("glob1"))
+    expect("Expected command.")(workspace.report("glob2"))
+  }
+
+  testUsingWorkspace("different agent types don't share") { workspace =>
+    workspace.codeBits.clear()
+    workspace.command("crt 1")
+    expect(true)(workspace.report("[runresult \"self\"] of turtle 0 = turtle 0"))
+    expect(true)(workspace.report("[runresult \"self\"] of patch 0 0 = patch 0 0"))
+    expect(2)(workspace.codeBits.size)
+  }
+
+  testUsingWorkspace("least recently used goes first") { workspace =>
+    workspace.codeBits.clear()
+    for (i <- 0 to org.nlogo.workspace.CodeBits.SIZE)
+      workspace.report("runresult \"" + i + "\"")
+    expect(org.nlogo.workspace.CodeBits.SIZE)(workspace.codeBits.size)
+    val misses = workspace.codeBits.misses
+    workspace.report("runresult \"" + org.nlogo.workspace.CodeBits.SIZE + "\"")
+    expect(misses)(workspace.codeBits.misses)
+    workspace.report("runresult \"0\"")
+    expect(misses + 1)(workspace.codeBits.misses)
+  }
+
+}
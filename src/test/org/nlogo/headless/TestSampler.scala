@@ -0,0 +1,60 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.headless
+
+import org.scalatest.FunSuite
+import org.nlogo.nvm.Sampler
+import org.nlogo.util.SlowTest
+
+class TestSampler extends FunSuite with SlowTest {
+
+  def withWorkspace(source: String)(f: HeadlessWorkspace => Unit) {
+    val workspace = HeadlessWorkspace.newInstance
+    try {
+      workspace.initForTesting(5, source)
+      f(workspace)
+    }
+    finally workspace.dispose()
+  }
+
+  def output(f: java.io.PrintStream => Unit) = {
+    val bytes = new java.io.ByteArrayOutputStream
+    val out = new java.io.PrintStream(bytes)
+    f(out)
+    out.flush()
+    bytes.toString
+  }
+
+  test("samples land in the procedures that ran") {
+    withWorkspace("to go repeat 200 [ wiggle ] end\n" +
+                  "to wiggle ask patches [ set pcolor random 140 ] end") { workspace =>
+      val sampler = new Sampler(workspace.world)
+      workspace.setSampler(sampler)
+      sampler.start()
+      val start = System.currentTimeMillis
+      while (sampler.samples < 20 && System.currentTimeMillis - start < 60000)
+        workspace.command("go")
+      sampler.stop()
+      assert(sampler.samples >= 20)
+      val collapsed = output(sampler.writeCollapsed).split("\n").toList
+      assert(collapsed.forall(_.matches(""".*;.* \d+""")))
+      assert(collapsed.exists(_.contains(";GO;WIGGLE;")))
+      expect(sampler.samples)(collapsed.map(_.split(" ").last.toLong).sum)
+      val table = output(sampler.writeTable)
+      assert(table.startsWith(sampler.samples + " samples, every 1 ms"))
+      assert(table.contains("  WIGGLE "))
+    }
+  }
+
+  test("no samples until the timer goes off") {
+    withWorkspace("") { workspace =>
+      val sampler = new Sampler(workspace.world, 1000000)
+      workspace.setSampler(sampler)
+      sampler.start()
+      workspace.command("repeat 1000 [ crt 1 ]")
+      sampler.stop()
+      expect(0)(sampler.samples)
+    }
+  }
+
+}
@@ -3,12 +3,20 @@
 package org.nlogo.nvm
 
 import org.scalatest.FunSuite
-import org.nlogo.api.Let
+import org.nlogo.api.{ Let, Token, TokenType }
 
 class ContextTests extends FunSuite {
+  // what compiler.LetSlotVisitor would do
+  def lets(scope: AnyRef, n: Int) =
+    for(i <- 0 until n) yield {
+      val let = new Let
+      let.scope = scope
+      let.index = i
+      let
+    }
   test("let 1") {
     val c = new Context(null, null, 0, null)
-    val let = new Let
+    val Seq(let) = lets("proc", 1)
     c.let(let, "foo")
     assert(c.getLet(let) === "foo")
     c.setLet(let, "bar")
@@ -16,7 +24,7 @@ class ContextTests extends FunSuite {
   }
   test("let 2") {
     val c = new Context(null, null, 0, null)
-    val (let1, let2) = (new Let, new Let)
+    val Seq(let1, let2) = lets("proc", 2)
     c.let(let1, "foo")
     assert(c.getLet(let1) === "foo")
     c.let(let2, "bar")
@@ -27,4 +35,110 @@ class ContextTests extends FunSuite {
     assert(c.getLet(let1) === "one")
     assert(c.getLet(let2) === "two")
   }
+  test("lots of slots") {
+    val c = new Context(null, null, 0, null)
+    val ls = lets("proc", 20)
+    for((let, i) <- ls.zipWithIndex)
+      c.let(let, Int.box(i))
+    for((let, i) <- ls.zipWithIndex)
+      assert(c.getLet(let) === i)
+  }
+  test("two scopes") {
+    val c = new Context(null, null, 0, null)
+    val Seq(outer) = lets("outer", 1)
+    val Seq(inner) = lets("inner", 1)
+    c.let(outer, "foo")
+    c.let(inner, "bar")
+    assert(c.getLet(outer) === "foo")
+    assert(c.getLet(inner) === "bar")
+  }
+  test("closed over") {
+    val c = new Context(null, null, 0, null)
+    val Seq(let1, let2) = lets("proc", 2)
+    c.let(let1, "foo")
+    val closure = c.closeOverLets()
+    // set changes the binding the task has...
+    c.setLet(let1, "bar")
+    // ...and so does a let the task can't have seen yet...
+    c.let(let2, "baz")
+    // ...but running the let again makes a new binding
+    c.let(let1, "qux")
+    assert(c.getLet(let1) === "qux")
+    assert(c.getLet(let2) === "baz")
+    c.letFrame = closure
+    assert(c.getLet(let1) === "bar")
+  }
+  test("set after a copy") {
+    val c = new Context(null, null, 0, null)
+    val Seq(let1, let2) = lets("proc", 2)
+    c.let(let1, "foo")
+    c.let(let2, "bar")
+    val closure = c.closeOverLets()
+    // makes a copy of the frame for the new binding of let2...
+    c.let(let2, "baz")
+    // ...but let1 is still the same binding in both
+    c.setLet(let1, "qux")
+    assert(c.getLet(let1) === "qux")
+    assert(c.getLet(let2) === "baz")
+    c.letFrame = closure
+    assert(c.getLet(let1) === "qux")
+    assert(c.getLet(let2) === "bar")
+  }
+  def procedure(size: Int) = {
+    val token = new Token("foo", TokenType.IDENT, "FOO")(0, 3, "")
+    val p = new Procedure(Procedure.Type.COMMAND, token, "FOO", None, null)
+    p.size = size
+    p
+  }
+  test("activations get recycled") {
+    val c = new Context(null, null, 0, null)
+    val p = procedure(2)
+    val a1 = c.newActivation(p, null, 5)
+    a1.args(0) = "foo"
+    c.activation = a1
+    c.returnFromProcedure()
+    assert(c.ip === 5)
+    val a2 = c.newActivation(p, null, 7)
+    assert(a2 eq a1)
+    assert(a2.args.toList === List(null, null))
+    assert(a2.returnAddress === 7)
+  }
+  test("recycled activation grows") {
+    val c = new Context(null, null, 0, null)
+    c.activation = c.newActivation(procedure(1), null, 0)
+    c.returnFromProcedure()
+    assert(c.newActivation(procedure(3), null, 0).args.size === 3)
+  }
+  test("activations tasks closed over aren't recycled") {
+    val c = new Context(null, null, 0, null)
+    val a1 = c.newActivation(procedure(1), null, 0)
+    c.activation = a1
+    a1.args(0) = "foo"
+    val locals = c.closeOverLocals()
+    c.returnFromProcedure()
+    assert(c.newActivation(procedure(1), null, 0) ne a1)
+    assert(locals(0) === "foo")
+  }
+  test("other activations aren't recycled") {
+    val c = new Context(null, null, 0, null)
+    val a1 = new Activation(procedure(1), null, 0)
+    c.activation = a1
+    c.returnFromProcedure()
+    assert(c.newActivation(procedure(1), null, 0) ne a1)
+  }
+  test("tail call") {
+    val c = new Context(null, null, 0, null)
+    val p = procedure(1)
+    val caller = new Activation(p, null, 0)
+    val a1 = c.newActivation(p, caller, 3)
+    c.activation = a1
+    c.ip = 10
+    val a2 = c.newActivation(p, a1.parent, a1.returnAddress)
+    c.tailCall(a2)
+    assert(c.activation eq a2)
+    assert(c.ip === 0)
+    c.returnFromProcedure()
+    assert(c.activation eq caller)
+    assert(c.ip === 3)
+  }
 }
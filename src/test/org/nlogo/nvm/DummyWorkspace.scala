@@ -44,6 +44,7 @@ class DummyWorkspace extends DummyCompilerServices with Workspace {
   override def clearOutput() = unsupported
   override def clearAll() = unsupported
   override def compileForRun(source: String, context: Context, reporter: Boolean) = unsupported
+  override def runCacheStats = unsupported
   override def convertToNormal() = unsupported
   override def getModelPath() = unsupported
   override def setModelPath(path: String) = unsupported
@@ -113,6 +114,7 @@ class DummyWorkspace extends DummyCompilerServices with Workspace {
 
   override def profilingEnabled = false
   override def profilingTracer = unsupported
+  override def sampler = null
 
   override def tick(c:Context, i:Instruction) = unsupported
   override def resetTicks(c:Context) = unsupported
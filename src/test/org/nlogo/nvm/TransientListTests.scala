@@ -0,0 +1,50 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.nvm
+
+import org.scalatest.FunSuite
+import org.nlogo.api.LogoList
+
+class TransientListTests extends FunSuite {
+  def list(xs: AnyRef*) = LogoList(xs: _*)
+  test("add doesn't change lists already handed out") {
+    val t = new TransientList(list("a"))
+    val before = t.freeze()
+    t.add("b")
+    expect(list("a"))(before)
+    expect(list("a", "b"))(t.freeze())
+  }
+  test("set doesn't change lists already handed out") {
+    val t = new TransientList(list("a", "b"))
+    val before = t.freeze()
+    t.set(0, "c")
+    expect(list("a", "b"))(before)
+    expect(list("c", "b"))(t.freeze())
+  }
+  test("set after growing") {
+    val t = new TransientList(LogoList.Empty)
+    val before = t.freeze()
+    for (i <- 1 to 100)
+      t.add(Double.box(i))
+    val middle = t.freeze()
+    t.set(99, "x")
+    expect(0)(before.size)
+    expect(Double.box(100))(middle.get(99))
+    expect("x")(t.freeze().get(99))
+  }
+  test("peeking doesn't stop set from changing in place") {
+    val t = new TransientList(list("a", "b"))
+    t.peek()
+    assert(!t.isShared)
+    t.freeze()
+    assert(t.isShared)
+  }
+  test("frozen lists change like any other") {
+    val t = new TransientList(list("a"))
+    t.add("b")
+    val frozen = t.freeze()
+    expect(list("a", "b", "c"))(frozen.lput("c"))
+    expect(list("b"))(frozen.butFirst)
+    intercept[IndexOutOfBoundsException] { frozen.get(2) }
+  }
+}
@@ -0,0 +1,55 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.util
+
+import org.scalatest.FunSuite
+
+class BandsTests extends FunSuite {
+
+  def sum(n: Int, bands: Int) = {
+    val counts = new Array[Int](n)
+    Bands.run(n, bands, new Bands.Band {
+      def run(start: Int, end: Int) {
+        for(i <- start until end)
+          counts(i) += 1
+      }
+    })
+    counts.sum
+  }
+
+  test("every item once") {
+    for(bands <- Seq(1, 2, 3, Bands.maxBands, Bands.maxBands * 4))
+      expect(1000)(sum(1000, bands))
+    expect(3)(sum(3, 8))
+    expect(0)(sum(0, 8))
+  }
+
+  test("more bands than processors") {
+    val saved = Bands.maxBands
+    Bands.maxBands = 4
+    try {
+      val pooled = Bands.pooledBands.get
+      expect(1000)(sum(1000, 4))
+      expect(pooled + 3)(Bands.pooledBands.get)
+    }
+    finally Bands.maxBands = saved
+  }
+
+  test("several threads at once") {
+    // asking for more and more bands from different threads used to
+    // replace the pool while other threads were still using it
+    val failures = new java.util.concurrent.ConcurrentLinkedQueue[Throwable]
+    val threads =
+      for(t <- 1 to 8) yield
+        new Thread {
+          override def run() {
+            try for(bands <- 1 to 32) assert(sum(5000, bands * t) == 5000)
+            catch { case e: Throwable => failures.add(e) }
+          }
+        }
+    threads.foreach(_.start())
+    threads.foreach(_.join())
+    assert(failures.isEmpty, failures)
+  }
+
+}
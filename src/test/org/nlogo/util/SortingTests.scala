@@ -0,0 +1,80 @@
+// (C) 2011 Uri Wilensky. https://github.com/NetLogo/NetLogo
+
+package org.nlogo.util
+
+import org.scalatest.FunSuite
+
+class SortingTests extends FunSuite {
+
+  // enough items that the parallel code runs, with plenty of ties
+  val n = Sorting.MIN_PARALLEL * 3 + 7
+  def numbers = {
+    val random = new MersenneTwisterFast(0)
+    Array.fill(n)(if(random.nextInt(10) == 0) -0.0 else random.nextInt(1000).toDouble)
+  }
+
+  def withThreads[T](threads: Int)(body: => T): T = {
+    val old = Sorting.threads
+    Sorting.threads = threads
+    try body
+    finally Sorting.threads = old
+  }
+
+  test("numbers") {
+    val expected = numbers
+    java.util.Arrays.sort(expected)
+    for(threads <- Seq(1, 2, 3, 8)) {
+      val ds = numbers
+      withThreads(threads) { Sorting.sort(ds) }
+      assert(java.util.Arrays.equals(expected, ds), "threads = " + threads)
+    }
+  }
+  test("strings") {
+    val strings = numbers.map(_.toString)
+    val expected = strings.clone
+    java.util.Arrays.sort(expected.asInstanceOf[Array[AnyRef]])
+    for(threads <- Seq(1, 3)) {
+      val ss = strings.clone
+      withThreads(threads) { Sorting.sort(ss) }
+      assert(expected.sameElements(ss), "threads = " + threads)
+    }
+  }
+  test("order is stable") {
+    val keys = numbers
+    val expected = (0 until n).sortBy(keys(_))(Ordering.fromLessThan((a: Double, b: Double) =>
+      java.lang.Double.compare(a, b) < 0))
+    for(threads <- Seq(1, 2, 5)) {
+      val order = withThreads(threads) { Sorting.order(keys) }
+      assert(expected.sameElements(order), "threads = " + threads)
+    }
+  }
+  test("small") {
+    expect(Seq(1, 0, 2))(Sorting.order(Array(2.0, 1.0, 2.0)).toSeq)
+    expect(Seq(1, 0))(Sorting.order(Array("b", "a")).toSeq)
+    expect(Seq())(Sorting.order(Array[Double]()).toSeq)
+  }
+  test("top") {
+    val keys = numbers
+    val ascending = Sorting.order(keys)
+    expect(ascending.take(100).toSeq)(Sorting.top(keys, 100, false).toSeq)
+    // largest first, but ties still in their original order
+    val descending = (0 until n).sortBy(i => -keys(i))(Ordering.fromLessThan((a: Double, b: Double) =>
+      java.lang.Double.compare(a, b) < 0))
+    expect(descending.take(100))(Sorting.top(keys, 100, true).toSeq)
+    expect(Seq(1, 0))(Sorting.top(Array(1.0, 0.0, 1.0, 2.0), 2, false).toSeq)
+    expect(Seq(3, 0))(Sorting.top(Array(1.0, 0.0, 1.0, 2.0), 2, true).toSeq)
+    expect(Seq(1, 0, 2))(Sorting.top(Array(1.0, 0.0, 1.0), 5, false).toSeq)
+    expect(Seq())(Sorting.top(Array(1.0), 0, true).toSeq)
+  }
+  test("select") {
+    val sorted = numbers
+    java.util.Arrays.sort(sorted)
+    for(k <- Seq(0, 1, n / 2, n - 1)) {
+      val ds = numbers
+      expect(sorted(k))(Sorting.select(ds, k))
+      assert(ds.take(k).forall(java.lang.Double.compare(_, sorted(k)) <= 0))
+      assert(ds.drop(k).forall(java.lang.Double.compare(_, sorted(k)) >= 0))
+    }
+    expect(2.0)(Sorting.select(Array(3.0, 1.0, 2.0), 1))
+  }
+}